@@ -0,0 +1,246 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts the bytes the player allocates in each phase of every turn, and the
+ * garbage collections that happen each turn, and writes a summary at the end
+ * of the game. Tracking is only turned on if the ALLOCATION_REPORT
+ * environment variable is set, to the file the summary should be written to.
+ * When it is off, every method returns right away.
+ *
+ * Bytes are counted with the allocation counter of the thread the turn is
+ * played on, so allocations by background threads aren't included. The
+ * counts are kept in ring buffers allocated up front, so tracking doesn't
+ * allocate itself. Like Profiler, only one player per JVM is tracked.
+ */
+public class AllocationTracker {
+    // Where to write the summary, or null if tracking is off
+    private static final String REPORT_PATH = System.getenv("ALLOCATION_REPORT");
+    static final boolean ENABLED = REPORT_PATH != null;
+    // Number of turns kept, enough for a whole game
+    private static final int TURN_CAPACITY = 1024;
+    // Number of turns with the most collection time to list
+    private static final int WORST_TURNS = 10;
+
+    private static final int PHASES = TurnBudget.Phase.values().length;
+    // Bytes allocated in each phase of each of the most recent turns
+    private static final long[][] phaseBytes = new long[PHASES][ENABLED ? TURN_CAPACITY : 0];
+    // Collections and milliseconds spent collecting in each of the most
+    // recent turns, counting the time between turns
+    private static final long[] turnCollections = new long[ENABLED ? TURN_CAPACITY : 0];
+    private static final long[] turnCollectionMs = new long[ENABLED ? TURN_CAPACITY : 0];
+    private static final long[] turnRounds = new long[ENABLED ? TURN_CAPACITY : 0];
+    // Bytes allocated in each phase so far this turn
+    private static final long[] thisTurnBytes = new long[PHASES];
+    private static TurnBudget.Phase phase = null;
+    private static long phaseStartBytes = 0;
+    private static long lastCollections = 0;
+    private static long lastCollectionMs = 0;
+    private static int turns = 0;
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(AllocationTracker::writeReport));
+        }
+    }
+
+    private AllocationTracker() {
+    }
+
+    /**
+     * Returns the thread bean if it can count allocated bytes, or null if
+     * this JVM can't.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far,
+     * or 0 if this JVM can't count them. Works whether or not tracking is on,
+     * for tools that count allocation themselves.
+     */
+    static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the number of collections by every collector so far.
+     */
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent collecting by every collector so far, in
+     * milliseconds.
+     */
+    private static long collectionMs() {
+        long ms = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            ms += Math.max(0, collector.getCollectionTime());
+        }
+        return ms;
+    }
+
+    /**
+     * Starts counting a turn from its first phase. Anything allocated since
+     * the last turn ended, such as while the player was set up, isn't
+     * counted.
+     */
+    public static void startTurn() {
+        if (!ENABLED) {
+            return;
+        }
+        phase = TurnBudget.Phase.UNITS;
+        phaseStartBytes = allocatedBytes();
+        if (turns == 0) {
+            lastCollections = collections();
+            lastCollectionMs = collectionMs();
+        }
+    }
+
+    /**
+     * Counts what was allocated since the last phase started toward that
+     * phase, and starts counting toward a new one.
+     *
+     * @param next The phase that is starting.
+     */
+    public static void startPhase(TurnBudget.Phase next) {
+        if (!ENABLED) {
+            return;
+        }
+        long bytes = allocatedBytes();
+        if (phase != null) {
+            thisTurnBytes[phase.ordinal()] += bytes - phaseStartBytes;
+        }
+        phase = next;
+        phaseStartBytes = bytes;
+    }
+
+    /**
+     * Records the totals for the turn that just ended. Allocations after
+     * this, until the next turn starts, aren't counted.
+     *
+     * @param round The round the turn was in.
+     */
+    public static void endTurn(long round) {
+        if (!ENABLED) {
+            return;
+        }
+        startPhase(null);
+        long collections = collections();
+        long collectionMs = collectionMs();
+
+        int slot = turns % TURN_CAPACITY;
+        for (int p = 0; p < PHASES; p++) {
+            phaseBytes[p][slot] = thisTurnBytes[p];
+            thisTurnBytes[p] = 0;
+        }
+        turnCollections[slot] = collections - lastCollections;
+        turnCollectionMs[slot] = collectionMs - lastCollectionMs;
+        turnRounds[slot] = round;
+        lastCollections = collections;
+        lastCollectionMs = collectionMs;
+        turns++;
+    }
+
+    /**
+     * Writes a summary to the report file: the median, 99th percentile and
+     * largest number of bytes allocated per turn in each phase, how often
+     * turns had a collection and how long collections took, and the turns
+     * with the most collection time. Does nothing if tracking is off.
+     */
+    public static synchronized void writeReport() {
+        if (!ENABLED) {
+            return;
+        }
+        int turnCount = Math.min(turns, TURN_CAPACITY);
+        long[] sorted = new long[TURN_CAPACITY];
+        long[] turnBytes = new long[turnCount];
+        try (PrintWriter out = new PrintWriter(new FileWriter(REPORT_PATH))) {
+            out.printf("turns %d%n", turns);
+            out.printf("%-12s %12s %12s %12s %14s%n", "phase", "p50_kb", "p99_kb", "max_kb", "total_mb");
+            for (TurnBudget.Phase p : TurnBudget.Phase.values()) {
+                long[] bytes = phaseBytes[p.ordinal()];
+                long total = 0;
+                for (int i = 0; i < turnCount; i++) {
+                    total += bytes[i];
+                    turnBytes[i] += bytes[i];
+                }
+                printBytes(out, p.name().toLowerCase(), bytes, turnCount, sorted, total);
+            }
+            long total = 0;
+            for (int i = 0; i < turnCount; i++) {
+                total += turnBytes[i];
+            }
+            printBytes(out, "turn", turnBytes, turnCount, sorted, total);
+
+            int turnsWithCollections = 0;
+            long collections = 0;
+            long collectionMs = 0;
+            for (int i = 0; i < turnCount; i++) {
+                if (turnCollections[i] > 0) {
+                    turnsWithCollections++;
+                }
+                collections += turnCollections[i];
+                collectionMs += turnCollectionMs[i];
+            }
+            System.arraycopy(turnCollectionMs, 0, sorted, 0, turnCount);
+            Arrays.sort(sorted, 0, turnCount);
+            out.printf("gc turns %d of %d, collections %d, total %d ms, per turn p99 %d ms max %d ms%n",
+                    turnsWithCollections, turnCount, collections, collectionMs, percentile(sorted, turnCount, 0.99),
+                    turnCount == 0 ? 0 : sorted[turnCount - 1]);
+
+            // List the turns that spent the most time collecting, with what
+            // they allocated, to see whether the pauses follow allocation
+            Integer[] order = new Integer[turnCount];
+            for (int i = 0; i < turnCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(turnCollectionMs[b], turnCollectionMs[a]));
+            for (int i = 0; i < Math.min(WORST_TURNS, turnCount) && turnCollectionMs[order[i]] > 0; i++) {
+                int t = order[i];
+                out.printf("gc round %d collections %d %d ms allocated %.1f kb%n", turnRounds[t], turnCollections[t],
+                        turnCollectionMs[t], turnBytes[t] / 1024.0);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void printBytes(PrintWriter out, String name, long[] bytes, int count, long[] sorted, long total) {
+        System.arraycopy(bytes, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        out.printf("%-12s %12.1f %12.1f %12.1f %14.2f%n", name, percentile(sorted, count, 0.50) / 1024.0,
+                percentile(sorted, count, 0.99) / 1024.0, count == 0 ? 0.0 : sorted[count - 1] / 1024.0,
+                total / 1048576.0);
+    }
+
+    /**
+     * Returns a percentile of the first count values of a sorted array, or 0
+     * if there are none.
+     */
+    private static long percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return sorted[Math.min(count - 1, (int) (fraction * count))];
+    }
+}
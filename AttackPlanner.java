@@ -0,0 +1,289 @@
+/**
+ * Assigns the attacks of a group of units for a turn all at once, so that
+ * shots are spread over enemies instead of every unit firing at the same one.
+ * Enemies that the group can kill this turn are taken first, cheapest to kill
+ * first, and each is given only as many shots as it takes. Units left over
+ * then fire at the weakest enemy they can reach. Units are referred to by
+ * their snapshot row.
+ *
+ * Planned damage is each attacker's full damage. Knight armor isn't in the
+ * snapshot, so it isn't subtracted, and a knight may survive the shots
+ * planned to kill it. Those shots aren't wasted, only spent on a target
+ * that needed one more.
+ */
+public class AttackPlanner {
+    // Row given as the target of attackers that have nothing to shoot
+    static final int NONE = -1;
+
+    private UnitSnapshot units;
+    private int attackerCount;
+    private int[] attackers;
+    // Targets of each attacker are adjacent[adjacentStart[attacker]] up to
+    // adjacent[adjacentStart[attacker + 1]], as indices into targets
+    private int[] adjacentStart;
+    private int[] adjacent;
+    private int targetCount;
+    private int[] targets;
+    // Attackers of each target, in the same layout as adjacent
+    private int[] reverseStart;
+    private int[] reverse;
+    private int[] reverseNext;
+    // Health each target has left after the shots assigned so far
+    private int[] remaining;
+    // Total damage of the unassigned attackers that can reach each target
+    private int[] reach;
+    // Number of targets each attacker can reach that are still alive
+    private int[] options;
+    private int[] assigned;
+    // Index in targets of each snapshot row, valid if targetStamp matches
+    private int[] targetIndex;
+    private int[] targetStamp;
+    private int stamp;
+    private int[] queryBuffer;
+
+    /**
+     * Creates a new planner.
+     */
+    public AttackPlanner() {
+        this.attackers = new int[0];
+        this.adjacentStart = new int[1];
+        this.adjacent = new int[0];
+        this.targets = new int[0];
+        this.reverseStart = new int[1];
+        this.reverse = new int[0];
+        this.reverseNext = new int[0];
+        this.remaining = new int[0];
+        this.reach = new int[0];
+        this.options = new int[0];
+        this.assigned = new int[0];
+        this.targetIndex = new int[0];
+        this.targetStamp = new int[0];
+        this.stamp = 0;
+        this.queryBuffer = new int[0];
+    }
+
+    /**
+     * Plans the attacks of a group of units against the enemies in a spatial
+     * hash. Only units that are ready to attack are given targets.
+     *
+     * @param units      The snapshot the units and enemies are from.
+     * @param enemies    The enemies to attack, built from the same snapshot.
+     * @param unitIDs    The IDs of the units to plan attacks for.
+     * @param minRangeSq Enemies at this squared distance or closer can't be
+     *                   attacked. Use -1 if there is no minimum.
+     * @return The number of attackers, including ones that got no target.
+     */
+    public int plan(UnitSnapshot units, SpatialHash enemies, IntSet unitIDs, int minRangeSq) {
+        this.units = units;
+        allocate(unitIDs.size(), units.size(), enemies.size());
+        gatherTargets(enemies, unitIDs, minRangeSq);
+        buildReverse();
+
+        // Armor is ignored, so a knight's health is all it takes to kill it
+        for (int t = 0; t < this.targetCount; t++) {
+            this.remaining[t] = units.getHealth(this.targets[t]);
+        }
+        for (int a = 0; a < this.attackerCount; a++) {
+            this.assigned[a] = NONE;
+            this.options[a] = this.adjacentStart[a + 1] - this.adjacentStart[a];
+            int damage = units.getDamage(this.attackers[a]);
+            for (int i = this.adjacentStart[a]; i < this.adjacentStart[a + 1]; i++) {
+                this.reach[this.adjacent[i]] += damage;
+            }
+        }
+
+        // Kill whatever can be killed, starting with what takes the least
+        // damage to kill
+        int target;
+        while ((target = cheapestKill()) != NONE) {
+            while (this.remaining[target] > 0) {
+                int attacker = leastFlexibleAttacker(target);
+                assign(attacker, target);
+            }
+        }
+
+        // Spend the rest of the shots on the weakest enemies in range
+        for (int a = 0; a < this.attackerCount; a++) {
+            if (this.assigned[a] != NONE) {
+                continue;
+            }
+            int weakest = NONE;
+            for (int i = this.adjacentStart[a]; i < this.adjacentStart[a + 1]; i++) {
+                int t = this.adjacent[i];
+                if (this.remaining[t] > 0 && (weakest == NONE || this.remaining[t] < this.remaining[weakest])) {
+                    weakest = t;
+                }
+            }
+            if (weakest != NONE) {
+                assign(a, weakest);
+            }
+        }
+
+        return this.attackerCount;
+    }
+
+    /**
+     * Returns the snapshot row of an attacker from the last plan.
+     *
+     * @param i Which attacker to get, less than the number returned by plan.
+     * @return The row of the attacker.
+     */
+    public int getAttacker(int i) {
+        return this.attackers[i];
+    }
+
+    /**
+     * Returns the snapshot row of the unit an attacker from the last plan
+     * should attack.
+     *
+     * @param i Which attacker to get, less than the number returned by plan.
+     * @return The row of the target, or NONE if the attacker has no target.
+     */
+    public int getTarget(int i) {
+        return this.assigned[i] == NONE ? NONE : this.targets[this.assigned[i]];
+    }
+
+    private void allocate(int maxAttackers, int rows, int maxTargets) {
+        if (this.attackers.length < maxAttackers) {
+            this.attackers = new int[maxAttackers];
+            this.adjacentStart = new int[maxAttackers + 1];
+            this.options = new int[maxAttackers];
+            this.assigned = new int[maxAttackers];
+        }
+        if (this.targetIndex.length < rows) {
+            this.targetIndex = new int[rows];
+            this.targetStamp = new int[rows];
+        }
+        if (this.targets.length < maxTargets) {
+            this.targets = new int[maxTargets];
+            this.reverseStart = new int[maxTargets + 1];
+            this.reverseNext = new int[maxTargets];
+            this.remaining = new int[maxTargets];
+            this.reach = new int[maxTargets];
+            this.queryBuffer = new int[maxTargets];
+        }
+        this.stamp++;
+    }
+
+    /**
+     * Finds the enemies in range of every ready attacker, numbering each
+     * enemy the first time it is seen.
+     */
+    private void gatherTargets(SpatialHash enemies, IntSet unitIDs, int minRangeSq) {
+        this.attackerCount = 0;
+        this.targetCount = 0;
+        int edgeCount = 0;
+        for (int i = 0; i < unitIDs.size(); i++) {
+            int row = this.units.row(unitIDs.get(i));
+            if (row == UnitSnapshot.NONE || !this.units.isAttackReady(row) || this.units.getDamage(row) <= 0) {
+                continue;
+            }
+            int found = enemies.query(this.units.getX(row), this.units.getY(row), minRangeSq, this.units.getAttackRange(row), this.queryBuffer);
+            if (this.adjacent.length < edgeCount + found) {
+                int[] grown = new int[Math.max(edgeCount + found, 2 * this.adjacent.length)];
+                System.arraycopy(this.adjacent, 0, grown, 0, edgeCount);
+                this.adjacent = grown;
+            }
+
+            this.attackers[this.attackerCount] = row;
+            this.adjacentStart[this.attackerCount] = edgeCount;
+            for (int j = 0; j < found; j++) {
+                int enemy = this.queryBuffer[j];
+                if (this.targetStamp[enemy] != this.stamp) {
+                    this.targetStamp[enemy] = this.stamp;
+                    this.targetIndex[enemy] = this.targetCount;
+                    this.targets[this.targetCount] = enemy;
+                    this.reach[this.targetCount] = 0;
+                    this.targetCount++;
+                }
+                this.adjacent[edgeCount++] = this.targetIndex[enemy];
+            }
+            this.attackerCount++;
+        }
+        this.adjacentStart[this.attackerCount] = edgeCount;
+    }
+
+    /**
+     * Builds the list of attackers of each target from the list of targets
+     * of each attacker.
+     */
+    private void buildReverse() {
+        int edgeCount = this.adjacentStart[this.attackerCount];
+        if (this.reverse.length < edgeCount) {
+            this.reverse = new int[Math.max(edgeCount, 2 * this.reverse.length)];
+        }
+
+        for (int t = 0; t <= this.targetCount; t++) {
+            this.reverseStart[t] = 0;
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            this.reverseStart[this.adjacent[i] + 1]++;
+        }
+        for (int t = 0; t < this.targetCount; t++) {
+            this.reverseStart[t + 1] += this.reverseStart[t];
+            this.reverseNext[t] = this.reverseStart[t];
+        }
+        for (int a = 0; a < this.attackerCount; a++) {
+            for (int i = this.adjacentStart[a]; i < this.adjacentStart[a + 1]; i++) {
+                int t = this.adjacent[i];
+                this.reverse[this.reverseNext[t]++] = a;
+            }
+        }
+    }
+
+    /**
+     * Returns the living target with the least health left that the
+     * unassigned attackers can kill, or NONE if there isn't one.
+     */
+    private int cheapestKill() {
+        int best = NONE;
+        for (int t = 0; t < this.targetCount; t++) {
+            if (this.remaining[t] > 0 && this.reach[t] >= this.remaining[t]
+                    && (best == NONE || this.remaining[t] < this.remaining[best])) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the unassigned attacker of a target that wastes the least
+     * damage on it, so that overkill is kept small. Of attackers that waste
+     * the same damage, the one that can reach the fewest other living targets
+     * is returned, leaving the more flexible attackers for other targets.
+     */
+    private int leastFlexibleAttacker(int target) {
+        int best = NONE;
+        int bestWaste = 0;
+        for (int i = this.reverseStart[target]; i < this.reverseStart[target + 1]; i++) {
+            int a = this.reverse[i];
+            if (this.assigned[a] != NONE) {
+                continue;
+            }
+            int waste = Math.max(0, this.units.getDamage(this.attackers[a]) - this.remaining[target]);
+            if (best == NONE || waste < bestWaste
+                    || (waste == bestWaste && this.options[a] < this.options[best])) {
+                best = a;
+                bestWaste = waste;
+            }
+        }
+        return best;
+    }
+
+    private void assign(int attacker, int target) {
+        this.assigned[attacker] = target;
+        int damage = this.units.getDamage(this.attackers[attacker]);
+        for (int i = this.adjacentStart[attacker]; i < this.adjacentStart[attacker + 1]; i++) {
+            this.reach[this.adjacent[i]] -= damage;
+        }
+
+        boolean wasAlive = this.remaining[target] > 0;
+        this.remaining[target] -= damage;
+        if (wasAlive && this.remaining[target] <= 0) {
+            // Attackers of a dead target have one less option
+            for (int i = this.reverseStart[target]; i < this.reverseStart[target + 1]; i++) {
+                this.options[this.reverse[i]]--;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * A grid of boolean flags for every location on a map, packed 64 to a word.
+ * Locations are indexed by y * width + x, the same as navigation maps.
+ */
+public class BitGrid {
+    private long[] words;
+    private int width;
+    private int height;
+
+    /**
+     * Creates a new grid with every flag cleared.
+     *
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     */
+    public BitGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = new long[(width * height + 63) >>> 6];
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns whether the flag for a location is set.
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     * @return True if the flag is set, false otherwise.
+     */
+    public boolean get(int x, int y) {
+        return get(y * this.width + x);
+    }
+
+    /**
+     * Returns whether the flag for a location is set.
+     *
+     * @param index The index of the location.
+     * @return True if the flag is set, false otherwise.
+     */
+    public boolean get(int index) {
+        return (this.words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void set(int x, int y) {
+        set(y * this.width + x);
+    }
+
+    public void set(int index) {
+        this.words[index >>> 6] |= 1L << index;
+    }
+
+    public void set(int x, int y, boolean value) {
+        if (value) {
+            set(x, y);
+        } else {
+            clear(x, y);
+        }
+    }
+
+    public void clear(int x, int y) {
+        clear(y * this.width + x);
+    }
+
+    public void clear(int index) {
+        this.words[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Clears the flag for every location.
+     */
+    public void clearAll() {
+        Arrays.fill(this.words, 0);
+    }
+
+    /**
+     * Returns the number of locations whose flag is set.
+     *
+     * @return The number of set flags.
+     */
+    public int count() {
+        int count = 0;
+        for (long word : this.words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * An index of the locations that still have karbonite. Every location knows
+ * which karbonite location is closest to it by walking distance, found with
+ * a breadth first search out from all karbonite locations at once. The
+ * karbonite locations are also kept in a list, so that the one with the most
+ * karbonite around it per move can be found by scoring each of them.
+ *
+ * Locations that run out are only marked as stale when they are reported,
+ * and the search is rerun by refresh() if any were. The player refreshes
+ * once per turn, after the turn's karbonite changes are reported, so the
+ * search runs at most once per turn however many locations run out.
+ */
+public class DepositIndex {
+    private static final int NONE = -1;
+
+    private int[][] karboniteMap;
+    private BitGrid passable;
+    private int mapWidth;
+    private int mapHeight;
+    // Indices of the passable locations with karbonite as of the last build
+    private int[] deposits;
+    private int depositCount;
+    // Closest deposit to each location and the distance to it, indexed by
+    // location index
+    private int[] nearest;
+    private short[] distances;
+    private int[] openSet;
+    // Walking distance to each location from the units best() was last
+    // asked about, indexed by location index
+    private short[] sourceDistances;
+    // Whether a deposit has run out since the last build
+    private boolean isDirty;
+
+    /**
+     * Creates a new index.
+     *
+     * @param karboniteMap The known karbonite at each location.
+     * @param passable     Map of which locations have passable terrain.
+     */
+    public DepositIndex(int[][] karboniteMap, BitGrid passable) {
+        this.karboniteMap = karboniteMap;
+        this.passable = passable;
+        this.mapWidth = passable.getWidth();
+        this.mapHeight = passable.getHeight();
+        this.deposits = new int[this.mapWidth * this.mapHeight];
+        this.nearest = new int[this.mapWidth * this.mapHeight];
+        this.distances = new short[this.mapWidth * this.mapHeight];
+        this.openSet = new int[this.mapWidth * this.mapHeight];
+        this.sourceDistances = new short[this.mapWidth * this.mapHeight];
+        rebuild();
+    }
+
+    /**
+     * Records that a location may have run out of karbonite. If it has, the
+     * index is stale until the next refresh().
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     */
+    public void update(int x, int y) {
+        int index = y * this.mapWidth + x;
+        if (this.karboniteMap[y][x] <= 0 && this.nearest[index] == index) {
+            this.isDirty = true;
+        }
+    }
+
+    /**
+     * Rebuilds the index if a location has run out of karbonite since it was
+     * last built.
+     */
+    public void refresh() {
+        if (this.isDirty) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        int head = 0;
+        int tail = 0;
+        this.depositCount = 0;
+        for (int y = 0; y < this.mapHeight; y++) {
+            for (int x = 0; x < this.mapWidth; x++) {
+                int index = y * this.mapWidth + x;
+                if (this.passable.get(index) && this.karboniteMap[y][x] > 0) {
+                    this.deposits[this.depositCount++] = index;
+                    this.nearest[index] = index;
+                    this.distances[index] = 0;
+                    this.openSet[tail++] = index;
+                } else {
+                    this.nearest[index] = NONE;
+                    this.distances[index] = Navigator.NO_DIST;
+                }
+            }
+        }
+
+        while (head < tail) {
+            int next = this.openSet[head++];
+            int nextX = next % this.mapWidth;
+            int nextY = next / this.mapWidth;
+            for (int d : Navigator.D_DIRS) {
+                int adjX = nextX + Navigator.DIR_DX[d];
+                int adjY = nextY + Navigator.DIR_DY[d];
+                if (adjX < 0 || adjY < 0 || adjX >= this.mapWidth || adjY >= this.mapHeight) {
+                    continue;
+                }
+                int adj = adjY * this.mapWidth + adjX;
+                if (this.passable.get(adj) && this.nearest[adj] == NONE) {
+                    this.nearest[adj] = this.nearest[next];
+                    this.distances[adj] = (short) (this.distances[next] + 1);
+                    this.openSet[tail++] = adj;
+                }
+            }
+        }
+        this.isDirty = false;
+    }
+
+    /**
+     * Returns the karbonite location closest to a location by walking
+     * distance, as of the last refresh.
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     * @return The index of the closest location with karbonite, or -1 if
+     * none can be reached.
+     */
+    public int nearest(int x, int y) {
+        return this.nearest[y * this.mapWidth + x];
+    }
+
+    /**
+     * Returns the walking distance from a location to the closest location
+     * with karbonite, as of the last refresh.
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     * @return The distance to the closest karbonite, or Navigator.NO_DIST if
+     * none can be reached.
+     */
+    public int nearestDistance(int x, int y) {
+        return this.distances[y * this.mapWidth + x];
+    }
+
+    /**
+     * Returns the karbonite location with the most karbonite around it per
+     * move needed to reach it from the closest of a group of locations. The
+     * walking distances are found with a breadth first search out from all
+     * of the locations at once, ignoring units.
+     *
+     * @param sources     Indices of the locations to walk from, such as
+     *                    where the units of a pod are.
+     * @param sourceCount The number of locations in sources.
+     * @param values      Summed karbonite to find deposit values with.
+     * @param radius      Distance from a location to each side of the square
+     *                    its deposit value is summed over.
+     * @return The index of the best location with karbonite, as of the last
+     * refresh, or -1 if none can be reached.
+     */
+    public int best(int[] sources, int sourceCount, SummedAreaTable values, int radius) {
+        Arrays.fill(this.sourceDistances, Navigator.NO_DIST);
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < sourceCount; i++) {
+            int source = sources[i];
+            if (this.sourceDistances[source] == Navigator.NO_DIST) {
+                this.sourceDistances[source] = 0;
+                this.openSet[tail++] = source;
+            }
+        }
+        while (head < tail) {
+            int next = this.openSet[head++];
+            int nextX = next % this.mapWidth;
+            int nextY = next / this.mapWidth;
+            for (int d : Navigator.D_DIRS) {
+                int adjX = nextX + Navigator.DIR_DX[d];
+                int adjY = nextY + Navigator.DIR_DY[d];
+                if (adjX < 0 || adjY < 0 || adjX >= this.mapWidth || adjY >= this.mapHeight) {
+                    continue;
+                }
+                int adj = adjY * this.mapWidth + adjX;
+                if (this.passable.get(adj) && this.sourceDistances[adj] == Navigator.NO_DIST) {
+                    this.sourceDistances[adj] = (short) (this.sourceDistances[next] + 1);
+                    this.openSet[tail++] = adj;
+                }
+            }
+        }
+
+        int best = NONE;
+        long bestValue = 0;
+        long bestCost = 1;
+        for (int i = 0; i < this.depositCount; i++) {
+            int deposit = this.deposits[i];
+            int distance = this.sourceDistances[deposit];
+            if (distance == Navigator.NO_DIST) {
+                continue;
+            }
+            long value = values.sumAround(deposit % this.mapWidth, deposit / this.mapWidth, radius);
+            long cost = distance + 1;
+            // Compare value / cost without dividing, preferring the closer
+            // deposit when they are worth the same
+            long difference = value * bestCost - bestValue * cost;
+            if (best == NONE || difference > 0 || (difference == 0 && cost < bestCost)) {
+                best = deposit;
+                bestValue = value;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+}
@@ -1,54 +1,132 @@
 import bc.*;
 
-import java.awt.Point;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.TreeSet;
 
 public class EarthPlayer extends PlanetPlayer {
     // "Radius" of square
-    private static final int DEPOSIT_SCAN_RADIUS = 1;
+    static final int DEPOSIT_SCAN_RADIUS = 1;
     // In squared units
     private static final int POD_SCAN_RADIUS = 16;
-
-    private int[][] depositMap;
-    // Key: UnitID, Value: Pod of UnitIDs
-    private Map<Integer, Set<Integer>> podsMap;
+    // Number of the richest deposits to build navigation maps for ahead of time
+    private static final int PREDICTED_DEPOSITS = 8;
+    // Minimum squared distance between predicted deposits
+    private static final int PREDICTED_DEPOSIT_SEPARATION = 16;
+    // Rangers can't attack units at this squared distance or closer
+    private static final int RANGER_MIN_ATTACK_RANGE = 10;
+    // Building target of a pod that isn't building anything
+    private static final int NO_TARGET = -1;
+    // Profiler section for each pod order, indexed by order ordinal
+    private static final Profiler.Section[] ORDER_SECTIONS = {Profiler.Section.POD_BUILD, Profiler.Section.POD_MINE, Profiler.Section.POD_ROCKET};
+
+    // Sums of karbonite on passable terrain, for finding deposit values
+    private SummedAreaTable depositTable;
+    // Keeps karboniteMap up to date with what units can see
+    private KarboniteTracker karboniteTracker;
+    // Closest karbonite to every location
+    private DepositIndex depositIndex;
+    // Reusable buffer of the locations of a pod's units
+    private int[] podLocations;
     // All worker pods
-    private List<Set<Integer>> pods;
-    private Map<Set<Integer>, Order> podOrders;
-    private Map<Set<Integer>, MapLocation> podMiningTargets;
-    private Map<Set<Integer>, Integer> podBuildingTargets;
-    private Map<Set<Integer>, Integer> podBuildingIdle;
+    private IntSet[] pods;
+    // The order, mining target, factory being built and number of turns
+    // without building of each pod, indexed like pods
+    private Order[] podOrders;
+    private MapLocation[] podMiningTargets;
+    private int[] podBuildingTargets;
+    private int[] podBuildingIdle;
     private boolean firstFactoryBuilt;
-
-    public EarthPlayer(GameController gc, Planet planet) {
+    // Rangers moving toward the rally point this turn
+    private IntSet swarm;
+    // Spreads the swarm's shots over the enemies in range
+    private AttackPlanner attackPlanner;
+    // Where rockets land on Mars, as written to the team array by MarsPlayer
+    private int[] landingSite;
+
+    public EarthPlayer(GameApi gc, Planet planet) {
         super(gc, planet);
 
         // initializeNavigator();
         findKarboniteDeposits();
+        this.karboniteTracker = new KarboniteTracker(gc, this.MY_TEAM, this.karboniteMap, this.passableMap);
+        this.depositIndex = new DepositIndex(this.karboniteMap, this.passableMap);
+        this.podLocations = new int[0];
         makePods();
         this.firstFactoryBuilt = false;
-        this.podOrders = new IdentityHashMap<>();
-        for (Set<Integer> pod : this.pods) {
-            this.podOrders.put(pod, Order.MINE);
-        }
+        this.swarm = new IntSet();
+        this.attackPlanner = new AttackPlanner();
+        this.landingSite = new int[2];
+        this.podOrders = new Order[this.pods.length];
+        Arrays.fill(this.podOrders, Order.MINE);
         // assignInitialPods();
 
-        VecUnit initial = gc.startingMap(planet).getInitial_units();
-        for (int i = 0; i < initial.size(); i++) {
-            if (initial.get(i).team() == this.MY_TEAM) {
+        UnitSnapshot initial = new UnitSnapshot();
+        gc.readInitialUnits(planet, initial);
+        for (int row = 0; row < initial.size(); row++) {
+            if (initial.getTeam(row) == this.MY_TEAM || !initial.isOnMap(row)) {
                 continue;
             }
-            this.attackPoints.add(initial.get(i).location().mapLocation());
+            this.attackPoints.add(this.locations.get(initial.getX(row), initial.getY(row)));
+        }
+
+        predictTargets();
+    }
+
+    /**
+     * Schedules navigation maps to be built in the background for locations
+     * units are likely to navigate to: enemy starting locations, the richest
+     * karbonite deposits, and the centers of pods, where factories get built.
+     */
+    private void predictTargets() {
+        for (MapLocation attackPoint : this.attackPoints) {
+            this.navigator.schedulePrecompute(attackPoint);
+        }
+
+        // Sort deposits by value, keeping their location in the low bits
+        long[] deposits = new long[this.mapWidth * this.mapHeight];
+        int depositCount = 0;
+        for (int y = 0; y < this.mapHeight; y++) {
+            for (int x = 0; x < this.mapWidth; x++) {
+                if (!this.passableMap.get(x, y)) {
+                    continue;
+                }
+                int value = getDepositValue(x, y, DEPOSIT_SCAN_RADIUS);
+                if (value > 0) {
+                    deposits[depositCount++] = ((long) value << 32) | (y * this.mapWidth + x);
+                }
+            }
+        }
+        Arrays.sort(deposits, 0, depositCount);
+
+        List<MapLocation> predicted = new ArrayList<>();
+        for (int i = depositCount - 1; i >= 0 && predicted.size() < PREDICTED_DEPOSITS; i--) {
+            int location = (int) deposits[i];
+            MapLocation deposit = this.locations.get(location);
+            boolean isSeparate = true;
+            for (MapLocation other : predicted) {
+                if (deposit.distanceSquaredTo(other) < PREDICTED_DEPOSIT_SEPARATION) {
+                    isSeparate = false;
+                    break;
+                }
+            }
+            if (isSeparate) {
+                predicted.add(deposit);
+                this.navigator.schedulePrecompute(deposit);
+            }
+        }
+
+        for (int p = 0; p < this.pods.length; p++) {
+            IntSet pod = this.pods[p];
+            int meanX = 0;
+            int meanY = 0;
+            for (int i = 0; i < pod.size(); i++) {
+                int unit = pod.get(i);
+                MapLocation unitLoc = getMapLocation(unit);
+                meanX += unitLoc.getX();
+                meanY += unitLoc.getY();
+            }
+            this.navigator.schedulePrecompute(this.locations.get(meanX / pod.size(), meanY / pod.size()));
         }
     }
 
@@ -65,26 +143,7 @@ public class EarthPlayer extends PlanetPlayer {
     // }
 
     private void findKarboniteDeposits() {
-        this.depositMap = new int[this.mapHeight][this.mapWidth];
-        int maxDepositValue = 0; // TODO
-
-        Set<Integer> sortedUniqueDeposits = new TreeSet<>();
-        for (int y = 0; y < this.mapHeight; y++) {
-            for (int x = 0; x < this.mapWidth; x++) {
-                // Don't calculate deposits for impassable locations
-                if (!this.passableMap[y][x]) {
-                    continue;
-                }
-                int value = getDepositValue(x, y, DEPOSIT_SCAN_RADIUS);
-                this.depositMap[y][x] = value;
-                maxDepositValue = Math.max(maxDepositValue, value);
-                sortedUniqueDeposits.add(value);
-            }
-        }
-        // Integer[] sortedDeposits = sortedUniqueDeposits.toArray(new Integer[sortedUniqueDeposits.size()]);
-
-
-        // System.out.println(Arrays.toString(sortedDeposits));
+        this.depositTable = new SummedAreaTable(this.karboniteMap, this.passableMap);
 
         // double mean = 0;
         // int total = 0;
@@ -110,82 +169,104 @@ public class EarthPlayer extends PlanetPlayer {
         // System.out.println(stdev);
     }
 
-    private int getDepositValue(int x, int y, int radius) {
-        int value = 0;
+    /**
+     * Returns the total karbonite on passable terrain in a square around a
+     * location.
+     *
+     * @param x      The x-coordinate of the center of the square.
+     * @param y      The y-coordinate of the center of the square.
+     * @param radius Distance from the center to each side of the square.
+     * @return The karbonite in the square.
+     */
+    int getDepositValue(int x, int y, int radius) {
+        return this.depositTable.sumAround(x, y, radius);
+    }
 
-        for (int i = -radius; i <= radius; i++) {
-            for (int j = -radius; j <= radius; j++) {
-                int yPos = y + i;
-                int xPos = x + j;
-                if (isOOB(xPos, yPos)) {
-                    continue;
-                }
-                // Don't add impassable locations to the total
-                if (!this.passableMap[yPos][xPos]) {
-                    continue;
-                }
-                value += this.karboniteMap[yPos][xPos];
-            }
+    /**
+     * Senses karbonite in vision of this player's units and updates the
+     * deposit table and index with whatever was mined.
+     */
+    private void updateKarbonite() {
+        int changedCount = this.karboniteTracker.refresh(this.units);
+        for (int i = 0; i < changedCount; i++) {
+            int location = this.karboniteTracker.getChanged(i);
+            int x = location % this.mapWidth;
+            int y = location / this.mapWidth;
+            this.depositTable.add(x, y, -this.karboniteTracker.getDelta(i));
+            this.depositIndex.update(x, y);
         }
-
-        return value;
+        this.depositIndex.refresh();
     }
 
     private void makePods() {
-        this.podsMap = new HashMap<>();
-        this.podMiningTargets = new IdentityHashMap<>();
-        this.podBuildingTargets = new IdentityHashMap<>();
-        this.podBuildingIdle = new IdentityHashMap<>();
-        this.pods = new ArrayList<>();
-
-        Set<Integer> processed = new HashSet<>();
+        List<IntSet> pods = new ArrayList<>();
+        IntSet processed = new IntSet();
 
         // Process every unit
-        VecUnit myUnits = this.gc.myUnits();
-        for (int i = 0; i < myUnits.size(); i++) {
-            HashSet<Integer> pod = new HashSet<>();
-            addToPod(myUnits.get(i), pod, processed);
+        this.gc.readUnits(this.units);
+        for (int row = 0; row < this.units.size(); row++) {
+            if (this.units.getTeam(row) != this.MY_TEAM || !this.units.isOnMap(row)) {
+                continue;
+            }
+            IntSet pod = new IntSet();
+            addToPod(row, pod, processed);
             if (!pod.isEmpty()) {
-                this.pods.add(pod);
+                pods.add(pod);
             }
         }
-
-        System.out.println(this.pods.size() + " pods.");
-        for (Set<Integer> pod : this.pods) {
-            System.out.println(pod);
+        this.pods = pods.toArray(new IntSet[pods.size()]);
+        this.podMiningTargets = new MapLocation[this.pods.length];
+        this.podBuildingTargets = new int[this.pods.length];
+        Arrays.fill(this.podBuildingTargets, NO_TARGET);
+        this.podBuildingIdle = new int[this.pods.length];
+
+        System.out.println(this.pods.length + " pods.");
+        for (int p = 0; p < this.pods.length; p++) {
+            System.out.println(this.pods[p]);
         }
         System.out.println();
     }
 
-    private void addToPod(Unit unit, Set<Integer> pod, Set<Integer> processed) {
-        if (processed.contains(unit.id())) {
+    private void addToPod(int row, IntSet pod, IntSet processed) {
+        int unit = this.units.getId(row);
+        if (processed.contains(unit)) {
             return;
         }
 
-        processed.add(unit.id());
-        pod.add(unit.id());
-        this.podsMap.put(unit.id(), pod);
+        processed.add(unit);
+        pod.add(unit);
 
-        VecUnit nearbyUnits = this.gc.senseNearbyUnitsByTeam(unit.location().mapLocation(), POD_SCAN_RADIUS, this.MY_TEAM);
-        for (int i = 0; i < nearbyUnits.size(); i++) {
-            addToPod(nearbyUnits.get(i), pod, processed);
+        int x = this.units.getX(row);
+        int y = this.units.getY(row);
+        for (int other = 0; other < this.units.size(); other++) {
+            if (this.units.getTeam(other) != this.MY_TEAM || !this.units.isOnMap(other)) {
+                continue;
+            }
+            int dx = this.units.getX(other) - x;
+            int dy = this.units.getY(other) - y;
+            if (dx * dx + dy * dy <= POD_SCAN_RADIUS) {
+                addToPod(other, pod, processed);
+            }
         }
     }
 
     private void assignInitialPods() {
-        if (this.pods.size() == 1) {
-            this.podOrders.put(this.pods.get(0), Order.BUILD);
+        if (this.pods.length == 1) {
+            this.podOrders[0] = Order.BUILD;
         } else {
-            Set<Integer> bestPod = null;
+            int bestPod = -1;
             int bestPodValue = Integer.MAX_VALUE;
-            for (Set<Integer> pod : this.pods) {
-                this.podOrders.put(pod, Order.MINE);
+            for (int p = 0; p < this.pods.length; p++) {
+                IntSet pod = this.pods[p];
+                this.podOrders[p] = Order.MINE;
 
                 int meanX = 0;
                 int meanY = 0;
-                for (int unit : pod) {
-                    meanX += this.gc.unit(unit).location().mapLocation().getX();
-                    meanY += this.gc.unit(unit).location().mapLocation().getY();
+                for (int i = 0; i < pod.size(); i++) {
+                    int unit = pod.get(i);
+                    MapLocation unitLoc = getMapLocation(unit);
+                    meanX += unitLoc.getX();
+                    meanY += unitLoc.getY();
                 }
                 meanX /= pod.size();
                 meanY /= pod.size();
@@ -193,10 +274,10 @@ public class EarthPlayer extends PlanetPlayer {
                 int value = getDepositValue(meanX, meanY, 5); // TODO
                 if (value < bestPodValue) {
                     bestPodValue = value;
-                    bestPod = pod;
+                    bestPod = p;
                 }
             }
-            this.podOrders.put(bestPod, Order.BUILD);
+            this.podOrders[bestPod] = Order.BUILD;
         }
     }
 
@@ -207,35 +288,93 @@ public class EarthPlayer extends PlanetPlayer {
      * @return The nearest karbonite deposit that can be moved to. If none
      * exist, returns the given start location.
      */
-    private MapLocation findNearestKarbonite(MapLocation start) {
-        Queue<MapLocation> openSet = new LinkedList<>();
-        Set<Point> closedSet = new HashSet<>();
-        openSet.add(start);
-
-        while (!openSet.isEmpty()) {
-            MapLocation next = openSet.remove();
-            if (this.karboniteMap[next.getY()][next.getX()] > 0) {
-                return next;
+    MapLocation findNearestKarbonite(MapLocation start) {
+        long startNanos = Profiler.start();
+        int deposit = this.depositIndex.nearest(start.getX(), start.getY());
+        Profiler.stop(Profiler.Section.NEAREST_KARBONITE, startNanos);
+        if (deposit == -1) {
+            return start;
+        }
+        return this.locations.get(deposit);
+    }
+
+    /**
+     * Returns the karbonite deposit with the most karbonite around it per
+     * move needed to walk to it from the closest unit of a pod. If the
+     * economy phase is out of time, the deposit nearest to one of the pod's
+     * units is returned instead.
+     *
+     * @param pod The pod to find a deposit for.
+     * @return The best karbonite deposit that can be moved to, or the
+     * location of one of the pod's units if none exist. Null if all of the
+     * pod's units are garrisoned.
+     */
+    private MapLocation findBestKarbonite(IntSet pod) {
+        if (this.podLocations.length < pod.size()) {
+            this.podLocations = new int[Math.max(pod.size(), 2 * this.podLocations.length)];
+        }
+        int locationCount = 0;
+        MapLocation sampleLoc = null;
+        for (int i = 0; i < pod.size(); i++) {
+            MapLocation unitLoc = getMapLocation(pod.get(i));
+            if (unitLoc == null) {
+                continue;
+            }
+            if (sampleLoc == null) {
+                sampleLoc = unitLoc;
             }
+            this.podLocations[locationCount++] = unitLoc.getY() * this.mapWidth + unitLoc.getX();
+        }
+        // If all units are garrisoned, don't do anything
+        if (sampleLoc == null) {
+            return null;
+        }
+        if (!this.budget.hasTime()) {
+            return findNearestKarbonite(sampleLoc);
+        }
 
-            closedSet.add(new Point(next.getX(), next.getY()));
+        long startNanos = Profiler.start();
+        int deposit = this.depositIndex.best(this.podLocations, locationCount, this.depositTable, DEPOSIT_SCAN_RADIUS);
+        Profiler.stop(Profiler.Section.BEST_KARBONITE, startNanos);
+        if (deposit == -1) {
+            return sampleLoc;
+        }
+        return this.locations.get(deposit);
+    }
 
-            for (Direction d : DIRECTIONS) {
-                MapLocation adj = next.add(d);
-                int adjX = adj.getX();
-                int adjY = adj.getY();
-                if (isOOB(adjX, adjY) || !this.passableMap[adjY][adjX]) {
-                    continue;
-                }
-                Point adjPoint = new Point(adj.getX(), adj.getY());
-                if (!closedSet.contains(adjPoint)) {
-                    openSet.add(adj);
-                    closedSet.add(adjPoint);
-                }
+    /**
+     * Returns whether any pod has been given an order.
+     *
+     * @param order The order to look for.
+     * @return True if a pod has the order, false otherwise.
+     */
+    private boolean hasPodWithOrder(Order order) {
+        for (int p = 0; p < this.podOrders.length; p++) {
+            if (this.podOrders[p] == order) {
+                return true;
             }
         }
+        return false;
+    }
 
-        return start;
+    /**
+     * Returns the mining target of a pod, first finding a new target if the
+     * pod doesn't have one or if its target has run out of karbonite.
+     *
+     * @param p The index of the pod to get the mining target of.
+     * @return The pod's mining target, or null if all of its units are
+     * garrisoned.
+     */
+    private MapLocation updateMiningTarget(int p) {
+        MapLocation targetDeposit = this.podMiningTargets[p];
+        if (targetDeposit == null || this.karboniteMap[targetDeposit.getY()][targetDeposit.getX()] <= 0) {
+            targetDeposit = findBestKarbonite(this.pods[p]);
+            if (targetDeposit == null) {
+                return null;
+            }
+            this.podMiningTargets[p] = targetDeposit;
+        }
+        return targetDeposit;
     }
 
     @Override
@@ -248,49 +387,66 @@ public class EarthPlayer extends PlanetPlayer {
         }
 
 
+        this.budget.startPhase(TurnBudget.Phase.ECONOMY);
+        updateKarbonite();
+
+        IntSet factories = this.myUnits.get(UnitType.Factory);
+        IntSet rockets = this.myUnits.get(UnitType.Rocket);
+        IntSet rangers = this.myUnits.get(UnitType.Ranger);
+
         boolean allFactoriesProducing = true;
         boolean allFactoriesBuilt = true;
-        for (int factory : this.myUnits.get(UnitType.Factory)) {
-            Unit factoryUnit = this.gc.unit(factory);
-            if (factoryUnit.structureIsBuilt() == 0) {
+        for (int i = 0; i < factories.size(); i++) {
+            int factory = factories.get(i);
+            int row = this.units.row(factory);
+            if (!this.units.isBuilt(row)) {
                 allFactoriesBuilt = false;
             }
-            if (factoryUnit.structureIsBuilt() == 1 && factoryUnit.isFactoryProducing() == 0) {
+            if (this.units.isBuilt(row) && !this.units.isProducing(row)) {
                 allFactoriesProducing = false;
                 break;
             }
         }
 
-        for (Set<Integer> pod : this.pods) {
-            Order order = this.podOrders.get(pod);
-
-            // Remove units that don't exist anymore
-            for (Iterator<Integer> it = pod.iterator(); it.hasNext(); ) {
-                int unit = it.next();
+        for (int p = 0; p < this.pods.length; p++) {
+            IntSet pod = this.pods[p];
+            // Remove units that don't exist anymore. Removing moves the last
+            // unit into the gap, so go backwards to visit every unit.
+            for (int i = pod.size() - 1; i >= 0; i--) {
+                int unit = pod.get(i);
                 if (!unitExists(unit)) {
-                    it.remove();
+                    pod.remove(unit);
                 }
             }
 
-            // TODO Handle removing from this.pods, this.podOrders, podsMap, etc.
-            if (pod.isEmpty()) {
-                continue;
+            // Pick mining targets up front so that their navigation maps can
+            // be built in parallel
+            if (!pod.isEmpty() && this.podOrders[p] == Order.MINE) {
+                MapLocation targetDeposit = updateMiningTarget(p);
+                if (targetDeposit != null) {
+                    this.navigator.prefetch(targetDeposit);
+                }
             }
+        }
 
-            for (int y = 0; y < this.mapHeight; y++) {
-                for (int x = 0; x < this.mapWidth; x++) {
-                    if (this.gc.canSenseLocation(new MapLocation(this.planet, x, y))) {
-                        this.karboniteMap[y][x] = (int) Math.min(this.gc.karboniteAt(new MapLocation(this.planet, x, y)), this.karboniteMap[y][x]);
-                    }
-                }
+        for (int p = 0; p < this.pods.length; p++) {
+            IntSet pod = this.pods[p];
+            Order order = this.podOrders[p];
+
+            // TODO Handle removing from this.pods, this.podOrders, etc.
+            if (pod.isEmpty()) {
+                continue;
             }
 
+            long start = Profiler.start();
             switch (order) {
                 case ROCKET:
-                    for (int unit : pod) {
+                    for (int i = 0; i < pod.size(); i++) {
+                        int unit = pod.get(i);
                         boolean loaded = false;
-                        for (int rocket : this.myUnits.get(UnitType.Rocket)) {
-                            if (this.gc.unit(rocket).structureIsBuilt() == 1) {
+                        for (int j = 0; j < rockets.size(); j++) {
+                            int rocket = rockets.get(j);
+                            if (this.units.isBuilt(this.units.row(rocket))) {
                                 if (this.gc.canLoad(rocket, unit)) {
                                     this.gc.load(rocket, unit);
                                     loaded = true;
@@ -302,7 +458,8 @@ public class EarthPlayer extends PlanetPlayer {
                         }
 
                         boolean noRocket = true;
-                        for (int rocket : this.myUnits.get(UnitType.Rocket)) {
+                        for (int j = 0; j < rockets.size(); j++) {
+                            int rocket = rockets.get(j);
                             if (this.gc.canBuild(unit, rocket)) {
                                 this.gc.build(unit, rocket);
                                 noRocket = false;
@@ -312,77 +469,85 @@ public class EarthPlayer extends PlanetPlayer {
                             for (Direction d : DIRECTIONS) {
                                 if (this.gc.canBlueprint(unit, UnitType.Rocket, d)) {
                                     this.gc.blueprint(unit, UnitType.Rocket, d);
+                                    occupyNextTo(unit, d);
                                 }
                             }
                         }
                     }
                     break;
                 case BUILD:
-                    if (!this.podBuildingIdle.containsKey(pod)) {
-                        this.podBuildingIdle.put(pod, 0);
-                    }
-                    if (this.podBuildingIdle.get(pod) > 3) { // TODO
-                        // this.podOrders.put(pod, Order.MINE);
-                        this.podOrders.put(pod, Order.ROCKET);
+                    if (this.podBuildingIdle[p] > 3) { // TODO
+                        // this.podOrders[p] = Order.MINE;
+                        this.podOrders[p] = Order.ROCKET;
                         break;
                     }
                     // if (this.myUnits.get(UnitType.Factory).size() != 0) {
-                    this.podBuildingIdle.put(pod, this.podBuildingIdle.get(pod) + 1);
+                    this.podBuildingIdle[p]++;
                     // }
 
-                    Integer targetBuilding = this.podBuildingTargets.get(pod);
+                    int targetBuilding = this.podBuildingTargets[p];
+                    // Forget targets that have been destroyed
+                    if (targetBuilding != NO_TARGET && !this.units.contains(targetBuilding)) {
+                        this.podBuildingTargets[p] = NO_TARGET;
+                        targetBuilding = NO_TARGET;
+                    }
                     // If this pod doesn't have a building target, or if that
                     // target is built, find a new target
-                    if (targetBuilding == null || this.gc.unit(targetBuilding).structureIsBuilt() == 1) {
+                    if (targetBuilding == NO_TARGET || isBuilt(targetBuilding)) {
                         // Don't create more factories if the current ones are enough
                         if (!allFactoriesProducing) {
                             break;
                         }
 
-                        int sampleUnit = pod.iterator().next();
-                        for (Iterator<Integer> it = pod.iterator(); it.hasNext() && this.gc.unit(sampleUnit).location().isInGarrison(); ) {
-                            sampleUnit = it.next();
+                        int sampleUnit = pod.get(0);
+                        for (int i = 1; i < pod.size() && isInGarrison(sampleUnit); i++) {
+                            sampleUnit = pod.get(i);
                         }
                         // If all units are garrisoned, don't do anything
-                        if (this.gc.unit(sampleUnit).location().isInGarrison()) {
+                        if (isInGarrison(sampleUnit)) {
                             break;
                         }
-                        Unit blueprintingUnit = this.gc.unit(sampleUnit);
-                        MapLocation unitLoc = blueprintingUnit.location().mapLocation();
+                        MapLocation unitLoc = getMapLocation(sampleUnit);
                         for (Direction d : DIRECTIONS) {
                             if (this.gc.canBlueprint(sampleUnit, UnitType.Factory, d)) {
                                 this.gc.blueprint(sampleUnit, UnitType.Factory, d);
-                                Unit blueprint = this.gc.senseUnitAtLocation(unitLoc.add(d));
-                                this.podBuildingTargets.put(pod, blueprint.id());
+                                occupyNextTo(sampleUnit, d);
+                                MapLocation blueprintLoc = this.locations.add(unitLoc, d);
+                                this.podBuildingTargets[p] = this.gc.senseUnitAt(blueprintLoc.getX(), blueprintLoc.getY());
 
                                 if (this.base == null) {
-                                    this.base = blueprint.location().mapLocation();
+                                    this.base = blueprintLoc;
+                                    this.navigator.pin(this.base);
                                 }
+                                this.navigator.prefetch(blueprintLoc);
 
-                                this.podBuildingIdle.put(pod, 0);
+                                this.podBuildingIdle[p] = 0;
                                 break;
                             }
                         }
                     }
-                    targetBuilding = this.podBuildingTargets.get(pod);
+                    targetBuilding = this.podBuildingTargets[p];
 
-                    if (targetBuilding == null) {
+                    if (targetBuilding == NO_TARGET) {
                         break;
                     }
 
-                    Set<Integer> buildingPodToAddTo = null;
-                    Unit buildingReplicatedUnit = null;
-                    for (int unit : pod) {
-                        MapLocation unitLoc = this.gc.unit(unit).location().mapLocation();
+                    MapLocation targetLoc = getMapLocation(targetBuilding);
+                    IntSet buildingPodToAddTo = null;
+                    int buildingReplicatedUnit = -1;
+                    for (int i = 0; i < pod.size(); i++) {
+                        int unit = pod.get(i);
+                        MapLocation unitLoc = getMapLocation(unit);
+                        if (unitLoc == null) {
+                            continue;
+                        }
 
                         if (allFactoriesProducing && pod.size() < 4) { // TODO
                             Direction dirToReplicate = null;
 
                             // Try to replicate in a place next to the target building
-                            Unit targetUnit = this.gc.unit(targetBuilding);
-                            MapLocation targetLoc = targetUnit.location().mapLocation();
                             for (Direction d : DIRECTIONS) {
-                                MapLocation targetAdj = targetLoc.add(d);
+                                MapLocation targetAdj = this.locations.add(targetLoc, d);
                                 Direction toTargetAdj = unitLoc.directionTo(targetAdj);
                                 if (this.gc.canReplicate(unit, toTargetAdj)) {
                                     dirToReplicate = toTargetAdj;
@@ -400,7 +565,9 @@ public class EarthPlayer extends PlanetPlayer {
 
                             if (dirToReplicate != null && this.gc.canReplicate(unit, dirToReplicate)) {
                                 this.gc.replicate(unit, dirToReplicate);
-                                buildingReplicatedUnit = this.gc.senseUnitAtLocation(unitLoc.add(dirToReplicate));
+                                occupyNextTo(unit, dirToReplicate);
+                                MapLocation replicatedLoc = this.locations.add(unitLoc, dirToReplicate);
+                                buildingReplicatedUnit = this.gc.senseUnitAt(replicatedLoc.getX(), replicatedLoc.getY());
                                 buildingPodToAddTo = pod;
                                 // if (pod.size() > 3) {
                                 //     podToAddTo = new HashSet<>();
@@ -412,51 +579,39 @@ public class EarthPlayer extends PlanetPlayer {
 
                         if (this.gc.canBuild(unit, targetBuilding)) {
                             this.gc.build(unit, targetBuilding);
-                            this.podBuildingIdle.put(pod, 0);
+                            this.podBuildingIdle[p] = 0;
                         } else {
-                            Direction toMove = this.navigator.navigate(unit, unitLoc, this.gc.unit(targetBuilding).location().mapLocation());
-                            boolean moved = this.navigator.tryMove(unit, toMove);
+                            Direction toMove = navigate(unit, unitLoc, targetLoc);
+                            boolean moved = tryMove(unit, toMove);
                             if (moved) {
-                                this.podBuildingIdle.put(pod, 0);
+                                this.podBuildingIdle[p] = 0;
                             }
                         }
                     }
 
                     if (buildingPodToAddTo != null) {
-                        buildingPodToAddTo.add(buildingReplicatedUnit.id());
-                        this.podsMap.put(buildingReplicatedUnit.id(), buildingPodToAddTo);
+                        buildingPodToAddTo.add(buildingReplicatedUnit);
                     }
                     break;
                 case MINE:
-                    MapLocation targetDeposit = this.podMiningTargets.get(pod);
-                    // If this pod doesn't have a mining target, or if that
-                    // target has run out of karbonite, find a new target
-                    if (targetDeposit == null || this.karboniteMap[targetDeposit.getY()][targetDeposit.getX()] <= 0) {
-                        int sampleUnit = pod.iterator().next();
-                        for (Iterator<Integer> it = pod.iterator(); it.hasNext() && this.gc.unit(sampleUnit).location().isInGarrison(); ) {
-                            sampleUnit = it.next();
-                        }
-                        // If all units are garrisoned, don't do anything
-                        if (this.gc.unit(sampleUnit).location().isInGarrison()) {
-                            break;
-                        }
-                        MapLocation nextDeposit = findNearestKarbonite(this.gc.unit(sampleUnit).location().mapLocation());
-                        this.podMiningTargets.put(pod, nextDeposit);
-                    }
-                    targetDeposit = this.podMiningTargets.get(pod);
+                    MapLocation targetDeposit = updateMiningTarget(p);
                     // this.karboniteMap[targetDeposit.getY()][targetDeposit.getX()] = (int) this.gc.karboniteAt(targetDeposit);
 
                     if (targetDeposit == null) {
                         break;
                     }
 
-                    Set<Integer> podToAddTo = null;
-                    Unit replicatedUnit = null;
-                    for (int unit : pod) {
-                        MapLocation unitLoc = this.gc.unit(unit).location().mapLocation();
+                    IntSet podToAddTo = null;
+                    int replicatedUnit = -1;
+                    for (int i = 0; i < pod.size(); i++) {
+                        int unit = pod.get(i);
+                        MapLocation unitLoc = getMapLocation(unit);
+                        if (unitLoc == null) {
+                            continue;
+                        }
                         Direction dirToTarget = unitLoc.directionTo(targetDeposit);
 
-                        if (!this.myUnits.get(UnitType.Factory).isEmpty() && allFactoriesProducing) {
+                        if (!factories.isEmpty() && allFactoriesProducing) {
                             int value = getDepositValue(unitLoc.getX(), unitLoc.getY(), 3); // TODO
                             if (value / pod.size() > 100) { // TODO
                                 Direction dirToReplicate = dirToTarget;
@@ -470,7 +625,10 @@ public class EarthPlayer extends PlanetPlayer {
                                 }
                                 if (this.gc.canReplicate(unit, dirToReplicate)) {
                                     this.gc.replicate(unit, dirToReplicate);
-                                    replicatedUnit = this.gc.senseUnitAtLocation(unitLoc.add(dirToReplicate));
+                                    occupyNextTo(unit, dirToReplicate);
+                                occupyNextTo(unit, dirToReplicate);
+                                    MapLocation replicatedLoc = this.locations.add(unitLoc, dirToReplicate);
+                                    replicatedUnit = this.gc.senseUnitAt(replicatedLoc.getX(), replicatedLoc.getY());
                                     podToAddTo = pod;
                                     // if (pod.size() > 3) {
                                     //     podToAddTo = new HashSet<>();
@@ -511,8 +669,8 @@ public class EarthPlayer extends PlanetPlayer {
                             // this.karboniteMap[targetDeposit.getY()][targetDeposit.getX()] = (int) this.gc.karboniteAt(targetDeposit);
                         } else {
                             // If it can't be mined, move in range so that it can be
-                            Direction toMove = this.navigator.navigate(unit, unitLoc, targetDeposit);
-                            boolean successfulMove = this.navigator.tryMove(unit, toMove);
+                            Direction toMove = navigate(unit, unitLoc, targetDeposit);
+                            boolean successfulMove = tryMove(unit, toMove);
                             // If can't mine target and can't move, try to mine
                             // something else nearby
                             if (!successfulMove) {
@@ -527,35 +685,38 @@ public class EarthPlayer extends PlanetPlayer {
                     }
 
                     if (podToAddTo != null) {
-                        podToAddTo.add(replicatedUnit.id());
-                        this.podsMap.put(replicatedUnit.id(), podToAddTo);
+                        podToAddTo.add(replicatedUnit);
                     }
                     break;
             }
+            Profiler.stop(ORDER_SECTIONS[order.ordinal()], start);
         }
 
-        for (int rocket : this.myUnits.get(UnitType.Rocket)) {
-            Veci32 teamArray = this.gc.getTeamArray(Planet.Mars);
-            if (this.gc.unit(rocket).structureGarrison().size() != 0) {
-                this.gc.launchRocket(rocket, new MapLocation(Planet.Mars, teamArray.get(0), teamArray.get(1)));
-                for (Set<Integer> pod : this.podOrders.keySet()) {
-                    if (this.podOrders.get(pod) == Order.ROCKET) {
-                        this.podOrders.put(pod, Order.MINE);
+        this.budget.startPhase(TurnBudget.Phase.FACTORIES);
+        for (int i = 0; i < rockets.size(); i++) {
+            int rocket = rockets.get(i);
+            // Units may have been loaded this turn, so ask the game
+            if (this.gc.getGarrisonSize(rocket) != 0) {
+                this.gc.readTeamArray(Planet.Mars, this.landingSite);
+                this.gc.launchRocket(rocket, this.landingSite[0], this.landingSite[1]);
+                for (int p = 0; p < this.podOrders.length; p++) {
+                    if (this.podOrders[p] == Order.ROCKET) {
+                        this.podOrders[p] = Order.MINE;
                     }
                 }
             }
         }
 
-        for (int factory : this.myUnits.get(UnitType.Factory)) {
+        for (int i = 0; i < factories.size(); i++) {
+            int factory = factories.get(i);
             // TODO
-            if (this.myUnits.get(UnitType.Rocket).isEmpty()) {
-                if (this.podOrders.values().contains(Order.ROCKET) && this.gc.karbonite() <= 100) {
+            if (rockets.isEmpty()) {
+                if (hasPodWithOrder(Order.ROCKET) && this.gc.karbonite() <= 100) {
                     continue;
                 }
             }
 
-            Unit factoryUnit = this.gc.unit(factory);
-            if (factoryUnit.structureIsBuilt() == 0) {
+            if (!this.units.isBuilt(this.units.row(factory))) {
                 continue;
             }
 
@@ -568,35 +729,31 @@ public class EarthPlayer extends PlanetPlayer {
             for (Direction d : DIRECTIONS) {
                 if (this.gc.canUnload(factory, d)) {
                     this.gc.unload(factory, d);
+                    occupyNextTo(factory, d);
                 }
             }
             // }
         }
 
-        for (int ranger : this.myUnits.get(UnitType.Ranger)) {
-            if (!this.gc.unit(ranger).location().isOnMap()) {
-                continue;
+        this.budget.startPhase(TurnBudget.Phase.ARMY);
+        this.swarm.clear();
+        for (int i = 0; i < rangers.size(); i++) {
+            int ranger = rangers.get(i);
+            int row = this.units.row(ranger);
+            if (this.units.isOnMap(row) && !this.units.isSniping(row)) {
+                this.swarm.add(ranger);
             }
-
-            if (this.gc.unit(ranger).rangerIsSniping() == 1) {
-                continue;
-            }
-
-            goodMove(ranger, this.rallyPoint);
-
-            if (this.gc.isAttackReady(ranger)) {
-                VecUnit nearby = this.gc.senseNearbyUnitsByTeam(this.gc.unit(ranger).location().mapLocation(), this.gc.unit(ranger).attackRange(), this.ENEMY_TEAM);
-                Unit targetUnit = null;
-                for (int i = 0; i < nearby.size(); i++) {
-                    if (this.gc.canAttack(ranger, nearby.get(i).id())) {
-                        if (targetUnit == null || nearby.get(i).health() < targetUnit.health()) {
-                            targetUnit = nearby.get(i);
-                        }
-                    }
-                }
-                if (targetUnit != null) {
-                    this.gc.attack(ranger, targetUnit.id());
-                }
+        }
+        swarmMove(this.swarm, this.rallyPoint);
+
+        int attackerCount = this.attackPlanner.plan(this.units, this.enemies, this.swarm, RANGER_MIN_ATTACK_RANGE);
+        for (int j = 0; j < attackerCount; j++) {
+            int row = this.attackPlanner.getAttacker(j);
+            int target = this.attackPlanner.getTarget(j);
+            int ranger = this.units.getId(row);
+            if (target != AttackPlanner.NONE && this.gc.canAttack(ranger, this.units.getId(target))) {
+                this.gc.attack(ranger, this.units.getId(target));
+                this.units.attacked(row, target);
             }
 
             // if (this.gc.isBeginSnipeReady(ranger) && this.gc.unit(ranger).rangerIsSniping() == 0) {
@@ -614,15 +771,7 @@ public class EarthPlayer extends PlanetPlayer {
             return null;
         }
 
-        MapLocation attackPoint = this.attackPoints.get(0);
-        long bestDist = this.base.distanceSquaredTo(attackPoint);
-        for (int i = 1; i < this.attackPoints.size(); i++) {
-            long dist = this.base.distanceSquaredTo(this.attackPoints.get(i));
-            if (dist < bestDist) {
-                attackPoint = this.attackPoints.get(i);
-                bestDist = dist;
-            }
-        }
+        MapLocation attackPoint = this.navigator.nearestOf(this.base, this.attackPoints);
 
         int dx = 1000;
         int dy = 1000;
@@ -630,6 +779,6 @@ public class EarthPlayer extends PlanetPlayer {
             dx = ((int) Math.random() * 4) - 2;
             dy = ((int) Math.random() * 4) - 2;
         }
-        return new MapLocation(this.planet, attackPoint.getX() + dx, attackPoint.getY() + dy);
+        return this.locations.get(attackPoint.getX() + dx, attackPoint.getY() + dy);
     }
 }
@@ -0,0 +1,143 @@
+import bc.*;
+
+/**
+ * The parts of the game that the player uses. Units are referred to by ID
+ * and locations by coordinates on this player's planet, so that the game can
+ * be played without the engine, as well as through the real game controller.
+ */
+public interface GameApi {
+    Planet planet();
+
+    Team team();
+
+    long round();
+
+    long getTimeLeftMs();
+
+    /**
+     * Returns the amount of karbonite this player's team has.
+     */
+    long karbonite();
+
+    /**
+     * Ends this player's turn and waits for the next one.
+     */
+    void nextTurn();
+
+    int getMapWidth(Planet planet);
+
+    int getMapHeight(Planet planet);
+
+    boolean isPassableTerrainAt(Planet planet, int x, int y);
+
+    /**
+     * Returns the karbonite at a location at the start of the game.
+     */
+    long initialKarboniteAt(Planet planet, int x, int y);
+
+    /**
+     * Replaces a snapshot with the units on a planet at the start of the
+     * game.
+     *
+     * @param planet   The planet whose starting units to read.
+     * @param snapshot The snapshot to fill.
+     */
+    void readInitialUnits(Planet planet, UnitSnapshot snapshot);
+
+    /**
+     * Replaces a snapshot with every unit this player can currently see.
+     *
+     * @param snapshot The snapshot to fill.
+     */
+    void readUnits(UnitSnapshot snapshot);
+
+    /**
+     * Returns where a unit is on the map of this player's planet, reading
+     * the unit from the game only once.
+     *
+     * @param unitID The ID of the unit.
+     * @return The index of the unit's location, y * width + x, or
+     * LocationTable.NONE if the unit isn't on the map.
+     */
+    int getLocationIndex(int unitID);
+
+    boolean isInGarrison(int unitID);
+
+    boolean isBuilt(int structureID);
+
+    int getGarrisonSize(int structureID);
+
+    /**
+     * Returns the ID of the unit at a location.
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     * @return The ID of the unit, or -1 if there is no unit there.
+     */
+    int senseUnitAt(int x, int y);
+
+    /**
+     * Returns the karbonite at a location that this player can see.
+     */
+    long karboniteAt(int x, int y);
+
+    boolean isMoveReady(int unitID);
+
+    boolean canMove(int unitID, Direction direction);
+
+    void moveRobot(int unitID, Direction direction);
+
+    boolean canAttack(int unitID, int targetID);
+
+    void attack(int unitID, int targetID);
+
+    boolean canHarvest(int workerID, Direction direction);
+
+    void harvest(int workerID, Direction direction);
+
+    boolean canBlueprint(int workerID, UnitType type, Direction direction);
+
+    void blueprint(int workerID, UnitType type, Direction direction);
+
+    boolean canBuild(int workerID, int blueprintID);
+
+    void build(int workerID, int blueprintID);
+
+    boolean canReplicate(int workerID, Direction direction);
+
+    void replicate(int workerID, Direction direction);
+
+    boolean canLoad(int structureID, int robotID);
+
+    void load(int structureID, int robotID);
+
+    boolean canUnload(int structureID, Direction direction);
+
+    void unload(int structureID, Direction direction);
+
+    boolean canProduceRobot(int factoryID, UnitType type);
+
+    void produceRobot(int factoryID, UnitType type);
+
+    /**
+     * Launches a rocket to a location on Mars.
+     *
+     * @param rocketID The rocket to launch.
+     * @param x        The x-coordinate of the landing location.
+     * @param y        The y-coordinate of the landing location.
+     */
+    void launchRocket(int rocketID, int x, int y);
+
+    void queueResearch(UnitType branch);
+
+    /**
+     * Copies the start of a planet's team array, reading the array from the
+     * game only once.
+     *
+     * @param planet The planet whose team array to read.
+     * @param values Filled with the first values.length entries of the array.
+     */
+    void readTeamArray(Planet planet, int[] values);
+
+    void writeTeamArray(int index, int value);
+}
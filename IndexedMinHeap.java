@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer items in the range [0, capacity), each with a
+ * float priority. An item's priority can be decreased while it is in the
+ * heap. All storage is allocated up front, so the heap can be cleared and
+ * reused without allocating.
+ */
+public class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    // Items in heap order
+    private int[] heap;
+    // Position of each item in the heap, or ABSENT
+    private int[] positions;
+    // Priority of each item
+    private float[] keys;
+    private int size;
+
+    /**
+     * Creates a new empty heap.
+     *
+     * @param capacity One more than the largest item the heap can hold.
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new float[capacity];
+        this.size = 0;
+        Arrays.fill(this.positions, ABSENT);
+    }
+
+    /**
+     * Removes all items from the heap in time proportional to its size.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.positions[this.heap[i]] = ABSENT;
+        }
+        this.size = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns whether an item is in the heap.
+     *
+     * @param item The item to check.
+     * @return True if the item is in the heap, false otherwise.
+     */
+    public boolean contains(int item) {
+        return this.positions[item] != ABSENT;
+    }
+
+    /**
+     * Adds an item to the heap. The item must not already be in the heap.
+     *
+     * @param item The item to add.
+     * @param key  The priority of the item.
+     */
+    public void add(int item, float key) {
+        this.keys[item] = key;
+        this.heap[this.size] = item;
+        this.positions[item] = this.size;
+        this.size++;
+        siftUp(this.size - 1);
+    }
+
+    /**
+     * Lowers the priority of an item in the heap. Does nothing if the given
+     * priority isn't lower than the current one.
+     *
+     * @param item The item to update.
+     * @param key  The new priority of the item.
+     */
+    public void decreaseKey(int item, float key) {
+        if (key >= this.keys[item]) {
+            return;
+        }
+        this.keys[item] = key;
+        siftUp(this.positions[item]);
+    }
+
+    /**
+     * Removes and returns the item with the lowest priority. The heap must
+     * not be empty.
+     *
+     * @return The item with the lowest priority.
+     */
+    public int poll() {
+        int min = this.heap[0];
+        this.size--;
+        this.positions[min] = ABSENT;
+        if (this.size > 0) {
+            int last = this.heap[this.size];
+            this.heap[0] = last;
+            this.positions[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int index) {
+        int item = this.heap[index];
+        float key = this.keys[item];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            int parent = this.heap[parentIndex];
+            if (key >= this.keys[parent]) {
+                break;
+            }
+            this.heap[index] = parent;
+            this.positions[parent] = index;
+            index = parentIndex;
+        }
+        this.heap[index] = item;
+        this.positions[item] = index;
+    }
+
+    private void siftDown(int index) {
+        int item = this.heap[index];
+        float key = this.keys[item];
+        int half = this.size >>> 1;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int child = this.heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < this.size && this.keys[this.heap[rightIndex]] < this.keys[child]) {
+                childIndex = rightIndex;
+                child = this.heap[childIndex];
+            }
+            if (key <= this.keys[child]) {
+                break;
+            }
+            this.heap[index] = child;
+            this.positions[child] = index;
+            index = childIndex;
+        }
+        this.heap[index] = item;
+        this.positions[item] = index;
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to int values that doesn't box either. Uses open
+ * addressing with linear probing, and grows when it gets too full.
+ */
+public class IntIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates a new empty map.
+     */
+    public IntIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty map with room for a given number of entries.
+     *
+     * @param expectedSize The number of entries to make room for.
+     */
+    public IntIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & this.mask;
+        while (this.used[slot] && this.keys[slot] != key) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key          The key to look up.
+     * @param defaultValue The value to return if the key isn't in the map.
+     * @return The value for the key, or the default value.
+     */
+    public int get(int key, int defaultValue) {
+        int slot = slot(key);
+        return this.used[slot] ? this.values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return this.used[slot(key)];
+    }
+
+    /**
+     * Sets the value for a key.
+     *
+     * @param key   The key to set.
+     * @param value The value to set it to.
+     */
+    public void put(int key, int value) {
+        int slot = slot(key);
+        if (!this.used[slot]) {
+            if (2 * (this.size + 1) > this.keys.length) {
+                grow();
+                slot = slot(key);
+            }
+            this.used[slot] = true;
+            this.keys[slot] = key;
+            this.size++;
+        }
+        this.values[slot] = value;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return True if the key was in the map, false otherwise.
+     */
+    public boolean remove(int key) {
+        int slot = slot(key);
+        if (!this.used[slot]) {
+            return false;
+        }
+        this.used[slot] = false;
+        this.size--;
+
+        // Move later entries in the same run back so lookups still find them
+        int next = (slot + 1) & this.mask;
+        while (this.used[next]) {
+            int nextKey = this.keys[next];
+            int nextValue = this.values[next];
+            this.used[next] = false;
+            int target = slot(nextKey);
+            this.used[target] = true;
+            this.keys[target] = nextKey;
+            this.values[target] = nextValue;
+            next = (next + 1) & this.mask;
+        }
+        return true;
+    }
+
+    private void grow() {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry from the map, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * A set of ints stored densely in an array, so that it can be iterated by
+ * index without boxing or allocating an iterator. Removing an element moves
+ * the last element into its place, so removals change the order of the
+ * remaining elements. Clearing the set keeps its storage for reuse.
+ */
+public class IntSet {
+    private int[] elements;
+    private int size;
+    // Key: Element, Value: Index in elements
+    private IntIntMap positions;
+
+    /**
+     * Creates a new empty set.
+     */
+    public IntSet() {
+        this.elements = new int[8];
+        this.size = 0;
+        this.positions = new IntIntMap();
+    }
+
+    /**
+     * Adds an element to the set.
+     *
+     * @param element The element to add.
+     * @return True if the element wasn't already in the set, false otherwise.
+     */
+    public boolean add(int element) {
+        if (this.positions.containsKey(element)) {
+            return false;
+        }
+        if (this.size == this.elements.length) {
+            int[] grown = new int[2 * this.elements.length];
+            System.arraycopy(this.elements, 0, grown, 0, this.size);
+            this.elements = grown;
+        }
+        this.positions.put(element, this.size);
+        this.elements[this.size++] = element;
+        return true;
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element The element to remove.
+     * @return True if the element was in the set, false otherwise.
+     */
+    public boolean remove(int element) {
+        int index = this.positions.get(element, -1);
+        if (index == -1) {
+            return false;
+        }
+        this.positions.remove(element);
+        this.size--;
+        if (index != this.size) {
+            int last = this.elements[this.size];
+            this.elements[index] = last;
+            this.positions.put(last, index);
+        }
+        return true;
+    }
+
+    public boolean contains(int element) {
+        return this.positions.containsKey(element);
+    }
+
+    /**
+     * Returns the element at an index. Indices run from 0 to one less than
+     * the size of the set.
+     *
+     * @param index The index of the element.
+     * @return The element at the index.
+     */
+    public int get(int index) {
+        return this.elements[index];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every element from the set, keeping its storage.
+     */
+    public void clear() {
+        this.positions.clear();
+        this.size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(this.elements[i]);
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,130 @@
+import bc.*;
+
+/**
+ * Keeps a karbonite map up to date by sensing only the locations that are
+ * currently in vision of this player's units, once per turn. The locations
+ * whose karbonite changed during the last refresh are recorded so that
+ * values derived from the map can be updated incrementally.
+ */
+public class KarboniteTracker {
+    private GameApi gc;
+    private Team team;
+    private int[][] karboniteMap;
+    private BitGrid passable;
+    private int mapWidth;
+    private int mapHeight;
+    // Refresh during which each location was last sensed, indexed by
+    // location index
+    private int[] sensed;
+    private int refreshId;
+    // Locations that changed during the last refresh and how much karbonite
+    // each one lost
+    private int[] changed;
+    private int[] deltas;
+    private int changedCount;
+
+    /**
+     * Creates a new tracker.
+     *
+     * @param gc           The game to sense with.
+     * @param team         The team whose units' vision is used.
+     * @param karboniteMap The karbonite map to keep up to date.
+     * @param passable     Map of which locations have passable terrain.
+     */
+    public KarboniteTracker(GameApi gc, Team team, int[][] karboniteMap, BitGrid passable) {
+        this.gc = gc;
+        this.team = team;
+        this.karboniteMap = karboniteMap;
+        this.passable = passable;
+        this.mapWidth = passable.getWidth();
+        this.mapHeight = passable.getHeight();
+        this.sensed = new int[this.mapWidth * this.mapHeight];
+        this.refreshId = 0;
+        this.changed = new int[this.mapWidth * this.mapHeight];
+        this.deltas = new int[this.mapWidth * this.mapHeight];
+        this.changedCount = 0;
+    }
+
+    /**
+     * Senses the karbonite at every passable location in vision of the given
+     * units, sensing each location at most once. Karbonite is never assumed
+     * to increase, so the map keeps the lower of the known and sensed values.
+     *
+     * @param units The units to use the vision of. Units on other teams or
+     *              not on the map are ignored.
+     * @return The number of locations whose karbonite changed.
+     */
+    public int refresh(UnitSnapshot units) {
+        this.refreshId++;
+        this.changedCount = 0;
+
+        for (int row = 0; row < units.size(); row++) {
+            if (units.getTeam(row) != this.team || !units.isOnMap(row)) {
+                continue;
+            }
+            int unitX = units.getX(row);
+            int unitY = units.getY(row);
+            int visionRange = units.getVisionRange(row);
+            int radius = (int) Math.sqrt(visionRange);
+
+            int minY = Math.max(0, unitY - radius);
+            int maxY = Math.min(this.mapHeight - 1, unitY + radius);
+            for (int y = minY; y <= maxY; y++) {
+                int dy = y - unitY;
+                int halfWidth = (int) Math.sqrt(visionRange - dy * dy);
+                int minX = Math.max(0, unitX - halfWidth);
+                int maxX = Math.min(this.mapWidth - 1, unitX + halfWidth);
+                for (int x = minX; x <= maxX; x++) {
+                    sense(x, y);
+                }
+            }
+        }
+
+        return this.changedCount;
+    }
+
+    private void sense(int x, int y) {
+        int index = y * this.mapWidth + x;
+        if (this.sensed[index] == this.refreshId || !this.passable.get(index)) {
+            return;
+        }
+        this.sensed[index] = this.refreshId;
+
+        int known = this.karboniteMap[y][x];
+        int karbonite = (int) Math.min(this.gc.karboniteAt(x, y), known);
+        if (karbonite != known) {
+            this.karboniteMap[y][x] = karbonite;
+            this.changed[this.changedCount] = index;
+            this.deltas[this.changedCount] = known - karbonite;
+            this.changedCount++;
+        }
+    }
+
+    /**
+     * Returns the number of locations whose karbonite changed during the
+     * last refresh.
+     */
+    public int getChangedCount() {
+        return this.changedCount;
+    }
+
+    /**
+     * Returns the index of a location that changed during the last refresh.
+     *
+     * @param i Which change to get, less than the changed count.
+     * @return The index of the location.
+     */
+    public int getChanged(int i) {
+        return this.changed[i];
+    }
+
+    /**
+     * Returns how much karbonite a location lost during the last refresh.
+     *
+     * @param i Which change to get, less than the changed count.
+     * @return The amount of karbonite lost.
+     */
+    public int getDelta(int i) {
+        return this.deltas[i];
+    }
+}
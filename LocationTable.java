@@ -0,0 +1,102 @@
+import bc.*;
+
+/**
+ * Every location on a planet's map, made once at startup so that locations
+ * can be passed to the game without making a new MapLocation each time.
+ * Locations are packed into a single int index, y * width + x, the same way
+ * as in the rest of the player, and the table is indexed by it.
+ *
+ * The MapLocations in the table are shared, so they must never be changed
+ * with setX() or setY().
+ */
+public class LocationTable {
+    // Index returned for locations that are off the map
+    static final int NONE = -1;
+    // Offset of each direction, indexed by direction ordinal
+    static final int[] DX = new int[Direction.values().length];
+    static final int[] DY = new int[Direction.values().length];
+
+    static {
+        for (int i = 0; i < Navigator.DIRECTIONS.length; i++) {
+            DX[Navigator.DIRECTIONS[i].ordinal()] = Navigator.DIR_DX[i];
+            DY[Navigator.DIRECTIONS[i].ordinal()] = Navigator.DIR_DY[i];
+        }
+    }
+
+    private Planet planet;
+    private int width;
+    private int height;
+    // Location at each index
+    private MapLocation[] locations;
+
+    /**
+     * Makes every location on a map.
+     *
+     * @param planet The planet the map is on.
+     * @param width  The width of the map.
+     * @param height The height of the map.
+     */
+    public LocationTable(Planet planet, int width, int height) {
+        this.planet = planet;
+        this.width = width;
+        this.height = height;
+        this.locations = new MapLocation[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                this.locations[y * width + x] = new MapLocation(planet, x, y);
+            }
+        }
+    }
+
+    public boolean isOnMap(int x, int y) {
+        return x >= 0 && y >= 0 && x < this.width && y < this.height;
+    }
+
+    /**
+     * Returns the index of a location.
+     *
+     * @return The index, or NONE if the location is off the map.
+     */
+    public int index(int x, int y) {
+        return isOnMap(x, y) ? y * this.width + x : NONE;
+    }
+
+    public int getX(int index) {
+        return index % this.width;
+    }
+
+    public int getY(int index) {
+        return index / this.width;
+    }
+
+    /**
+     * Returns the location at an index.
+     */
+    public MapLocation get(int index) {
+        return this.locations[index];
+    }
+
+    /**
+     * Returns the location with the given coordinates. Locations off the map
+     * aren't in the table, so a new one is made for them.
+     */
+    public MapLocation get(int x, int y) {
+        if (!isOnMap(x, y)) {
+            return new MapLocation(this.planet, x, y);
+        }
+        return this.locations[y * this.width + x];
+    }
+
+    /**
+     * Returns the location one step from another in a direction, like
+     * MapLocation.add(), but from the table when it is on the map.
+     *
+     * @param location  The location to step from.
+     * @param direction The direction to step in.
+     * @return The location after the step.
+     */
+    public MapLocation add(MapLocation location, Direction direction) {
+        int d = direction.ordinal();
+        return get(location.getX() + DX[d], location.getY() + DY[d]);
+    }
+}
@@ -1,12 +1,12 @@
 import bc.*;
 
 public class MarsPlayer extends PlanetPlayer {
-    public MarsPlayer(GameController gc, Planet planet) {
+    public MarsPlayer(GameApi gc, Planet planet) {
         super(gc, planet);
 
         for (int x = 0; x < this.mapWidth; x++) {
             for (int y = 0; y < this.mapHeight; y++) {
-                if (this.passableMap[y][x]/* && Math.random() < 0.2*/) {
+                if (this.passableMap.get(x, y)/* && Math.random() < 0.2*/) {
                     gc.writeTeamArray(0, x);
                     gc.writeTeamArray(1, y);
                     return; // TODO
@@ -17,31 +17,32 @@ public class MarsPlayer extends PlanetPlayer {
 
     @Override
     public void processTurn() {
-        for (int rocket : this.myUnits.get(UnitType.Rocket)) {
-            Location rocketLoc = this.gc.unit(rocket).location();
-            if (rocketLoc.isOnPlanet(this.planet)) {
+        this.budget.startPhase(TurnBudget.Phase.ECONOMY);
+        for (int i = 0; i < this.myUnits.get(UnitType.Rocket).size(); i++) {
+            int rocket = this.myUnits.get(UnitType.Rocket).get(i);
+            if (this.units.isOnMap(this.units.row(rocket))) {
                 for (Direction d : DIRECTIONS) {
                     if (this.gc.canUnload(rocket, d)) {
                         this.gc.unload(rocket, d);
+                        occupyNextTo(rocket, d);
                     }
                 }
             }
         }
 
-        for (int worker : this.myUnits.get(UnitType.Worker)) {
-            Unit unit = this.gc.unit(worker);
-            if (!unit.location().isOnMap()) {
+        for (int i = 0; i < this.myUnits.get(UnitType.Worker).size(); i++) {
+            int worker = this.myUnits.get(UnitType.Worker).get(i);
+            if (!this.units.isOnMap(this.units.row(worker))) {
                 continue;
             }
 
             Direction toMove = DIRECTIONS[(int) (Math.random() * DIRECTIONS.length)];
-            if (this.gc.isMoveReady(worker) && this.gc.canMove(worker, toMove)) {
-                this.gc.moveRobot(worker, toMove);
-            }
+            tryMove(worker, toMove);
 
             for (Direction d : DIRECTIONS) {
                 if (this.gc.canReplicate(worker, d)) {
                     this.gc.replicate(worker, d);
+                    occupyNextTo(worker, d);
                 }
             }
         }
@@ -0,0 +1,272 @@
+import bc.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Plays the game through the real game controller.
+ */
+public class NativeGameApi implements GameApi {
+    private GameController gc;
+    private Planet planet;
+    // Key: Planet, Value: Starting map of the planet
+    private Map<Planet, PlanetMap> startingMaps;
+    // Key: Planet, Value: Every location on the planet
+    private Map<Planet, LocationTable> locations;
+
+    /**
+     * Connects to the game.
+     *
+     * @param gc The game controller to play through.
+     */
+    public NativeGameApi(GameController gc) {
+        this.gc = gc;
+        this.planet = gc.planet();
+        this.startingMaps = new EnumMap<>(Planet.class);
+        this.locations = new EnumMap<>(Planet.class);
+    }
+
+    private PlanetMap startingMap(Planet planet) {
+        PlanetMap map = this.startingMaps.get(planet);
+        if (map == null) {
+            map = this.gc.startingMap(planet);
+            this.startingMaps.put(planet, map);
+        }
+        return map;
+    }
+
+    private LocationTable locations(Planet planet) {
+        LocationTable table = this.locations.get(planet);
+        if (table == null) {
+            PlanetMap map = startingMap(planet);
+            table = new LocationTable(planet, (int) map.getWidth(), (int) map.getHeight());
+            this.locations.put(planet, table);
+        }
+        return table;
+    }
+
+    private MapLocation location(Planet planet, int x, int y) {
+        return locations(planet).get(x, y);
+    }
+
+    private MapLocation location(int x, int y) {
+        return location(this.planet, x, y);
+    }
+
+    @Override
+    public Planet planet() {
+        return this.planet;
+    }
+
+    @Override
+    public Team team() {
+        return this.gc.team();
+    }
+
+    @Override
+    public long round() {
+        return this.gc.round();
+    }
+
+    @Override
+    public long getTimeLeftMs() {
+        return this.gc.getTimeLeftMs();
+    }
+
+    @Override
+    public long karbonite() {
+        return this.gc.karbonite();
+    }
+
+    @Override
+    public void nextTurn() {
+        this.gc.nextTurn();
+    }
+
+    @Override
+    public int getMapWidth(Planet planet) {
+        return (int) startingMap(planet).getWidth();
+    }
+
+    @Override
+    public int getMapHeight(Planet planet) {
+        return (int) startingMap(planet).getHeight();
+    }
+
+    @Override
+    public boolean isPassableTerrainAt(Planet planet, int x, int y) {
+        return startingMap(planet).isPassableTerrainAt(location(planet, x, y)) == 1;
+    }
+
+    @Override
+    public long initialKarboniteAt(Planet planet, int x, int y) {
+        return startingMap(planet).initialKarboniteAt(location(planet, x, y));
+    }
+
+    @Override
+    public void readInitialUnits(Planet planet, UnitSnapshot snapshot) {
+        snapshot.update(planet, startingMap(planet).getInitial_units());
+    }
+
+    @Override
+    public void readUnits(UnitSnapshot snapshot) {
+        snapshot.update(this.planet, this.gc.units());
+    }
+
+    @Override
+    public int getLocationIndex(int unitID) {
+        Location location = this.gc.unit(unitID).location();
+        if (!location.isOnPlanet(this.planet)) {
+            return LocationTable.NONE;
+        }
+        MapLocation mapLocation = location.mapLocation();
+        return locations(this.planet).index(mapLocation.getX(), mapLocation.getY());
+    }
+
+    @Override
+    public boolean isInGarrison(int unitID) {
+        return this.gc.unit(unitID).location().isInGarrison();
+    }
+
+    @Override
+    public boolean isBuilt(int structureID) {
+        return this.gc.unit(structureID).structureIsBuilt() == 1;
+    }
+
+    @Override
+    public int getGarrisonSize(int structureID) {
+        return (int) this.gc.unit(structureID).structureGarrison().size();
+    }
+
+    @Override
+    public int senseUnitAt(int x, int y) {
+        MapLocation loc = location(x, y);
+        if (!this.gc.hasUnitAtLocation(loc)) {
+            return -1;
+        }
+        return this.gc.senseUnitAtLocation(loc).id();
+    }
+
+    @Override
+    public long karboniteAt(int x, int y) {
+        return this.gc.karboniteAt(location(x, y));
+    }
+
+    @Override
+    public boolean isMoveReady(int unitID) {
+        return this.gc.isMoveReady(unitID);
+    }
+
+    @Override
+    public boolean canMove(int unitID, Direction direction) {
+        return this.gc.canMove(unitID, direction);
+    }
+
+    @Override
+    public void moveRobot(int unitID, Direction direction) {
+        this.gc.moveRobot(unitID, direction);
+    }
+
+    @Override
+    public boolean canAttack(int unitID, int targetID) {
+        return this.gc.canAttack(unitID, targetID);
+    }
+
+    @Override
+    public void attack(int unitID, int targetID) {
+        this.gc.attack(unitID, targetID);
+    }
+
+    @Override
+    public boolean canHarvest(int workerID, Direction direction) {
+        return this.gc.canHarvest(workerID, direction);
+    }
+
+    @Override
+    public void harvest(int workerID, Direction direction) {
+        this.gc.harvest(workerID, direction);
+    }
+
+    @Override
+    public boolean canBlueprint(int workerID, UnitType type, Direction direction) {
+        return this.gc.canBlueprint(workerID, type, direction);
+    }
+
+    @Override
+    public void blueprint(int workerID, UnitType type, Direction direction) {
+        this.gc.blueprint(workerID, type, direction);
+    }
+
+    @Override
+    public boolean canBuild(int workerID, int blueprintID) {
+        return this.gc.canBuild(workerID, blueprintID);
+    }
+
+    @Override
+    public void build(int workerID, int blueprintID) {
+        this.gc.build(workerID, blueprintID);
+    }
+
+    @Override
+    public boolean canReplicate(int workerID, Direction direction) {
+        return this.gc.canReplicate(workerID, direction);
+    }
+
+    @Override
+    public void replicate(int workerID, Direction direction) {
+        this.gc.replicate(workerID, direction);
+    }
+
+    @Override
+    public boolean canLoad(int structureID, int robotID) {
+        return this.gc.canLoad(structureID, robotID);
+    }
+
+    @Override
+    public void load(int structureID, int robotID) {
+        this.gc.load(structureID, robotID);
+    }
+
+    @Override
+    public boolean canUnload(int structureID, Direction direction) {
+        return this.gc.canUnload(structureID, direction);
+    }
+
+    @Override
+    public void unload(int structureID, Direction direction) {
+        this.gc.unload(structureID, direction);
+    }
+
+    @Override
+    public boolean canProduceRobot(int factoryID, UnitType type) {
+        return this.gc.canProduceRobot(factoryID, type);
+    }
+
+    @Override
+    public void produceRobot(int factoryID, UnitType type) {
+        this.gc.produceRobot(factoryID, type);
+    }
+
+    @Override
+    public void launchRocket(int rocketID, int x, int y) {
+        this.gc.launchRocket(rocketID, location(Planet.Mars, x, y));
+    }
+
+    @Override
+    public void queueResearch(UnitType branch) {
+        this.gc.queueResearch(branch);
+    }
+
+    @Override
+    public void readTeamArray(Planet planet, int[] values) {
+        Veci32 array = this.gc.getTeamArray(planet);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+    }
+
+    @Override
+    public void writeTeamArray(int index, int value) {
+        this.gc.writeTeamArray(index, value);
+    }
+}
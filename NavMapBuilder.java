@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Builds the navigation map and distance field for a target with a breadth
+ * first search out from the target. The search can be run in slices, so that
+ * a build can be paused when time runs out and resumed later. A builder can
+ * be reused for any number of targets.
+ */
+public class NavMapBuilder {
+    private BitGrid passable;
+    private int mapWidth;
+    private int mapHeight;
+    private int[] openSet;
+    private int head;
+    private int tail;
+    private int target;
+    private byte[] navMap;
+    private short[] distMap;
+
+    /**
+     * Creates a new builder with no target.
+     *
+     * @param passable Map of which locations have passable terrain.
+     */
+    public NavMapBuilder(BitGrid passable) {
+        this.passable = passable;
+        this.mapHeight = passable.getHeight();
+        this.mapWidth = passable.getWidth();
+        this.openSet = new int[this.mapWidth * this.mapHeight];
+        this.target = -1;
+    }
+
+    /**
+     * Starts building the maps for a new target, abandoning any build in
+     * progress.
+     *
+     * @param target  The index of the target location.
+     * @param navMap  The navigation map to fill in.
+     * @param distMap The distance field to fill in.
+     */
+    public void reset(int target, byte[] navMap, short[] distMap) {
+        this.target = target;
+        this.navMap = navMap;
+        this.distMap = distMap;
+        Arrays.fill(navMap, Navigator.NO_DIR);
+        Arrays.fill(distMap, Navigator.NO_DIST);
+        navMap[target] = Navigator.CENTER;
+        distMap[target] = 0;
+
+        this.head = 0;
+        this.tail = 0;
+        this.openSet[this.tail++] = target;
+    }
+
+    /**
+     * Continues the build by expanding up to a given number of locations.
+     *
+     * @param maxExpansions The most locations to expand before pausing.
+     * @return True if the build is finished, false otherwise.
+     */
+    public boolean step(int maxExpansions) {
+        int[] openSet = this.openSet;
+        byte[] navMap = this.navMap;
+        short[] distMap = this.distMap;
+        for (int expansions = 0; expansions < maxExpansions && this.head < this.tail; expansions++) {
+            int next = openSet[this.head++];
+            int nextX = next % this.mapWidth;
+            int nextY = next / this.mapWidth;
+            for (int d : Navigator.D_DIRS) {
+                int adjX = nextX + Navigator.DIR_DX[d];
+                int adjY = nextY + Navigator.DIR_DY[d];
+                if (adjX < 0 || adjY < 0 || adjX >= this.mapWidth || adjY >= this.mapHeight) {
+                    continue;
+                }
+                int adj = adjY * this.mapWidth + adjX;
+                if (!this.passable.get(adj)) {
+                    continue;
+                }
+                if (navMap[adj] == Navigator.NO_DIR) {
+                    openSet[this.tail++] = adj;
+                    navMap[adj] = (byte) ((d + 4) % Navigator.DIR_DX.length);
+                    distMap[adj] = (short) (distMap[next] + 1);
+                }
+            }
+        }
+        return isDone();
+    }
+
+    /**
+     * Finishes the build without pausing.
+     */
+    public void run() {
+        step(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns whether the build for the current target is finished.
+     *
+     * @return True if there is nothing left to expand, false otherwise.
+     */
+    public boolean isDone() {
+        return this.head >= this.tail;
+    }
+
+    public int getTarget() {
+        return this.target;
+    }
+
+    public byte[] getNavMap() {
+        return this.navMap;
+    }
+
+    public short[] getDistMap() {
+        return this.distMap;
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * A bounded cache of navigation maps and their distance fields, keyed by the
+ * index of their target location. Once the total size of the cached maps
+ * exceeds the memory budget, the least recently used maps are evicted. Pinned
+ * targets are never evicted.
+ */
+public class NavMapCache {
+    private static final int NONE = -1;
+
+    // Cached maps, indexed by target location index
+    private byte[][] navMaps;
+    private short[][] distMaps;
+    private boolean[] pinned;
+    // Doubly linked list of cached targets, most recently used first
+    private int[] prev;
+    private int[] next;
+    private int head;
+    private int tail;
+    private long budgetBytes;
+    private long usedBytes;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new empty cache.
+     *
+     * @param locations   The number of locations on the map.
+     * @param budgetBytes The maximum number of bytes of maps to keep.
+     */
+    public NavMapCache(int locations, long budgetBytes) {
+        this.navMaps = new byte[locations][];
+        this.distMaps = new short[locations][];
+        this.pinned = new boolean[locations];
+        this.prev = new int[locations];
+        this.next = new int[locations];
+        this.head = NONE;
+        this.tail = NONE;
+        this.budgetBytes = budgetBytes;
+        this.usedBytes = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the navigation map for a target and marks it as recently used.
+     *
+     * @param target The index of the target location.
+     * @return The navigation map for the target, or null if it isn't cached.
+     */
+    public byte[] get(int target) {
+        byte[] navMap = this.navMaps[target];
+        if (navMap == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        if (this.head != target) {
+            unlink(target);
+            linkFirst(target);
+        }
+        return navMap;
+    }
+
+    /**
+     * Returns the distance field for a target and marks it as recently used.
+     *
+     * @param target The index of the target location.
+     * @return The walking distance to the target from every location, or null
+     * if it isn't cached.
+     */
+    public short[] getDistances(int target) {
+        return get(target) == null ? null : this.distMaps[target];
+    }
+
+    /**
+     * Returns whether a navigation map for a target is cached, without
+     * marking it as used.
+     *
+     * @param target The index of the target location.
+     * @return True if the map is cached, false otherwise.
+     */
+    public boolean contains(int target) {
+        return this.navMaps[target] != null;
+    }
+
+    /**
+     * Adds a navigation map to the cache, evicting the least recently used
+     * unpinned maps if the memory budget is exceeded.
+     *
+     * @param target  The index of the target location.
+     * @param navMap  The navigation map for the target.
+     * @param distMap The distance field for the target.
+     */
+    public void put(int target, byte[] navMap, short[] distMap) {
+        if (this.navMaps[target] != null) {
+            this.usedBytes -= entryBytes(target);
+            unlink(target);
+        } else {
+            this.size++;
+        }
+        this.navMaps[target] = navMap;
+        this.distMaps[target] = distMap;
+        this.usedBytes += entryBytes(target);
+        linkFirst(target);
+
+        evict();
+    }
+
+    /**
+     * Prevents the map for a target from being evicted. The target doesn't
+     * need to be cached yet.
+     *
+     * @param target The index of the target location.
+     */
+    public void pin(int target) {
+        this.pinned[target] = true;
+    }
+
+    /**
+     * Allows the map for a target to be evicted again.
+     *
+     * @param target The index of the target location.
+     */
+    public void unpin(int target) {
+        this.pinned[target] = false;
+        evict();
+    }
+
+    /**
+     * Evicts least recently used maps until the cache is within budget. The
+     * most recently used map is always kept.
+     */
+    private void evict() {
+        int current = this.tail;
+        while (this.usedBytes > this.budgetBytes && current != NONE && current != this.head) {
+            int previous = this.prev[current];
+            if (!this.pinned[current]) {
+                this.usedBytes -= entryBytes(current);
+                this.navMaps[current] = null;
+                this.distMaps[current] = null;
+                unlink(current);
+                this.size--;
+                this.evictions++;
+            }
+            current = previous;
+        }
+    }
+
+    private long entryBytes(int target) {
+        return this.navMaps[target].length + 2L * this.distMaps[target].length;
+    }
+
+    private void linkFirst(int target) {
+        this.prev[target] = NONE;
+        this.next[target] = this.head;
+        if (this.head != NONE) {
+            this.prev[this.head] = target;
+        }
+        this.head = target;
+        if (this.tail == NONE) {
+            this.tail = target;
+        }
+    }
+
+    private void unlink(int target) {
+        int previous = this.prev[target];
+        int following = this.next[target];
+        if (previous != NONE) {
+            this.next[previous] = following;
+        } else {
+            this.head = following;
+        }
+        if (following != NONE) {
+            this.prev[following] = previous;
+        } else {
+            this.tail = previous;
+        }
+    }
+
+    public long getBudgetBytes() {
+        return this.budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    public long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public String toString() {
+        return this.size + " maps, " + this.usedBytes + "/" + this.budgetBytes + " bytes, " + this.hits + " hits, " + this.misses + " misses, " + this.evictions + " evictions";
+    }
+}
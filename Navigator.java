@@ -1,76 +1,178 @@
 import bc.*;
 
-import java.awt.Point;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Navigator {
     static final Direction[] DIRECTIONS = {Direction.North, Direction.Northeast, Direction.East, Direction.Southeast, Direction.South, Direction.Southwest, Direction.West, Direction.Northwest};
-    static final Map<Direction, Integer> DIR_VAL = new HashMap<>();
-    private static final double SQRT2 = Math.sqrt(2.0);
-    private static final double A_STAR_WEIGHT = 1.0;
+    private static final float SQRT2 = (float) Math.sqrt(2.0);
+    private static final float A_STAR_WEIGHT = 1.0f;
     private static final int LOOKAHEAD_DISTANCE = 3;
-    private static final Direction[] D_DIRS = {Direction.Northeast, Direction.Southeast, Direction.Southwest, Direction.Northwest, Direction.North, Direction.East, Direction.South, Direction.West};
-    private static final Map<Direction, Direction> DIR_HORZ_MIRROR = new HashMap<>();
-    private static final Map<Direction, Direction> DIR_VERT_MIRROR = new HashMap<>();
+    // Direction values stored in navigation maps. 0-7 index DIRECTIONS.
+    static final byte CENTER = 8;
+    static final byte NO_DIR = -1;
+    // Distance value stored in distance fields for unreachable locations
+    static final short NO_DIST = -1;
+    // Path distance returned for unreachable locations
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+    // Results of moving each unit of a group. Waiting units are at the
+    // target, or are only held up by other units of the group; blocked units
+    // are held up by something else.
+    static final byte SWARM_MOVED = 0;
+    static final byte SWARM_WAITING = 1;
+    static final byte SWARM_BLOCKED = 2;
+    // Unit vectors for each index of DIRECTIONS
+    static final int[] DIR_DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    static final int[] DIR_DY = {1, 1, 0, -1, -1, -1, 0, 1};
+    // Cost of moving in each direction of DIRECTIONS
+    private static final float[] STEP_COST = {1, SQRT2, 1, SQRT2, 1, SQRT2, 1, SQRT2};
+    // Index of DIRECTIONS for each unit vector, indexed by (dy + 1) * 3 + dx + 1
+    private static final int[] DIR_FROM_DELTA = {5, 4, 3, 6, CENTER, 2, 7, 0, 1};
+    // Indices of DIRECTIONS in the order the BFS expands them (diagonals first)
+    static final int[] D_DIRS = {1, 3, 5, 7, 0, 2, 4, 6};
+    // Index of the mirror image of each direction across each axis
+    private static final int[] DIR_HORZ_MIRROR = {0, 7, 6, 5, 4, 3, 2, 1};
+    private static final int[] DIR_VERT_MIRROR = {4, 3, 2, 1, 0, 7, 6, 5};
     private static final int[] DIR_ROT_ORDER = {-1, 1, -2, 2};
+    // Transforms from a location to its mirror image
+    private static final int FLIP_X = 1;
+    private static final int FLIP_Y = 2;
+    // Default memory budget for cached navigation maps
+    static final long DEFAULT_CACHE_BYTES = 4 * 1024 * 1024;
+    // Locations to expand between deadline checks when building in the
+    // background
+    private static final int BACKGROUND_SLICE = 256;
+    // Most worker threads to build navigation maps on
+    private static final int MAX_BUILD_WORKERS = 3;
+    // Shared pool for building navigation maps, or null if there is only one
+    // core to run on
+    private static final ForkJoinPool BUILD_POOL = createBuildPool();
 
-    static {
-        DIR_HORZ_MIRROR.put(Direction.North, Direction.North);
-        DIR_HORZ_MIRROR.put(Direction.Northeast, Direction.Northwest);
-        DIR_HORZ_MIRROR.put(Direction.East, Direction.West);
-        DIR_HORZ_MIRROR.put(Direction.Southeast, Direction.Southwest);
-        DIR_HORZ_MIRROR.put(Direction.South, Direction.South);
-        DIR_HORZ_MIRROR.put(Direction.Southwest, Direction.Southeast);
-        DIR_HORZ_MIRROR.put(Direction.West, Direction.East);
-        DIR_HORZ_MIRROR.put(Direction.Northwest, Direction.Northeast);
-
-        DIR_VERT_MIRROR.put(Direction.North, Direction.South);
-        DIR_VERT_MIRROR.put(Direction.Northeast, Direction.Southeast);
-        DIR_VERT_MIRROR.put(Direction.East, Direction.East);
-        DIR_VERT_MIRROR.put(Direction.Southeast, Direction.Northeast);
-        DIR_VERT_MIRROR.put(Direction.South, Direction.North);
-        DIR_VERT_MIRROR.put(Direction.Southwest, Direction.Northwest);
-        DIR_VERT_MIRROR.put(Direction.West, Direction.West);
-        DIR_VERT_MIRROR.put(Direction.Northwest, Direction.Southwest);
-
-        DIR_VAL.put(Direction.North, 0);
-        DIR_VAL.put(Direction.Northeast, 1);
-        DIR_VAL.put(Direction.East, 2);
-        DIR_VAL.put(Direction.Southeast, 3);
-        DIR_VAL.put(Direction.South, 4);
-        DIR_VAL.put(Direction.Southwest, 5);
-        DIR_VAL.put(Direction.West, 6);
-        DIR_VAL.put(Direction.Northwest, 7);
-    }
-
-    private GameController gc;
-    private Map<Point, Direction[][]> navMaps;
-    // private Map<Point, int[][]> navMapDists;
-    private boolean[][] passable;
+    private GameApi gc;
+    // Navigation maps, keyed by the target's y * mapWidth + x. Each map is a
+    // direction value for every location, indexed the same way, along with
+    // the walking distance from every location to the target.
+    private NavMapCache navMaps;
+    // Builds navigation maps when they are needed
+    private NavMapBuilder builder;
+    // Builds navigation maps for predicted targets in the background
+    private NavMapBuilder backgroundBuilder;
+    private boolean isBackgroundBuilding;
+    // Ring buffer of predicted targets waiting to be built in the background
+    private int[] backgroundQueue;
+    private int backgroundHead;
+    private int backgroundSize;
+    private boolean[] isBackgroundScheduled;
+    // Ring buffer of targets that units are waiting on, built in the
+    // background before any predicted target
+    private int[] urgentQueue;
+    private int urgentHead;
+    private int urgentSize;
+    private boolean[] isUrgent;
+    // Navigation maps being built on the pool, indexed by target location
+    // index, and the targets that have one
+    private NavMapTask[] prefetches;
+    private int[] prefetchTargets;
+    private int prefetchCount;
+    // Navigation maps built ahead of time for targets that aren't mirror
+    // images of other targets, or null if none were built
+    private PackedNavMaps precomputed;
+    // The next target to consider when precomputing navigation maps
+    private int precomputeNext;
+    private BitGrid passable;
     private int mapWidth;
     private int mapHeight;
     // private Symmetry symmetry;
     private boolean isVerticallySymmetric;
     private boolean isHorizontallySymmetric;
     private boolean isRotatedSymmetric;
+    // Which algorithm pathfind() uses
+    private SearchMode searchMode;
+    // Reusable pathfinding state, indexed by location. Entries are only valid
+    // when their stamp matches the current search ID.
+    private IndexedMinHeap openSet;
+    private float[] gScore;
+    private int[] cameFrom;
+    private int[] discovered;
+    private int[] closed;
+    private int searchId;
+    // Locations holding units for the current search
+    private BitGrid occupied;
+    // Reusable sort keys for moving groups of units
+    private long[] swarmOrder;
+    // Locations holding units of the group being moved, cleared after every
+    // move of a group
+    private BitGrid swarmCells;
 
-    public Navigator(GameController gc, boolean[][] passable) {
+    public Navigator(GameApi gc, BitGrid passable) {
+        this(gc, passable, SearchMode.A_STAR);
+    }
+
+    public Navigator(GameApi gc, BitGrid passable, SearchMode searchMode) {
+        this(gc, passable, searchMode, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Creates a new navigator.
+     *
+     * @param gc         The game controller to use.
+     * @param passable   Map of which locations have passable terrain.
+     * @param searchMode The algorithm to use for pathfinding around units.
+     * @param cacheBytes Memory budget for cached navigation maps.
+     */
+    public Navigator(GameApi gc, BitGrid passable, SearchMode searchMode, long cacheBytes) {
         this.gc = gc;
-        this.navMaps = new HashMap<>();
-        // this.navMapDists = new HashMap<>();
+        this.searchMode = searchMode;
         this.passable = passable;
-        this.mapHeight = this.passable.length;
-        this.mapWidth = this.passable[0].length;
+        this.mapHeight = passable.getHeight();
+        this.mapWidth = passable.getWidth();
+        this.navMaps = new NavMapCache(this.mapWidth * this.mapHeight, cacheBytes);
+        this.builder = new NavMapBuilder(passable);
+        this.backgroundBuilder = new NavMapBuilder(passable);
+        this.isBackgroundBuilding = false;
+        this.backgroundQueue = new int[this.mapWidth * this.mapHeight];
+        this.backgroundHead = 0;
+        this.backgroundSize = 0;
+        this.isBackgroundScheduled = new boolean[this.mapWidth * this.mapHeight];
+        this.urgentQueue = new int[this.mapWidth * this.mapHeight];
+        this.urgentHead = 0;
+        this.urgentSize = 0;
+        this.isUrgent = new boolean[this.mapWidth * this.mapHeight];
+        this.prefetches = new NavMapTask[this.mapWidth * this.mapHeight];
+        this.prefetchTargets = new int[this.mapWidth * this.mapHeight];
+        this.prefetchCount = 0;
+        this.openSet = new IndexedMinHeap(this.mapWidth * this.mapHeight);
+        this.gScore = new float[this.mapWidth * this.mapHeight];
+        this.cameFrom = new int[this.mapWidth * this.mapHeight];
+        this.discovered = new int[this.mapWidth * this.mapHeight];
+        this.closed = new int[this.mapWidth * this.mapHeight];
+        this.searchId = 0;
+        this.swarmOrder = new long[0];
+        this.swarmCells = new BitGrid(this.mapWidth, this.mapHeight);
 
         findSymmetry();
     }
 
+    /**
+     * Returns whether navigation maps can be built on worker threads. If not,
+     * prefetch() falls back to building in the background after the turn.
+     *
+     * @return True if there is a pool to build on, false otherwise.
+     */
+    static boolean hasBuildPool() {
+        return BUILD_POOL != null;
+    }
+
+    private static ForkJoinPool createBuildPool() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores <= 1) {
+            return null;
+        }
+        return new ForkJoinPool(Math.min(cores - 1, MAX_BUILD_WORKERS));
+    }
+
     private void findSymmetry() {
         this.isVerticallySymmetric = true;
         this.isHorizontallySymmetric = true;
@@ -79,13 +181,13 @@ public class Navigator {
             for (int x = 0; x < this.mapWidth; x++) {
                 int mirrorX = this.mapWidth - 1 - x;
                 int mirrorY = this.mapHeight - 1 - y;
-                if (this.isVerticallySymmetric && this.passable[y][x] != this.passable[mirrorY][x]) {
+                if (this.isVerticallySymmetric && this.passable.get(x, y) != this.passable.get(x, mirrorY)) {
                     this.isVerticallySymmetric = false;
                 }
-                if (this.isHorizontallySymmetric && this.passable[y][x] != this.passable[y][mirrorX]) {
+                if (this.isHorizontallySymmetric && this.passable.get(x, y) != this.passable.get(mirrorX, y)) {
                     this.isHorizontallySymmetric = false;
                 }
-                if (this.isRotatedSymmetric && this.passable[y][x] != this.passable[mirrorY][mirrorX]) {
+                if (this.isRotatedSymmetric && this.passable.get(x, y) != this.passable.get(mirrorX, mirrorY)) {
                     this.isRotatedSymmetric = false;
                 }
             }
@@ -94,111 +196,363 @@ public class Navigator {
         System.out.println("Symmetry: " + this.isVerticallySymmetric + ":" + this.isHorizontallySymmetric + ":" + this.isRotatedSymmetric);
     }
 
-    // public void precomputeNavMaps(Planet planet) {
-    //     // findSymmetry();
-    //
-    //     // Create nav maps
-    //     for (int y = 0; y < this.mapHeight / 2; y++) {
-    //         for (int x = 0; x < this.mapWidth; x++) {
-    //             // Don't create navigation for an impassable location
-    //             if (!this.passable[y][x]) {
-    //                 continue;
-    //             }
-    //
-    //             MapLocation target = new MapLocation(planet, x, y);
-    //             Queue<MapLocation> openSet = new LinkedList<>();
-    //             Direction[][] navMap = new Direction[this.mapHeight][this.mapWidth];
-    //             Direction[][] symNavMap = new Direction[this.mapHeight][this.mapWidth];
-    //
-    //             openSet.add(target);
-    //             while (!openSet.isEmpty()) {
-    //                 MapLocation next = openSet.remove();
-    //                 for (Direction d : D_DIRS) {
-    //                     MapLocation adj = next.add(d);
-    //                     int adjX = adj.getX();
-    //                     int adjY = adj.getY();
-    //                     if (isOOB(adjX, adjY) || !this.passable[adjY][adjX]) {
-    //                         continue;
-    //                     }
-    //                     if (navMap[adjY][adjX] == null) {
-    //                         openSet.add(adj);
-    //
-    //                         Direction navDir = bc.bcDirectionOpposite(d);
-    //                         navMap[adjY][adjX] = navDir;
-    //
-    //                         switch (this.symmetry) {
-    //                         case VERTICAL:
-    //     symNavMap[this.mapHeight - 1 - adjY][adjX] = DIR_VERT_MIRROR.get(navDir);
-    //     navMapDist[this.mapHeight - 1 - adjY][adjX] = navMapDist[next.getY()][next.getX()] + 1;
-    //                             break;
-    //                         case HORIZONTAL:
-    //     symNavMap[y][this.mapWidth - 1 - adjX] = DIR_HORZ_MIRROR.get(navDir);
-    //                             break;
-    //                         case ROTATED:
-    //     symNavMap[this.mapHeight - 1 - adjY][this.mapWidth - 1 - adjX] = d;
-    //                             break;
-    // }
-    //                     }
-    //                 }
-    //             }
-    //             this.navMaps.put(new Point(x, y), navMap);
-    //             switch (this.symmetry) {
-    //                 case VERTICAL:
-    //                     this.navMaps.put(new Point(x, this.mapHeight - 1 - y), symNavMap);
-    //                     break;
-    //                 case HORIZONTAL:
-    //                     this.navMaps.put(new Point(this.mapWidth - 1 - x, y), symNavMap);
-    //                     break;
-    //                 case ROTATED:
-    //                     this.navMaps.put(new Point(this.mapWidth - 1 - x, this.mapHeight - 1 - y), symNavMap);
-    //                     break;
-    //             }
-    //         }
-    //     }
-    // }
+    /**
+     * Builds navigation maps for every passable target until a deadline
+     * passes. Maps are only built for targets in the canonical part of the
+     * map; maps for the rest are derived from their mirror images when
+     * needed. Can be called again to continue where it left off.
+     *
+     * @param deadlineNanos The System.nanoTime() to stop building maps at.
+     * @return True if the maps for all targets have been built, false
+     * otherwise.
+     */
+    public boolean precomputeNavMaps(long deadlineNanos) {
+        int size = this.mapWidth * this.mapHeight;
+        if (this.precomputed == null) {
+            this.precomputed = new PackedNavMaps(size);
+            this.precomputeNext = 0;
+        }
+        if (this.precomputeNext >= size) {
+            return true;
+        }
+
+        byte[] navMap = new byte[size];
+        short[] distMap = new short[size];
+        while (this.precomputeNext < size) {
+            if (System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+            int target = this.precomputeNext++;
+            int x = target % this.mapWidth;
+            int y = target / this.mapWidth;
+            // Don't create navigation for an impassable or mirrored location
+            if (!this.passable.get(target) || canonicalTransform(x, y) != 0) {
+                continue;
+            }
+            this.builder.reset(target, navMap, distMap);
+            this.builder.run();
+            this.precomputed.put(target, navMap);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the navigation maps that have been precomputed.
+     *
+     * @return The precomputed navigation maps, or null if none were built.
+     */
+    public PackedNavMaps getPrecomputedNavMaps() {
+        return this.precomputed;
+    }
+
+    /**
+     * Returns the transform that takes a location to its canonical mirror
+     * image, which is the one whose navigation map is precomputed.
+     *
+     * @param x The x-coordinate of the location.
+     * @param y The y-coordinate of the location.
+     * @return A combination of FLIP_X and FLIP_Y, or 0 if the location is
+     * canonical.
+     */
+    private int canonicalTransform(int x, int y) {
+        int transform = 0;
+        if (this.isVerticallySymmetric && y > this.mapHeight - 1 - y) {
+            transform |= FLIP_Y;
+        }
+        if (this.isHorizontallySymmetric && x > this.mapWidth - 1 - x) {
+            transform |= FLIP_X;
+        }
+        if (!this.isVerticallySymmetric && !this.isHorizontallySymmetric && this.isRotatedSymmetric) {
+            int index = y * this.mapWidth + x;
+            if (index > this.mapWidth * this.mapHeight - 1 - index) {
+                transform = FLIP_X | FLIP_Y;
+            }
+        }
+        return transform;
+    }
+
+    /**
+     * Returns the index of the mirror image of a location.
+     */
+    private int mirrorIndex(int x, int y, int transform) {
+        if ((transform & FLIP_X) != 0) {
+            x = this.mapWidth - 1 - x;
+        }
+        if ((transform & FLIP_Y) != 0) {
+            y = this.mapHeight - 1 - y;
+        }
+        return y * this.mapWidth + x;
+    }
+
+    /**
+     * Returns the mirror image of a direction value.
+     */
+    private static int mirrorDirection(int dir, int transform) {
+        if (dir == NO_DIR || dir == CENTER) {
+            return dir;
+        }
+        if ((transform & FLIP_X) != 0) {
+            dir = DIR_HORZ_MIRROR[dir];
+        }
+        if ((transform & FLIP_Y) != 0) {
+            dir = DIR_VERT_MIRROR[dir];
+        }
+        return dir;
+    }
 
     private boolean isOOB(int x, int y) {
         return x < 0 || y < 0 || x >= this.mapWidth || y >= this.mapHeight;
     }
 
-    // public void doNavigate(Set<Unit> units, MapLocation target) {
-    //     Map<Integer, Direction> directions = navigate(units, target);
-    //     for (int unit : directions.keySet()) {
-    //         if (this.gc.isMoveReady(unit) && this.gc.canMove(unit, directions.get(unit))) {
-    //             this.gc.moveRobot(unit, directions.get(unit));
-    //         }
-    //     }
-    // }
-    //
-    // public Map<Integer, Direction> navigate(Set<Unit> units, MapLocation target) {
-    //     Point targetPoint = new Point(target.getX(), target.getY());
-    //     ensureNavMap(target, targetPoint);
-    //     Map<Integer, Direction> directions = new HashMap<>();
-    //
-    //     Queue<Unit> orderedUnits = new PriorityQueue<>((u1, u2) -> {
-    //         MapLocation u1Loc = u1.location().mapLocation();
-    //         MapLocation u2Loc = u2.location().mapLocation();
-    //
-    //         int u1Dist = this.navMapDists.get(targetPoint)[u1Loc.getY()][u1Loc.getX()];
-    //         int u2Dist = this.navMapDists.get(targetPoint)[u2Loc.getY()][u2Loc.getX()];
-    //
-    //         return Integer.compare(u2Dist, u1Dist);
-    //     });
-    //     for (Unit unit : units) {
-    //         orderedUnits.add(unit);
-    //     }
-    //
-    //     for (Unit unit : orderedUnits) {
-    //         directions.put(unit.id(), navigate(unit.id(), unit.location().mapLocation(), target));
-    //     }
-    //
-    //     return directions;
-    // }
-
-    private void ensureNavMap(MapLocation target, Point targetPoint) {
-        if (!this.navMaps.containsKey(targetPoint)) {
-            createNavMap(target);
+    /**
+     * Moves a group of units toward a shared target in a single pass. Units
+     * are moved in order of their walking distance to the target, closest
+     * first, so that the cells they leave are available to the units behind
+     * them. Each unit takes the free cell among its navigation map direction
+     * and the directions next to it that is closest to the target. A unit
+     * queued behind other units of the group steps sideways to a cell just as
+     * close instead, so that the group spreads out around the target.
+     * <p>
+     * Moves are made without asking the game whether they are allowed, so
+     * every unit must be ready to move and the occupied map must hold every
+     * unit on the map.
+     *
+     * @param units    IDs of the units to move.
+     * @param unitX    The x-coordinate of each unit. Updated as units move.
+     * @param unitY    The y-coordinate of each unit. Updated as units move.
+     * @param count    The number of units to move.
+     * @param target   The location to move the units toward.
+     * @param occupied Locations that currently hold units. Updated as units
+     *                 move.
+     * @param results  Set to SWARM_MOVED, SWARM_WAITING or SWARM_BLOCKED for
+     *                 each unit.
+     * @return The number of units that moved.
+     */
+    public int moveSwarm(int[] units, int[] unitX, int[] unitY, int count, MapLocation target, BitGrid occupied, byte[] results) {
+        short[] distMap = ensureDistances(target.getX(), target.getY());
+        byte[] navMap = this.navMaps.get(target.getY() * this.mapWidth + target.getX());
+
+        // Order the units by distance to the target, keeping their index in
+        // the low bits of the sort key
+        if (this.swarmOrder.length < count) {
+            this.swarmOrder = new long[Math.max(count, 2 * this.swarmOrder.length)];
+        }
+        for (int i = 0; i < count; i++) {
+            int dist = distMap[unitY[i] * this.mapWidth + unitX[i]];
+            this.swarmOrder[i] = ((long) (dist == NO_DIST ? Short.MAX_VALUE : dist) << 32) | i;
+            this.swarmCells.set(unitX[i], unitY[i]);
+            results[i] = SWARM_WAITING;
+        }
+        Arrays.sort(this.swarmOrder, 0, count);
+
+        int movedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int unitIndex = (int) this.swarmOrder[i];
+            int x = unitX[unitIndex];
+            int y = unitY[unitIndex];
+            int current = y * this.mapWidth + x;
+            int nextDir = navMap[current];
+            if (nextDir == NO_DIR || nextDir == CENTER) {
+                continue;
+            }
+
+            // Pick the free adjacent cell that gets closest to the target,
+            // noting what holds the closer cells that aren't free
+            int bestDir = -1;
+            int bestDist = distMap[current];
+            int sideDir = -1;
+            boolean isBehindSwarm = false;
+            boolean isBlocked = false;
+            for (int j = -1; j < DIR_ROT_ORDER.length; j++) {
+                int d = j < 0 ? nextDir : (nextDir + DIR_ROT_ORDER[j] + DIRECTIONS.length) % DIRECTIONS.length;
+                int adjX = x + DIR_DX[d];
+                int adjY = y + DIR_DY[d];
+                if (isOOB(adjX, adjY)) {
+                    continue;
+                }
+                int adj = adjY * this.mapWidth + adjX;
+                int adjDist = distMap[adj];
+                if (!this.passable.get(adj) || adjDist == NO_DIST) {
+                    continue;
+                }
+                if (occupied.get(adj)) {
+                    if (adjDist < distMap[current]) {
+                        if (this.swarmCells.get(adj)) {
+                            isBehindSwarm = true;
+                        } else {
+                            isBlocked = true;
+                        }
+                    }
+                } else if (adjDist < bestDist) {
+                    bestDir = d;
+                    bestDist = adjDist;
+                } else if (adjDist == distMap[current] && sideDir == -1) {
+                    sideDir = d;
+                }
+            }
+            if (bestDir == -1 && isBehindSwarm) {
+                bestDir = sideDir;
+            }
+            if (bestDir == -1) {
+                if (isBlocked) {
+                    results[unitIndex] = SWARM_BLOCKED;
+                }
+                continue;
+            }
+
+            this.gc.moveRobot(units[unitIndex], DIRECTIONS[bestDir]);
+            unitX[unitIndex] = x + DIR_DX[bestDir];
+            unitY[unitIndex] = y + DIR_DY[bestDir];
+            int next = unitY[unitIndex] * this.mapWidth + unitX[unitIndex];
+            occupied.clear(current);
+            occupied.set(next);
+            this.swarmCells.clear(current);
+            this.swarmCells.set(next);
+            results[unitIndex] = SWARM_MOVED;
+            movedCount++;
+        }
+
+        for (int i = 0; i < count; i++) {
+            this.swarmCells.clear(unitX[i], unitY[i]);
+        }
+        return movedCount;
+    }
+
+    /**
+     * Returns the navigation map for a target, creating it if it doesn't
+     * exist yet.
+     *
+     * @param targetX The x-coordinate of the target.
+     * @param targetY The y-coordinate of the target.
+     * @return The navigation map for the given target.
+     */
+    private byte[] ensureNavMap(int targetX, int targetY) {
+        byte[] navMap = this.navMaps.get(targetY * this.mapWidth + targetX);
+        if (navMap == null) {
+            long start = Profiler.start();
+            navMap = createNavMap(targetX, targetY);
+            Profiler.stop(Profiler.Section.CREATE_NAV_MAP, start);
+        }
+        return navMap;
+    }
+
+    /**
+     * Returns the distance field for a target, creating it if it doesn't
+     * exist yet.
+     *
+     * @param targetX The x-coordinate of the target.
+     * @param targetY The y-coordinate of the target.
+     * @return The walking distance to the given target from every location.
+     */
+    private short[] ensureDistances(int targetX, int targetY) {
+        short[] distMap = this.navMaps.getDistances(targetY * this.mapWidth + targetX);
+        if (distMap == null) {
+            long start = Profiler.start();
+            createNavMap(targetX, targetY);
+            Profiler.stop(Profiler.Section.CREATE_NAV_MAP, start);
+            distMap = this.navMaps.getDistances(targetY * this.mapWidth + targetX);
+        }
+        return distMap;
+    }
+
+    /**
+     * Returns the number of moves needed to walk between two locations,
+     * ignoring units.
+     *
+     * @param from The location to walk from.
+     * @param to   The location to walk to.
+     * @return The walking distance between the locations, or UNREACHABLE if
+     * there is no path between them.
+     */
+    public int pathDistance(MapLocation from, MapLocation to) {
+        short[] distMap = ensureDistances(to.getX(), to.getY());
+        int dist = distMap[from.getY() * this.mapWidth + from.getX()];
+        return dist == NO_DIST ? UNREACHABLE : dist;
+    }
+
+    /**
+     * Returns the candidate that is the shortest walk away from a location.
+     * Ties, and candidates that can't be reached, are decided by straight
+     * line distance.
+     *
+     * @param from       The location to walk from.
+     * @param candidates The locations to choose from.
+     * @return The nearest candidate, or null if there are no candidates.
+     */
+    public MapLocation nearestOf(MapLocation from, List<MapLocation> candidates) {
+        short[] distMap = ensureDistances(from.getX(), from.getY());
+        MapLocation nearest = null;
+        int nearestDist = UNREACHABLE;
+        long nearestDistSq = Long.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            MapLocation candidate = candidates.get(i);
+            int dist = distMap[candidate.getY() * this.mapWidth + candidate.getX()];
+            if (dist == NO_DIST) {
+                dist = UNREACHABLE;
+            }
+            long distSq = distanceSquared(from.getX(), from.getY(), candidate.getX(), candidate.getY());
+            if (dist < nearestDist || (dist == nearestDist && distSq < nearestDistSq)) {
+                nearest = candidate;
+                nearestDist = dist;
+                nearestDistSq = distSq;
+            }
         }
+        return nearest;
+    }
+
+    /**
+     * Returns whether the navigation map for a target is ready, so that
+     * navigating to it won't have to build one.
+     *
+     * @param target The target to check.
+     * @return True if the map is cached or precomputed, false otherwise.
+     */
+    public boolean hasNavMap(MapLocation target) {
+        int targetX = target.getX();
+        int targetY = target.getY();
+        if (this.navMaps.contains(targetY * this.mapWidth + targetX)) {
+            return true;
+        }
+        return this.precomputed != null && this.precomputed.contains(mirrorIndex(targetX, targetY, canonicalTransform(targetX, targetY)));
+    }
+
+    /**
+     * Returns whether the distance field for a target is ready, so that
+     * getting distances to it won't have to build one.
+     *
+     * @param target The target to check.
+     * @return True if the distance field is cached, false otherwise.
+     */
+    public boolean hasDistances(MapLocation target) {
+        return this.navMaps.contains(target.getY() * this.mapWidth + target.getX());
+    }
+
+    /**
+     * Keeps the navigation map for a target cached until it is unpinned.
+     *
+     * @param target The target to keep the navigation map of.
+     */
+    public void pin(MapLocation target) {
+        this.navMaps.pin(target.getY() * this.mapWidth + target.getX());
+    }
+
+    /**
+     * Allows the navigation map for a target to be evicted from the cache.
+     *
+     * @param target The target to release the navigation map of.
+     */
+    public void unpin(MapLocation target) {
+        this.navMaps.unpin(target.getY() * this.mapWidth + target.getX());
+    }
+
+    /**
+     * Returns the cache of navigation maps, for inspecting its usage.
+     *
+     * @return The navigation map cache.
+     */
+    public NavMapCache getNavMapCache() {
+        return this.navMaps;
     }
 
     public boolean tryMove(int unit, Direction direction) {
@@ -210,37 +564,63 @@ public class Navigator {
     }
 
     public Direction navigate(int unit, MapLocation start, MapLocation target) {
-        Point targetPoint = new Point(target.getX(), target.getY());
-        ensureNavMap(target, targetPoint);
-        Direction nextDir = this.navMaps.get(targetPoint)[start.getY()][start.getX()];
-        if (nextDir == null || nextDir == Direction.Center) {
+        long startNanos = Profiler.start();
+        Direction direction = followNavMap(unit, start, target);
+        Profiler.stop(Profiler.Section.NAVIGATE, startNanos);
+        return direction;
+    }
+
+    /**
+     * Returns the direction a unit should move in to follow the navigation
+     * map to a target, turning slightly if the unit can't move that way.
+     */
+    private Direction followNavMap(int unit, MapLocation start, MapLocation target) {
+        int targetX = target.getX();
+        int targetY = target.getY();
+        int transform = canonicalTransform(targetX, targetY);
+        int canonicalTarget = mirrorIndex(targetX, targetY, transform);
+        // Use the precomputed map if there is one
+        byte[] navMap = null;
+        if (this.precomputed == null || !this.precomputed.contains(canonicalTarget)) {
+            navMap = ensureNavMap(targetX, targetY);
+        }
+
+        int startX = start.getX();
+        int startY = start.getY();
+        int nextDir = directionAt(navMap, canonicalTarget, transform, startX, startY);
+        if (nextDir == NO_DIR || nextDir == CENTER) {
             return Direction.Center;
         }
 
         // Move in this direction if possible
-        if (this.gc.canMove(unit, nextDir)) {
-            return nextDir;
+        if (this.gc.canMove(unit, DIRECTIONS[nextDir])) {
+            return DIRECTIONS[nextDir];
         }
 
-        MapLocation lookaheadPoint = start;
+        int lookaheadX = startX;
+        int lookaheadY = startY;
         for (int i = 0; i < LOOKAHEAD_DISTANCE; i++) {
-            lookaheadPoint = lookaheadPoint.add(this.navMaps.get(targetPoint)[lookaheadPoint.getY()][lookaheadPoint.getX()]);
+            int lookaheadDir = directionAt(navMap, canonicalTarget, transform, lookaheadX, lookaheadY);
+            if (lookaheadDir == NO_DIR || lookaheadDir == CENTER) {
+                break;
+            }
+            lookaheadX += DIR_DX[lookaheadDir];
+            lookaheadY += DIR_DY[lookaheadDir];
         }
 
         // If not possible, try turning slightly left or right and see if a spot
         // is open that is closer to the target.
         Direction bestAdjustedDir = Direction.Center;
         // long bestAdjustedDirDist = Integer.MAX_VALUE; // Use this for back and forth motion instead
-        long bestAdjustedDirDist = start.distanceSquaredTo(lookaheadPoint);
+        long bestAdjustedDirDist = distanceSquared(startX, startY, lookaheadX, lookaheadY);
         for (int i = 0; i < DIR_ROT_ORDER.length; i++) {
-            int index = (DIR_VAL.get(nextDir) + DIR_ROT_ORDER[i] + DIRECTIONS.length) % DIRECTIONS.length;
+            int index = (nextDir + DIR_ROT_ORDER[i] + DIRECTIONS.length) % DIRECTIONS.length;
             Direction adjustedDir = DIRECTIONS[index];
             if (!this.gc.canMove(unit, adjustedDir)) {
                 continue;
             }
 
-            MapLocation newPos = start.add(adjustedDir);
-            long distanceToTarget = newPos.distanceSquaredTo(lookaheadPoint);
+            long distanceToTarget = distanceSquared(startX + DIR_DX[index], startY + DIR_DY[index], lookaheadX, lookaheadY);
             if (distanceToTarget < bestAdjustedDirDist) {
                 bestAdjustedDir = adjustedDir;
                 bestAdjustedDirDist = distanceToTarget;
@@ -250,153 +630,440 @@ public class Navigator {
         return bestAdjustedDir;
     }
 
+    /**
+     * Returns the direction to move in from a location, read from either a
+     * cached navigation map or a precomputed one.
+     *
+     * @param navMap          The cached navigation map, or null to use the
+     *                        precomputed map of the canonical target.
+     * @param canonicalTarget The index of the canonical mirror image of the
+     *                        target.
+     * @param transform       The transform from the target to its canonical
+     *                        mirror image.
+     * @return The direction value for the location.
+     */
+    private int directionAt(byte[] navMap, int canonicalTarget, int transform, int x, int y) {
+        if (navMap != null) {
+            return navMap[y * this.mapWidth + x];
+        }
+        return mirrorDirection(this.precomputed.get(canonicalTarget, mirrorIndex(x, y, transform)), transform);
+    }
+
+    /**
+     * Returns the squared Euclidean distance between two locations.
+     */
+    private static long distanceSquared(int x1, int y1, int x2, int y2) {
+        long dx = x1 - x2;
+        long dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
     /**
      * Creates a navigation map for a target map location and the location's
-     * symmetrical pair.
+     * symmetrical pairs.
      *
-     * @param target The location to create a navigation map for.
+     * @param targetX The x-coordinate of the location to create a navigation
+     *                map for.
+     * @param targetY The y-coordinate of the location to create a navigation
+     *                map for.
+     * @return The navigation map for the given target.
      */
-    private void createNavMap(MapLocation target) {
-        int targetX = target.getX();
-        int targetY = target.getY();
-        Point targetPoint = new Point(targetX, targetY);
+    private byte[] createNavMap(int targetX, int targetY) {
+        int target = targetY * this.mapWidth + targetX;
+        // Wait for the build if it was already started on the pool
+        NavMapTask prefetch = this.prefetches[target];
+        if (prefetch != null) {
+            prefetch.join();
+            removePrefetch(target);
+            putNavMap(target, prefetch.navMap, prefetch.distMap);
+            return prefetch.navMap;
+        }
 
-        Queue<MapLocation> openSet = new LinkedList<>();
-        Direction[][] navMap = new Direction[this.mapHeight][this.mapWidth];
-        Direction[][] vertSymNavMap = new Direction[this.mapHeight][this.mapWidth];
-        Direction[][] horzSymNavMap = new Direction[this.mapHeight][this.mapWidth];
-        Direction[][] rotSymNavMap = new Direction[this.mapHeight][this.mapWidth];
-        // int[][] navMapDist = new int[this.mapHeight][this.mapWidth];
-        // int[][] symNavMapDist = new int[this.mapHeight][this.mapWidth];
+        // Finish the build if it was already started in the background
+        if (this.isBackgroundBuilding && this.backgroundBuilder.getTarget() == target) {
+            this.backgroundBuilder.run();
+            this.isBackgroundBuilding = false;
+            putNavMap(target, this.backgroundBuilder.getNavMap(), this.backgroundBuilder.getDistMap());
+            return this.backgroundBuilder.getNavMap();
+        }
 
-        Point vertSymPoint = new Point(targetX, this.mapHeight - 1 - targetY);
-        Point horzSymPoint = new Point(this.mapWidth - 1 - targetX, targetY);
-        Point rotSymPoint = new Point(this.mapWidth - 1 - targetX, this.mapHeight - 1 - targetY);
+        int size = this.mapWidth * this.mapHeight;
+        byte[] navMap = new byte[size];
+        short[] navMapDist = new short[size];
+        this.builder.reset(target, navMap, navMapDist);
+        this.builder.run();
+        putNavMap(target, navMap, navMapDist);
 
-        navMap[targetY][targetX] = Direction.Center;
-        // navMapDist[targetY][targetX] = 0;
+        return navMap;
+    }
 
-        vertSymNavMap[vertSymPoint.y][vertSymPoint.x] = Direction.Center;
-        horzSymNavMap[horzSymPoint.y][horzSymPoint.x] = Direction.Center;
-        rotSymNavMap[rotSymPoint.y][rotSymPoint.x] = Direction.Center;
-        // symNavMapDist[symmetricPoint.y][symmetricPoint.x] = 0;
+    /**
+     * Caches a finished navigation map along with the mirror images of it for
+     * the target's symmetrical pairs.
+     *
+     * @param target  The index of the target of the map.
+     * @param navMap  The navigation map for the target.
+     * @param distMap The distance field for the target.
+     */
+    private void putNavMap(int target, byte[] navMap, short[] distMap) {
+        int targetX = target % this.mapWidth;
+        int targetY = target / this.mapWidth;
 
-        openSet.add(target);
-        while (!openSet.isEmpty()) {
-            MapLocation next = openSet.remove();
-            for (Direction d : D_DIRS) {
-                MapLocation adj = next.add(d);
-                int adjX = adj.getX();
-                int adjY = adj.getY();
-                if (isOOB(adjX, adjY) || !this.passable[adjY][adjX]) {
-                    continue;
-                }
-                if (navMap[adjY][adjX] == null) {
-                    openSet.add(adj);
+        // Add the requested map last so that it is the most recently used
+        if (this.isVerticallySymmetric) {
+            putMirroredNavMap(targetX, targetY, FLIP_Y, navMap, distMap);
+        }
+        if (this.isHorizontallySymmetric) {
+            putMirroredNavMap(targetX, targetY, FLIP_X, navMap, distMap);
+        }
+        if (this.isRotatedSymmetric) {
+            putMirroredNavMap(targetX, targetY, FLIP_X | FLIP_Y, navMap, distMap);
+        }
+        this.navMaps.put(target, navMap, distMap);
+    }
 
-                    Direction navDir = bc.bcDirectionOpposite(d);
-                    navMap[adjY][adjX] = navDir;
-                    // navMapDist[adjY][adjX] = navMapDist[next.getY()][next.getX()] + 1;
+    /**
+     * Starts building the navigation map for a target on a worker thread, so
+     * that several maps can be built at once and navigation to the target
+     * only waits for whatever is left of the build.
+     * <p>
+     * If there is only one core, there is no thread to build on, and callers
+     * prefetch because the turn is out of time, so building now would only
+     * go further over. The target is scheduled with scheduleUrgent() instead,
+     * and its map is built first in the background time after the turn,
+     * evicting unpinned maps if the cache is full. Until then hasNavMap()
+     * stays false, and units head straight for the target.
+     *
+     * @param target The location that units are about to navigate to.
+     */
+    public void prefetch(MapLocation target) {
+        int index = target.getY() * this.mapWidth + target.getX();
+        if (this.navMaps.contains(index) || this.prefetches[index] != null) {
+            return;
+        }
+        if (BUILD_POOL == null) {
+            // No spare core, so wait for the time after the turn
+            scheduleUrgent(target);
+            return;
+        }
 
-                    if (this.isVerticallySymmetric) {
-                        vertSymNavMap[this.mapHeight - 1 - adjY][adjX] = DIR_VERT_MIRROR.get(navDir);
-                        // symNavMapDist[this.mapHeight - 1 - adjY][adjX] = navMapDist[adjY][adjX];
-                    }
-                    if (this.isHorizontallySymmetric) {
-                        horzSymNavMap[adjY][this.mapWidth - 1 - adjX] = DIR_HORZ_MIRROR.get(navDir);
-                        // symNavMapDist[adjY][this.mapWidth - 1 - adjX] = navMapDist[adjY][adjX];
-                    }
-                    if (this.isRotatedSymmetric) {
-                        rotSymNavMap[this.mapHeight - 1 - adjY][this.mapWidth - 1 - adjX] = d;
-                        // symNavMapDist[this.mapHeight - 1 - adjY][this.mapWidth - 1 - adjX] = navMapDist[adjY][adjX];
-                    }
-                }
+        int size = this.mapWidth * this.mapHeight;
+        NavMapTask task = new NavMapTask(this.passable, index, new byte[size], new short[size]);
+        BUILD_POOL.execute(task);
+        this.prefetches[index] = task;
+        this.prefetchTargets[this.prefetchCount++] = index;
+    }
+
+    /**
+     * Caches the navigation maps of every finished build on the pool. Should
+     * be called at the start of every turn, so that finished maps are found
+     * by hasNavMap() and take up their share of the cache even on turns with
+     * no spare time for background builds.
+     */
+    public void installFinishedPrefetches() {
+        for (int i = this.prefetchCount - 1; i >= 0; i--) {
+            int target = this.prefetchTargets[i];
+            NavMapTask prefetch = this.prefetches[target];
+            if (prefetch.isDone()) {
+                removePrefetch(target);
+                putNavMap(target, prefetch.navMap, prefetch.distMap);
             }
         }
-        this.navMaps.put(targetPoint, navMap);
-        // this.navMapDists.put(targetPoint, navMapDist);
+    }
 
-        if (this.isVerticallySymmetric) {
-            this.navMaps.put(vertSymPoint, vertSymNavMap);
+    private void removePrefetch(int target) {
+        this.prefetches[target] = null;
+        for (int i = 0; i < this.prefetchCount; i++) {
+            if (this.prefetchTargets[i] == target) {
+                this.prefetchTargets[i] = this.prefetchTargets[--this.prefetchCount];
+                break;
+            }
         }
-        if (this.isHorizontallySymmetric) {
-            this.navMaps.put(horzSymPoint, horzSymNavMap);
+    }
+
+    /**
+     * Adds a target to the queue of navigation maps that units are waiting
+     * on. These are built in the background ahead of every predicted target,
+     * and may evict unpinned maps from the cache to make room.
+     *
+     * @param target The location that units are waiting to navigate to.
+     */
+    public void scheduleUrgent(MapLocation target) {
+        int index = target.getY() * this.mapWidth + target.getX();
+        if (this.isUrgent[index]) {
+            return;
         }
-        if (this.isRotatedSymmetric) {
-            this.navMaps.put(rotSymPoint, rotSymNavMap);
+        this.isUrgent[index] = true;
+        this.urgentQueue[(this.urgentHead + this.urgentSize) % this.urgentQueue.length] = index;
+        this.urgentSize++;
+    }
+
+    /**
+     * Adds a target to the queue of navigation maps to build in the
+     * background.
+     *
+     * @param target The location that units are expected to navigate to.
+     */
+    public void schedulePrecompute(MapLocation target) {
+        int index = target.getY() * this.mapWidth + target.getX();
+        if (this.isBackgroundScheduled[index]) {
+            return;
         }
-        // this.navMapDists.put(symmetricPoint, symNavMapDist);
+        this.isBackgroundScheduled[index] = true;
+        this.backgroundQueue[(this.backgroundHead + this.backgroundSize) % this.backgroundQueue.length] = index;
+        this.backgroundSize++;
     }
 
-    public Direction pathfind(Point start, Point target, boolean[][] passable, Set<Point> impassable) {
-        // TODO
-        passable[target.y][target.x] = true;
-        impassable.remove(target);
+    /**
+     * Builds navigation maps for scheduled targets until a deadline passes.
+     * Builds are done in slices, so a build that runs out of time is resumed
+     * by the next call. Urgent targets are started before predicted ones,
+     * once any build already in progress is finished. Once every scheduled
+     * target is built, continues
+     * precomputing maps for all targets if that was started.
+     *
+     * @param deadlineNanos The System.nanoTime() to stop building maps at.
+     * @return True if there is nothing left to build, false otherwise.
+     */
+    public boolean runBackgroundPrecompute(long deadlineNanos) {
+        installFinishedPrefetches();
+        while (System.nanoTime() < deadlineNanos) {
+            if (!this.isBackgroundBuilding) {
+                int target = nextBackgroundTarget();
+                if (target == -1) {
+                    return this.precomputed == null || precomputeNavMaps(deadlineNanos);
+                }
+                int size = this.mapWidth * this.mapHeight;
+                this.backgroundBuilder.reset(target, new byte[size], new short[size]);
+                this.isBackgroundBuilding = true;
+            }
 
-        PriorityQueue<Node> openSet = new PriorityQueue<>();
-        Set<Node> closedSet = new HashSet<>();
-        HashMap<Point, Node> nodes = new HashMap<>();
+            if (this.backgroundBuilder.step(BACKGROUND_SLICE)) {
+                this.isBackgroundBuilding = false;
+                putNavMap(this.backgroundBuilder.getTarget(), this.backgroundBuilder.getNavMap(), this.backgroundBuilder.getDistMap());
+            }
+        }
+        return false;
+    }
 
-        // Initialize with first node
-        Node startNode = new Node(start);
-        startNode.gScore = 0;
-        startNode.fScore = calcHeuristic(start, target);
-        openSet.add(startNode);
-        nodes.put(startNode.point, startNode);
+    /**
+     * Removes and returns the next scheduled target that still needs a
+     * navigation map. Urgent targets come first, whatever they evict.
+     * Predicted targets are only handed out if the cache can hold the
+     * target's map and its new mirror images without evicting one; ones that
+     * don't fit are dropped so that they don't hold up the rest of the queue.
+     *
+     * @return The index of the next target to build, or -1 if there is none.
+     */
+    private int nextBackgroundTarget() {
+        while (this.urgentSize > 0) {
+            int target = this.urgentQueue[this.urgentHead];
+            this.urgentHead = (this.urgentHead + 1) % this.urgentQueue.length;
+            this.urgentSize--;
+            this.isUrgent[target] = false;
+            if (isBuildNeeded(target)) {
+                return target;
+            }
+        }
 
-        while (!openSet.isEmpty()) {
-            // Get node with lowest fScore
-            Node current = openSet.remove();
+        int size = this.mapWidth * this.mapHeight;
+        while (this.backgroundSize > 0) {
+            int target = this.backgroundQueue[this.backgroundHead];
+            this.backgroundHead = (this.backgroundHead + 1) % this.backgroundQueue.length;
+            this.backgroundSize--;
+            this.isBackgroundScheduled[target] = false;
+            if (isBuildNeeded(target) && this.navMaps.getUsedBytes() + 3L * size * newMapCount(target) <= this.navMaps.getBudgetBytes()) {
+                return target;
+            }
+        }
+        return -1;
+    }
 
-            if (current.point.equals(target)) {
-                return calculateSolutionPath(current);
+    /**
+     * Returns whether a target still needs a navigation map built for it in
+     * the background. Distance fields are only kept in the cache, so the map
+     * is built even if a precomputed one exists.
+     */
+    private boolean isBuildNeeded(int target) {
+        return this.passable.get(target) && !this.navMaps.contains(target) && this.prefetches[target] == null;
+    }
+
+    /**
+     * Returns the number of maps putNavMap would add to the cache for a
+     * target that isn't cached: its own map and each mirror image of it that
+     * is a different location and isn't cached yet.
+     *
+     * @param target The index of the target.
+     * @return The number of new maps.
+     */
+    private int newMapCount(int target) {
+        int x = target % this.mapWidth;
+        int y = target / this.mapWidth;
+        int flipY = this.isVerticallySymmetric ? mirrorIndex(x, y, FLIP_Y) : target;
+        int flipX = this.isHorizontallySymmetric ? mirrorIndex(x, y, FLIP_X) : target;
+        int rotated = this.isRotatedSymmetric ? mirrorIndex(x, y, FLIP_X | FLIP_Y) : target;
+        int count = 1;
+        if (flipY != target && !this.navMaps.contains(flipY)) {
+            count++;
+        }
+        if (flipX != target && flipX != flipY && !this.navMaps.contains(flipX)) {
+            count++;
+        }
+        if (rotated != target && rotated != flipY && rotated != flipX && !this.navMaps.contains(rotated)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Caches the mirror image of a navigation map as the map for the mirror
+     * image of its target.
+     *
+     * @param targetX   The x-coordinate of the target of the map.
+     * @param targetY   The y-coordinate of the target of the map.
+     * @param transform The transform to mirror the map by.
+     * @param navMap    The navigation map to mirror.
+     * @param distMap   The distance field to mirror.
+     */
+    private void putMirroredNavMap(int targetX, int targetY, int transform, byte[] navMap, short[] distMap) {
+        byte[] mirrorNavMap = new byte[navMap.length];
+        short[] mirrorDistMap = new short[distMap.length];
+        for (int y = 0; y < this.mapHeight; y++) {
+            for (int x = 0; x < this.mapWidth; x++) {
+                int index = y * this.mapWidth + x;
+                int mirror = mirrorIndex(x, y, transform);
+                mirrorNavMap[mirror] = (byte) mirrorDirection(navMap[index], transform);
+                mirrorDistMap[mirror] = distMap[index];
             }
+        }
+        this.navMaps.put(mirrorIndex(targetX, targetY, transform), mirrorNavMap, mirrorDistMap);
+    }
 
-            closedSet.add(current);
+    /**
+     * Returns a direction that moves a unit straight toward a target, for when
+     * there is no time to build the target's navigation map. Tries the
+     * direction of the target and the directions next to it, and only takes
+     * a free step that gets closer in straight line distance. Walls aren't
+     * planned around, so a unit can get stuck behind one until the map is
+     * built.
+     *
+     * @param start    The location of the unit.
+     * @param target   The location to move toward.
+     * @param occupied Locations holding units, which can't be moved onto.
+     * @return The direction to move in, or Center if no step gets closer.
+     */
+    public Direction greedyDirection(MapLocation start, MapLocation target, BitGrid occupied) {
+        int x = start.getX();
+        int y = start.getY();
+        int targetX = target.getX();
+        int targetY = target.getY();
+        int towardDir = DIR_FROM_DELTA[(Integer.signum(targetY - y) + 1) * 3 + Integer.signum(targetX - x) + 1];
+        if (towardDir == CENTER) {
+            return Direction.Center;
+        }
 
-            Node[] neighbors = new Node[DIRECTIONS.length];
-            for (int i = 0; i < DIRECTIONS.length; i++) {
-                Direction dir = DIRECTIONS[i];
-                Point dirVector = PlanetPlayer.DIR_VECTORS.get(dir);
-                Node adjNode = new Node(new Point(current.point.x + dirVector.x, current.point.y + dirVector.y));
-                adjNode.fromParent = dir;
-                neighbors[i] = adjNode;
+        int bestDir = -1;
+        long bestDist = distanceSquared(x, y, targetX, targetY);
+        for (int j = -1; j < DIR_ROT_ORDER.length; j++) {
+            int d = j < 0 ? towardDir : (towardDir + DIR_ROT_ORDER[j] + DIRECTIONS.length) % DIRECTIONS.length;
+            int adjX = x + DIR_DX[d];
+            int adjY = y + DIR_DY[d];
+            if (isOOB(adjX, adjY)) {
+                continue;
+            }
+            int adj = adjY * this.mapWidth + adjX;
+            if (!this.passable.get(adj) || occupied.get(adj)) {
+                continue;
             }
-            // Node up = new Node(new Point(current.point.x, current.point.y - 1));
-            // Node down = new Node(new Point(current.point.x, current.point.y + 1));
-            // Node right = new Node(new Point(current.point.x + 1, current.point.y));
-            // Node left = new Node(new Point(current.point.x - 1, current.point.y));
-            // Node[] neighbors = {up, right, down, left};
+            long dist = distanceSquared(adjX, adjY, targetX, targetY);
+            if (dist < bestDist) {
+                bestDir = d;
+                bestDist = dist;
+            }
+        }
+        return bestDir == -1 ? Direction.Center : DIRECTIONS[bestDir];
+    }
 
-            for (Node neighbor : neighbors) {
+    /**
+     * Finds the direction to move in to follow the shortest path between two
+     * locations, avoiding both impassable terrain and the given locations.
+     * The target itself is always considered passable. Uses A* or Jump Point
+     * Search depending on the search mode, with search state that is
+     * allocated once and reused between calls.
+     *
+     * @param start      The location to find a path from.
+     * @param target     The location to find a path to.
+     * @param occupied   Locations holding units, which can't be moved through.
+     * @return The first direction of the path, or Center if there is no path.
+     */
+    public Direction pathfind(MapLocation start, MapLocation target, BitGrid occupied) {
+        long startNanos = Profiler.start();
+        Direction direction = search(start, target, occupied);
+        Profiler.stop(Profiler.Section.PATHFIND, startNanos);
+        return direction;
+    }
+
+    private Direction search(MapLocation start, MapLocation target, BitGrid occupied) {
+        int startX = start.getX();
+        int startY = start.getY();
+        int targetX = target.getX();
+        int targetY = target.getY();
+        int startIndex = startY * this.mapWidth + startX;
+        int targetIndex = targetY * this.mapWidth + targetX;
+        if (startIndex == targetIndex) {
+            return Direction.Center;
+        }
+
+        // Start a new search generation so that stale search state from
+        // previous calls is ignored without having to clear it
+        this.searchId++;
+        this.occupied = occupied;
+
+        IndexedMinHeap openSet = this.openSet;
+        openSet.clear();
+        this.gScore[startIndex] = 0;
+        this.cameFrom[startIndex] = -1;
+        this.discovered[startIndex] = this.searchId;
+        openSet.add(startIndex, calcHeuristic(startX, startY, targetX, targetY));
+
+        if (this.searchMode == SearchMode.JUMP_POINT) {
+            return jumpPointSearch(startIndex, targetIndex);
+        }
+
+        while (!openSet.isEmpty()) {
+            // Get node with lowest fScore
+            int current = openSet.poll();
+            if (current == targetIndex) {
+                return calculateSolutionPath(startIndex, targetIndex);
+            }
+            this.closed[current] = this.searchId;
+
+            int currentX = current % this.mapWidth;
+            int currentY = current / this.mapWidth;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int adjX = currentX + DIR_DX[d];
+                int adjY = currentY + DIR_DY[d];
                 // Ignore already evaluated nodes and ones that aren't traversable
-                if (closedSet.contains(neighbor) || isOOB(neighbor.point.x, neighbor.point.y) || !passable[neighbor.point.y][neighbor.point.x] || impassable.contains(neighbor.point)) {
+                if (isOOB(adjX, adjY)) {
                     continue;
                 }
-
-                // Discover a new Node
-                if (!openSet.contains(neighbor)) {
-                    openSet.add(neighbor);
-                    nodes.put(neighbor.point, neighbor);
+                int adj = adjY * this.mapWidth + adjX;
+                if (this.closed[adj] == this.searchId || (adj != targetIndex && !isTraversable(adj))) {
+                    continue;
                 }
 
-                // Get the node reference for this point, if one already exists
-                if (nodes.containsKey(neighbor.point)) {
-                    neighbor = nodes.get(neighbor.point);
-                }
-                double tentativeGScore = calcTentativeGScore(current, neighbor);
-                if (tentativeGScore < neighbor.gScore) {
+                float tentativeGScore = this.gScore[current] + STEP_COST[d];
+                if (this.discovered[adj] != this.searchId) {
+                    // Discover a new node
+                    this.discovered[adj] = this.searchId;
+                    this.gScore[adj] = tentativeGScore;
+                    this.cameFrom[adj] = current;
+                    openSet.add(adj, tentativeGScore + calcHeuristic(adjX, adjY, targetX, targetY));
+                } else if (tentativeGScore < this.gScore[adj]) {
                     // This is a better path
-                    neighbor.cameFrom = current;
-                    neighbor.gScore = tentativeGScore;
-                    neighbor.fScore = neighbor.gScore + calcHeuristic(neighbor.point, target);
-
-                    // Update this node's position in the priority queue
-                    // Note: O(n) for remove()
-                    if (openSet.contains(neighbor)) {
-                        openSet.remove(neighbor);
-                        openSet.add(neighbor);
-                    }
+                    this.gScore[adj] = tentativeGScore;
+                    this.cameFrom[adj] = current;
+                    openSet.decreaseKey(adj, tentativeGScore + calcHeuristic(adjX, adjY, targetX, targetY));
                 }
             }
         }
@@ -405,80 +1072,233 @@ public class Navigator {
     }
 
     /**
-     * Finds the direction that should be moved in from the start of the path
-     * to get to the given target node.
+     * Runs Jump Point Search from an open set that already holds the start.
+     * Only locations where the shortest path may change direction are added
+     * to the open set, which skips most of the locations A* would expand on
+     * open maps.
      *
-     * @param target The end node of the path.
-     * @return The direction to move from the start to get to the target.
+     * @param startIndex  The index of the start location.
+     * @param targetIndex The index of the target location.
+     * @return The first direction of the path, or Center if there is no path.
      */
-    private Direction calculateSolutionPath(Node target) {
-        Direction dir = Direction.Center;
-        while (target != null && target.fromParent != null) {
-            dir = target.fromParent;
-            target = target.cameFrom;
+    private Direction jumpPointSearch(int startIndex, int targetIndex) {
+        IndexedMinHeap openSet = this.openSet;
+        int targetX = targetIndex % this.mapWidth;
+        int targetY = targetIndex / this.mapWidth;
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            if (current == targetIndex) {
+                return calculateJumpSolutionPath(startIndex, targetIndex);
+            }
+            this.closed[current] = this.searchId;
+
+            int x = current % this.mapWidth;
+            int y = current / this.mapWidth;
+            int parent = this.cameFrom[current];
+            if (parent == -1) {
+                // The start has no direction to prune by
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    addJumpSuccessor(current, x, y, DIR_DX[d], DIR_DY[d], targetIndex, targetX, targetY);
+                }
+                continue;
+            }
+
+            int dx = Integer.signum(x - parent % this.mapWidth);
+            int dy = Integer.signum(y - parent / this.mapWidth);
+            if (dx != 0 && dy != 0) {
+                addJumpSuccessor(current, x, y, dx, dy, targetIndex, targetX, targetY);
+                addJumpSuccessor(current, x, y, dx, 0, targetIndex, targetX, targetY);
+                addJumpSuccessor(current, x, y, 0, dy, targetIndex, targetX, targetY);
+                if (!isWalkable(x - dx, y, targetIndex)) {
+                    addJumpSuccessor(current, x, y, -dx, dy, targetIndex, targetX, targetY);
+                }
+                if (!isWalkable(x, y - dy, targetIndex)) {
+                    addJumpSuccessor(current, x, y, dx, -dy, targetIndex, targetX, targetY);
+                }
+            } else if (dx != 0) {
+                addJumpSuccessor(current, x, y, dx, 0, targetIndex, targetX, targetY);
+                if (!isWalkable(x, y + 1, targetIndex)) {
+                    addJumpSuccessor(current, x, y, dx, 1, targetIndex, targetX, targetY);
+                }
+                if (!isWalkable(x, y - 1, targetIndex)) {
+                    addJumpSuccessor(current, x, y, dx, -1, targetIndex, targetX, targetY);
+                }
+            } else {
+                addJumpSuccessor(current, x, y, 0, dy, targetIndex, targetX, targetY);
+                if (!isWalkable(x + 1, y, targetIndex)) {
+                    addJumpSuccessor(current, x, y, 1, dy, targetIndex, targetX, targetY);
+                }
+                if (!isWalkable(x - 1, y, targetIndex)) {
+                    addJumpSuccessor(current, x, y, -1, dy, targetIndex, targetX, targetY);
+                }
+            }
         }
 
-        return dir;
+        return Direction.Center;
+    }
+
+    /**
+     * Jumps from a location in a direction and adds the jump point found, if
+     * any, to the open set.
+     */
+    private void addJumpSuccessor(int current, int x, int y, int dx, int dy, int targetIndex, int targetX, int targetY) {
+        int jumpPoint = jump(x, y, dx, dy, targetIndex);
+        if (jumpPoint == -1 || this.closed[jumpPoint] == this.searchId) {
+            return;
+        }
+
+        int jumpX = jumpPoint % this.mapWidth;
+        int jumpY = jumpPoint / this.mapWidth;
+        float tentativeGScore = this.gScore[current] + calcHeuristic(x, y, jumpX, jumpY) / A_STAR_WEIGHT;
+        if (this.discovered[jumpPoint] != this.searchId) {
+            this.discovered[jumpPoint] = this.searchId;
+            this.gScore[jumpPoint] = tentativeGScore;
+            this.cameFrom[jumpPoint] = current;
+            this.openSet.add(jumpPoint, tentativeGScore + calcHeuristic(jumpX, jumpY, targetX, targetY));
+        } else if (tentativeGScore < this.gScore[jumpPoint]) {
+            this.gScore[jumpPoint] = tentativeGScore;
+            this.cameFrom[jumpPoint] = current;
+            this.openSet.decreaseKey(jumpPoint, tentativeGScore + calcHeuristic(jumpX, jumpY, targetX, targetY));
+        }
     }
 
     /**
-     * Returns a tentative gScore (real cost to reach this node) for the given
-     * neighbor of a given node.
+     * Moves from a location in a direction until reaching the target, a
+     * location with a forced neighbor, or something that can't be moved
+     * through.
      *
-     * @param current  The node currently being evaluated.
-     * @param neighbor The neighbor of the current node being evaluated.
-     * @return The tentative gScore of the neighboring node.
+     * @return The index of the jump point reached, or -1 if there is none.
      */
-    private double calcTentativeGScore(Node current, Node neighbor) {
-        double dist = bc.bcDirectionIsDiagonal(neighbor.fromParent) ? SQRT2 : 1;
-        return current.gScore + dist;
+    private int jump(int x, int y, int dx, int dy, int targetIndex) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!isWalkable(x, y, targetIndex)) {
+                return -1;
+            }
+            int index = y * this.mapWidth + x;
+            if (index == targetIndex) {
+                return index;
+            }
+
+            if (dx != 0 && dy != 0) {
+                if ((!isWalkable(x - dx, y, targetIndex) && isWalkable(x - dx, y + dy, targetIndex))
+                        || (!isWalkable(x, y - dy, targetIndex) && isWalkable(x + dx, y - dy, targetIndex))) {
+                    return index;
+                }
+                // Diagonal moves stop wherever a straight jump finds something
+                if (jump(x, y, dx, 0, targetIndex) != -1 || jump(x, y, 0, dy, targetIndex) != -1) {
+                    return index;
+                }
+            } else if (dx != 0) {
+                if ((!isWalkable(x, y + 1, targetIndex) && isWalkable(x + dx, y + 1, targetIndex))
+                        || (!isWalkable(x, y - 1, targetIndex) && isWalkable(x + dx, y - 1, targetIndex))) {
+                    return index;
+                }
+            } else {
+                if ((!isWalkable(x + 1, y, targetIndex) && isWalkable(x + 1, y + dy, targetIndex))
+                        || (!isWalkable(x - 1, y, targetIndex) && isWalkable(x - 1, y + dy, targetIndex))) {
+                    return index;
+                }
+            }
+        }
     }
 
     /**
-     * Returns the octile distance between the given points.
+     * Finds the direction that should be moved in from the start of a path
+     * of jump points to get to the given target location.
      *
-     * @param p1 First point of the point pair to calculate the heuristic of.
-     * @param p2 Second point of the point pair to calculate the heuristic of.
-     * @return The octile distance between the two points.
+     * @param start  The index of the start of the path.
+     * @param target The index of the end of the path.
+     * @return The direction to move from the start to get to the target.
      */
-    private double calcHeuristic(Point p1, Point p2) {
-        int dx = Math.abs(p1.x - p2.x);
-        int dy = Math.abs(p1.y - p2.y);
-        return A_STAR_WEIGHT * ((dx + dy) + (SQRT2 - 2) * Math.min(dx, dy));
+    private Direction calculateJumpSolutionPath(int start, int target) {
+        int step = target;
+        while (this.cameFrom[step] != start) {
+            step = this.cameFrom[step];
+        }
+
+        // Jump points are reached in a straight or diagonal line
+        int dx = Integer.signum(step % this.mapWidth - start % this.mapWidth);
+        int dy = Integer.signum(step / this.mapWidth - start / this.mapWidth);
+        return DIRECTIONS[DIR_FROM_DELTA[(dy + 1) * 3 + dx + 1]];
     }
 
-    private static class Node implements Comparable<Node> {
-        public final Point point; // Position of this node
-        public double gScore; // The real cost to reach this node
-        public double fScore; // The total cost to reach this node (including heuristic cost)
-        public Node cameFrom; // Node on the path back to the start
-        public Direction fromParent; // Direction to get here from parent
+    /**
+     * Returns whether the current search can move through a location.
+     */
+    private boolean isTraversable(int index) {
+        return this.passable.get(index) && !this.occupied.get(index);
+    }
 
-        public Node(Point point) {
-            this.point = point;
-            this.gScore = Double.MAX_VALUE;
-            this.fScore = Double.MAX_VALUE;
-            this.cameFrom = null;
-            this.fromParent = null;
+    /**
+     * Returns whether the current search can move through a location that
+     * may be out of bounds.
+     */
+    private boolean isWalkable(int x, int y, int targetIndex) {
+        if (isOOB(x, y)) {
+            return false;
         }
+        int index = y * this.mapWidth + x;
+        return index == targetIndex || isTraversable(index);
+    }
 
-        @Override
-        public int hashCode() {
-            return this.point.hashCode();
+    /**
+     * Finds the direction that should be moved in from the start of the path
+     * to get to the given target location.
+     *
+     * @param start  The index of the start of the path.
+     * @param target The index of the end of the path.
+     * @return The direction to move from the start to get to the target.
+     */
+    private Direction calculateSolutionPath(int start, int target) {
+        int step = target;
+        while (this.cameFrom[step] != start) {
+            step = this.cameFrom[step];
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-            final Node other = (Node) o;
-            return this.point.equals(other.point);
+        int dx = step % this.mapWidth - start % this.mapWidth;
+        int dy = step / this.mapWidth - start / this.mapWidth;
+        return DIRECTIONS[DIR_FROM_DELTA[(dy + 1) * 3 + dx + 1]];
+    }
+
+    /**
+     * Returns the octile distance between the given locations.
+     *
+     * @return The octile distance between the two locations.
+     */
+    private static float calcHeuristic(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x1 - x2);
+        int dy = Math.abs(y1 - y2);
+        return A_STAR_WEIGHT * ((dx + dy) + (SQRT2 - 2) * Math.min(dx, dy));
+    }
+
+    /**
+     * Builds the navigation map for a target on the pool. Only reads the
+     * passable map, which never changes, so builds can run alongside the game
+     * thread.
+     */
+    private static class NavMapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BitGrid passable;
+        private final int target;
+        private final byte[] navMap;
+        private final short[] distMap;
+
+        public NavMapTask(BitGrid passable, int target, byte[] navMap, short[] distMap) {
+            this.passable = passable;
+            this.target = target;
+            this.navMap = navMap;
+            this.distMap = distMap;
         }
 
         @Override
-        public int compareTo(Node other) {
-            return Double.compare(this.fScore, other.fScore);
+        protected void compute() {
+            NavMapBuilder builder = new NavMapBuilder(this.passable);
+            builder.reset(this.target, this.navMap, this.distMap);
+            builder.run();
         }
     }
 }
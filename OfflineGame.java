@@ -0,0 +1,865 @@
+import bc.*;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game held in memory, so that the player can be run without the engine.
+ * The rules are an approximation of the real ones: units move, harvest,
+ * build, replicate, produce, load, unload, launch and attack with the same
+ * costs, cooldowns and ranges, but research only unlocks rockets, mages
+ * don't splash, knights have no armor and team arrays are shared without
+ * delay. Nothing is random, so the same map and player always play out the
+ * same way.
+ *
+ * Each player plays through a view of the game made by view(). Players take
+ * their turns in the order their views were made, and the round ends once
+ * every player has called nextTurn().
+ */
+public class OfflineGame {
+    static final int NO_UNIT = -1;
+    // Time bank each player starts with, and the time added every turn
+    static final long START_TIME_MS = 10000;
+    static final long TURN_TIME_MS = 50;
+    static final int START_KARBONITE = 100;
+    static final int KARBONITE_PER_ROUND = 10;
+    // Income drops by one for every this much karbonite a team holds
+    static final int KARBONITE_DECREASE_DIVISOR = 40;
+    static final int HEAT_PER_ROUND = 10;
+    static final int READY_HEAT = 10;
+    static final int HARVEST_AMOUNT = 3;
+    static final int BUILD_AMOUNT = 5;
+    static final int REPLICATE_COST = 60;
+    static final int REPLICATE_COOLDOWN = 25;
+    static final int PRODUCTION_ROUNDS = 5;
+    static final int GARRISON_CAPACITY = 8;
+    static final int RANGER_MIN_RANGE = 10;
+    static final int ROCKET_FLIGHT_ROUNDS = 50;
+    static final int RESEARCH_ROUNDS = 50;
+    static final int TEAM_ARRAY_LENGTH = 100;
+    // The game ends after this round if neither team has been wiped out
+    static final long LAST_ROUND = 1000;
+
+    // Columns of STATS
+    private static final int MAX_HEALTH = 0;
+    private static final int DAMAGE = 1;
+    private static final int ATTACK_RANGE = 2;
+    private static final int VISION_RANGE = 3;
+    private static final int MOVE_COOLDOWN = 4;
+    private static final int ATTACK_COOLDOWN = 5;
+    private static final int COST = 6;
+    // Key: UnitType, Value: Stats of that type, indexed by the columns above
+    private static final Map<UnitType, int[]> STATS = new EnumMap<>(UnitType.class);
+    // Offset of each direction, indexed by direction ordinal
+    private static final int[] DX = new int[Direction.values().length];
+    private static final int[] DY = new int[Direction.values().length];
+    // Largest vision range of any unit type
+    private static final int MAX_VISION_RANGE;
+
+    static {
+        STATS.put(UnitType.Worker, new int[]{100, 0, 0, 50, 20, 0, 50});
+        STATS.put(UnitType.Knight, new int[]{250, 80, 2, 50, 15, 20, 40});
+        STATS.put(UnitType.Ranger, new int[]{200, 40, 50, 70, 20, 20, 40});
+        STATS.put(UnitType.Mage, new int[]{80, 60, 30, 30, 20, 20, 40});
+        STATS.put(UnitType.Healer, new int[]{100, -10, 30, 50, 25, 10, 40});
+        STATS.put(UnitType.Factory, new int[]{300, 0, 0, 2, 0, 0, 200});
+        STATS.put(UnitType.Rocket, new int[]{200, 0, 0, 2, 0, 0, 150});
+        for (int i = 0; i < Navigator.DIRECTIONS.length; i++) {
+            DX[Navigator.DIRECTIONS[i].ordinal()] = Navigator.DIR_DX[i];
+            DY[Navigator.DIRECTIONS[i].ordinal()] = Navigator.DIR_DY[i];
+        }
+        int maxVisionRange = 0;
+        for (int[] stats : STATS.values()) {
+            maxVisionRange = Math.max(maxVisionRange, stats[VISION_RANGE]);
+        }
+        MAX_VISION_RANGE = maxVisionRange;
+    }
+
+    private OfflineMap map;
+    private long round;
+    // Key: Planet, Value: Karbonite at each location index
+    private Map<Planet, int[]> karbonite;
+    // Key: Planet, Value: ID of the unit at each location index, or NO_UNIT
+    private Map<Planet, int[]> occupants;
+    // Key: UnitID, Value: Unit, in the order the units were created
+    private Map<Integer, SimUnit> units;
+    private int nextId;
+    // Key: Planet, Value: IDs of the units the planet started with
+    private Map<Planet, int[]> initialIds;
+    private Map<Team, TeamState> teams;
+    private List<View> players;
+    private int turn;
+    // Changes whenever a unit is placed on or taken off a map, so that views
+    // know when what their units can see has to be worked out again
+    private int version;
+
+    /**
+     * Starts a new game on a map.
+     *
+     * @param map The map to play on.
+     */
+    public OfflineGame(OfflineMap map) {
+        this.map = map;
+        this.round = 1;
+        this.karbonite = new EnumMap<>(Planet.class);
+        this.occupants = new EnumMap<>(Planet.class);
+        this.units = new LinkedHashMap<>();
+        this.nextId = 1;
+        this.initialIds = new EnumMap<>(Planet.class);
+        this.teams = new EnumMap<>(Team.class);
+        this.players = new ArrayList<>();
+        this.turn = 0;
+
+        for (Team team : Team.values()) {
+            this.teams.put(team, new TeamState());
+        }
+        for (Planet planet : Planet.values()) {
+            int width = map.getWidth(planet);
+            int height = map.getHeight(planet);
+            int[] karbonite = new int[width * height];
+            int[] occupants = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    karbonite[y * width + x] = map.getKarbonite(planet, x, y);
+                    occupants[y * width + x] = NO_UNIT;
+                }
+            }
+            this.karbonite.put(planet, karbonite);
+            this.occupants.put(planet, occupants);
+
+            int[] ids = new int[map.getUnitCount(planet)];
+            for (int i = 0; i < ids.length; i++) {
+                SimUnit unit = create(UnitType.Worker, map.getUnitTeam(planet, i));
+                place(unit, planet, map.getUnitX(planet, i), map.getUnitY(planet, i));
+                ids[i] = unit.id;
+            }
+            this.initialIds.put(planet, ids);
+        }
+    }
+
+    /**
+     * Makes a view of the game for a player. Players take their turns in the
+     * order their views are made.
+     *
+     * @param team   The team of the player.
+     * @param planet The planet the player plays on.
+     * @return The view to play through.
+     */
+    public View view(Team team, Planet planet) {
+        View view = new View(team, planet);
+        this.players.add(view);
+        return view;
+    }
+
+    public long getRound() {
+        return this.round;
+    }
+
+    public long getKarbonite(Team team) {
+        return this.teams.get(team).karbonite;
+    }
+
+    /**
+     * Returns whether the game is over: a team has no units left, or the
+     * last round has been played.
+     */
+    public boolean isOver() {
+        return this.round > LAST_ROUND || countUnits(Team.Red) == 0 || countUnits(Team.Blue) == 0;
+    }
+
+    /**
+     * Returns the winner of a game that is over. A team that still has units
+     * beats one that has none. Otherwise the team with more units wins, and
+     * then the one with more karbonite.
+     *
+     * @return The winning team, or null if the game isn't over or is a draw.
+     */
+    public Team getWinner() {
+        if (!isOver()) {
+            return null;
+        }
+        int red = countUnits(Team.Red);
+        int blue = countUnits(Team.Blue);
+        if (red != blue) {
+            return red > blue ? Team.Red : Team.Blue;
+        }
+        long redKarbonite = getKarbonite(Team.Red);
+        long blueKarbonite = getKarbonite(Team.Blue);
+        if (redKarbonite != blueKarbonite) {
+            return redKarbonite > blueKarbonite ? Team.Red : Team.Blue;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of units a team has anywhere.
+     */
+    public int countUnits(Team team) {
+        int count = 0;
+        for (SimUnit unit : this.units.values()) {
+            if (unit.team == team) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of units of a type that a team has anywhere.
+     */
+    public int countUnits(Team team, UnitType type) {
+        int count = 0;
+        for (SimUnit unit : this.units.values()) {
+            if (unit.team == team && unit.type == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private SimUnit create(UnitType type, Team team) {
+        SimUnit unit = new SimUnit(this.nextId++, type, team);
+        unit.health = STATS.get(type)[MAX_HEALTH];
+        this.units.put(unit.id, unit);
+        return unit;
+    }
+
+    private void place(SimUnit unit, Planet planet, int x, int y) {
+        unit.planet = planet;
+        unit.x = x;
+        unit.y = y;
+        unit.garrison = NO_UNIT;
+        unit.isInSpace = false;
+        this.occupants.get(planet)[y * this.map.getWidth(planet) + x] = unit.id;
+        this.version++;
+    }
+
+    private void lift(SimUnit unit) {
+        this.occupants.get(unit.planet)[unit.y * this.map.getWidth(unit.planet) + unit.x] = NO_UNIT;
+        this.version++;
+    }
+
+    private void destroy(SimUnit unit) {
+        if (unit.isOnMap()) {
+            lift(unit);
+        }
+        if (unit.garrison != NO_UNIT) {
+            SimUnit structure = this.units.get(unit.garrison);
+            if (structure != null) {
+                structure.garrisoned.remove(Integer.valueOf(unit.id));
+            }
+        }
+        this.units.remove(unit.id);
+        for (int id : new ArrayList<>(unit.garrisoned)) {
+            SimUnit passenger = this.units.get(id);
+            if (passenger != null) {
+                destroy(passenger);
+            }
+        }
+    }
+
+    private boolean isFree(Planet planet, int x, int y) {
+        int width = this.map.getWidth(planet);
+        if (x < 0 || y < 0 || x >= width || y >= this.map.getHeight(planet)) {
+            return false;
+        }
+        return this.map.isPassable(planet, x, y) && this.occupants.get(planet)[y * width + x] == NO_UNIT;
+    }
+
+    private static boolean isRobot(UnitType type) {
+        return type != UnitType.Factory && type != UnitType.Rocket;
+    }
+
+    private static int distanceSquared(SimUnit a, SimUnit b) {
+        int dx = a.x - b.x;
+        int dy = a.y - b.y;
+        return dx * dx + dy * dy;
+    }
+
+    private void endTurn() {
+        this.turn++;
+        if (this.turn >= this.players.size()) {
+            this.turn = 0;
+            endRound();
+        }
+        this.players.get(this.turn).turnStartNanos = System.nanoTime();
+    }
+
+    private void endRound() {
+        this.round++;
+
+        for (SimUnit unit : new ArrayList<>(this.units.values())) {
+            // Landing rockets destroy whatever they land on
+            if (!this.units.containsKey(unit.id)) {
+                continue;
+            }
+            unit.movementHeat = Math.max(0, unit.movementHeat - HEAT_PER_ROUND);
+            unit.attackHeat = Math.max(0, unit.attackHeat - HEAT_PER_ROUND);
+            unit.abilityHeat = Math.max(0, unit.abilityHeat - HEAT_PER_ROUND);
+            unit.hasActed = false;
+
+            if (unit.producing != null && --unit.productionLeft <= 0 && unit.garrisoned.size() < GARRISON_CAPACITY) {
+                SimUnit robot = create(unit.producing, unit.team);
+                robot.planet = unit.planet;
+                robot.x = unit.x;
+                robot.y = unit.y;
+                robot.garrison = unit.id;
+                unit.garrisoned.add(robot.id);
+                unit.producing = null;
+            }
+
+            if (unit.isInSpace && this.round >= unit.landingRound) {
+                int width = this.map.getWidth(Planet.Mars);
+                int occupant = this.occupants.get(Planet.Mars)[unit.landingY * width + unit.landingX];
+                if (occupant != NO_UNIT) {
+                    destroy(this.units.get(occupant));
+                }
+                place(unit, Planet.Mars, unit.landingX, unit.landingY);
+                for (int id : unit.garrisoned) {
+                    SimUnit passenger = this.units.get(id);
+                    passenger.planet = Planet.Mars;
+                    passenger.x = unit.x;
+                    passenger.y = unit.y;
+                }
+            }
+        }
+
+        for (TeamState team : this.teams.values()) {
+            team.karbonite += Math.max(0, KARBONITE_PER_ROUND - team.karbonite / KARBONITE_DECREASE_DIVISOR);
+            if (!team.research.isEmpty() && --team.researchLeft <= 0) {
+                UnitType branch = team.research.remove(0);
+                team.levels.put(branch, team.levels.get(branch) + 1);
+                team.researchLeft = RESEARCH_ROUNDS;
+            }
+        }
+    }
+
+    /**
+     * A unit in the game. Units in a garrison have the location of their
+     * structure.
+     */
+    private static class SimUnit {
+        private int id;
+        private UnitType type;
+        private Team team;
+        private Planet planet;
+        private int x;
+        private int y;
+        // ID of the structure holding this unit, or NO_UNIT
+        private int garrison;
+        private boolean isInSpace;
+        private int health;
+        private int movementHeat;
+        private int attackHeat;
+        private int abilityHeat;
+        // Whether a worker has harvested, built or blueprinted this round
+        private boolean hasActed;
+        private boolean isBuilt;
+        private UnitType producing;
+        private int productionLeft;
+        private List<Integer> garrisoned;
+        private long landingRound;
+        private int landingX;
+        private int landingY;
+
+        private SimUnit(int id, UnitType type, Team team) {
+            this.id = id;
+            this.type = type;
+            this.team = team;
+            this.garrison = NO_UNIT;
+            this.isBuilt = isRobot(type);
+            this.garrisoned = new ArrayList<>();
+        }
+
+        private boolean isOnMap() {
+            return this.planet != null && this.garrison == NO_UNIT && !this.isInSpace;
+        }
+    }
+
+    private static class TeamState {
+        private long karbonite;
+        private List<UnitType> research;
+        private int researchLeft;
+        // Key: UnitType, Value: Research level of the branch
+        private Map<UnitType, Integer> levels;
+        // Key: Planet, Value: Team array of the planet
+        private Map<Planet, int[]> teamArrays;
+
+        private TeamState() {
+            this.karbonite = START_KARBONITE;
+            this.research = new ArrayList<>();
+            this.researchLeft = RESEARCH_ROUNDS;
+            this.levels = new EnumMap<>(UnitType.class);
+            for (UnitType type : UnitType.values()) {
+                this.levels.put(type, 0);
+            }
+            this.teamArrays = new EnumMap<>(Planet.class);
+            for (Planet planet : Planet.values()) {
+                this.teamArrays.put(planet, new int[TEAM_ARRAY_LENGTH]);
+            }
+        }
+    }
+
+    /**
+     * One player's view of the game: a team on a planet.
+     */
+    public class View implements GameApi {
+        private Team team;
+        private Planet planet;
+        private long timeLeftMs;
+        private long turnStartNanos;
+        private long lastTurnNanos;
+        // This team's units on the map, and a grid of them for finding the
+        // units near a location, as of visionVersion of the game
+        private UnitSnapshot watchers;
+        private SpatialHash vision;
+        private int[] visionBuffer;
+        private int visionVersion;
+
+        private View(Team team, Planet planet) {
+            this.team = team;
+            this.planet = planet;
+            this.timeLeftMs = START_TIME_MS;
+            this.turnStartNanos = System.nanoTime();
+            this.watchers = new UnitSnapshot();
+            this.vision = new SpatialHash(OfflineGame.this.map.getWidth(planet), OfflineGame.this.map.getHeight(planet));
+            this.visionBuffer = new int[0];
+            this.visionVersion = OfflineGame.this.version - 1;
+        }
+
+        /**
+         * Returns how long this player's last turn took, in nanoseconds.
+         */
+        public long getLastTurnNanos() {
+            return this.lastTurnNanos;
+        }
+
+        private SimUnit unit(int unitID) {
+            SimUnit unit = OfflineGame.this.units.get(unitID);
+            if (unit == null) {
+                throw new IllegalArgumentException("No unit with ID " + unitID);
+            }
+            return unit;
+        }
+
+        private SimUnit mine(int unitID) {
+            SimUnit unit = OfflineGame.this.units.get(unitID);
+            return unit != null && unit.team == this.team ? unit : null;
+        }
+
+        private boolean isHere(SimUnit unit) {
+            return unit.isOnMap() && unit.planet == this.planet;
+        }
+
+        /**
+         * Returns whether a unit is on this planet, on the map or in a
+         * garrison, and not in space.
+         */
+        private boolean isOnPlanet(SimUnit unit) {
+            if (unit.planet != this.planet || unit.isInSpace) {
+                return false;
+            }
+            SimUnit structure = unit.garrison == NO_UNIT ? null : OfflineGame.this.units.get(unit.garrison);
+            return structure == null || !structure.isInSpace;
+        }
+
+        private boolean isVisible(SimUnit unit) {
+            if (unit.team == this.team) {
+                return isOnPlanet(unit);
+            }
+            if (!isHere(unit)) {
+                return false;
+            }
+            updateVision();
+            int found = this.vision.query(unit.x, unit.y, -1, MAX_VISION_RANGE, this.visionBuffer);
+            for (int i = 0; i < found; i++) {
+                int row = this.visionBuffer[i];
+                int dx = this.watchers.getX(row) - unit.x;
+                int dy = this.watchers.getY(row) - unit.y;
+                if (dx * dx + dy * dy <= this.watchers.getVisionRange(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Rebuilds the grid of this team's units on the map if any unit has
+         * been placed or taken off a map since it was last built.
+         */
+        private void updateVision() {
+            if (this.visionVersion == OfflineGame.this.version) {
+                return;
+            }
+            this.watchers.clear(OfflineGame.this.units.size());
+            for (SimUnit other : OfflineGame.this.units.values()) {
+                if (other.team == this.team && isHere(other)) {
+                    addRow(this.watchers, other);
+                }
+            }
+            this.vision.build(this.watchers, this.team);
+            if (this.visionBuffer.length < this.vision.size()) {
+                this.visionBuffer = new int[this.watchers.size()];
+            }
+            this.visionVersion = OfflineGame.this.version;
+        }
+
+        private void check(boolean allowed, String action, int unitID) {
+            if (!allowed) {
+                throw new IllegalStateException("Unit " + unitID + " can't " + action);
+            }
+        }
+
+        private TeamState teamState() {
+            return OfflineGame.this.teams.get(this.team);
+        }
+
+        private void addRow(UnitSnapshot snapshot, SimUnit unit) {
+            int[] stats = STATS.get(unit.type);
+            int row = snapshot.add(unit.id, unit.type, unit.team);
+            boolean isOnMap = isHere(unit);
+            snapshot.setLocation(row, isOnMap, unit.garrison != NO_UNIT, unit.x, unit.y);
+            boolean isCombat = isRobot(unit.type) && unit.type != UnitType.Worker;
+            snapshot.setStats(row, unit.health, stats[VISION_RANGE], isCombat ? stats[ATTACK_RANGE] : 0, isCombat ? stats[DAMAGE] : 0);
+            snapshot.setReady(row, isOnMap && isRobot(unit.type) && unit.movementHeat < READY_HEAT,
+                    isOnMap && isCombat && unit.attackHeat < READY_HEAT, false);
+            snapshot.setStructure(row, !isRobot(unit.type) && unit.isBuilt, unit.producing != null,
+                    isRobot(unit.type) ? 0 : unit.garrisoned.size());
+        }
+
+        @Override
+        public Planet planet() {
+            return this.planet;
+        }
+
+        @Override
+        public Team team() {
+            return this.team;
+        }
+
+        @Override
+        public long round() {
+            return OfflineGame.this.round;
+        }
+
+        @Override
+        public long getTimeLeftMs() {
+            return this.timeLeftMs - (System.nanoTime() - this.turnStartNanos) / 1000000;
+        }
+
+        @Override
+        public long karbonite() {
+            return teamState().karbonite;
+        }
+
+        @Override
+        public void nextTurn() {
+            this.lastTurnNanos = System.nanoTime() - this.turnStartNanos;
+            this.timeLeftMs += TURN_TIME_MS - this.lastTurnNanos / 1000000;
+            endTurn();
+        }
+
+        @Override
+        public int getMapWidth(Planet planet) {
+            return OfflineGame.this.map.getWidth(planet);
+        }
+
+        @Override
+        public int getMapHeight(Planet planet) {
+            return OfflineGame.this.map.getHeight(planet);
+        }
+
+        @Override
+        public boolean isPassableTerrainAt(Planet planet, int x, int y) {
+            return OfflineGame.this.map.isPassable(planet, x, y);
+        }
+
+        @Override
+        public long initialKarboniteAt(Planet planet, int x, int y) {
+            return OfflineGame.this.map.getKarbonite(planet, x, y);
+        }
+
+        @Override
+        public void readInitialUnits(Planet planet, UnitSnapshot snapshot) {
+            int[] ids = OfflineGame.this.initialIds.get(planet);
+            snapshot.clear(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                int row = snapshot.add(ids[i], UnitType.Worker, OfflineGame.this.map.getUnitTeam(planet, i));
+                int[] stats = STATS.get(UnitType.Worker);
+                snapshot.setLocation(row, planet == this.planet, false, OfflineGame.this.map.getUnitX(planet, i), OfflineGame.this.map.getUnitY(planet, i));
+                snapshot.setStats(row, stats[MAX_HEALTH], stats[VISION_RANGE], 0, 0);
+                snapshot.setReady(row, planet == this.planet, false, false);
+                snapshot.setStructure(row, false, false, 0);
+            }
+        }
+
+        @Override
+        public void readUnits(UnitSnapshot snapshot) {
+            snapshot.clear(OfflineGame.this.units.size());
+            for (SimUnit unit : OfflineGame.this.units.values()) {
+                if (isVisible(unit)) {
+                    addRow(snapshot, unit);
+                }
+            }
+        }
+
+        @Override
+        public int getLocationIndex(int unitID) {
+            SimUnit unit = unit(unitID);
+            return isHere(unit) ? unit.y * getMapWidth(this.planet) + unit.x : LocationTable.NONE;
+        }
+
+        @Override
+        public boolean isInGarrison(int unitID) {
+            return unit(unitID).garrison != NO_UNIT;
+        }
+
+        @Override
+        public boolean isBuilt(int structureID) {
+            return unit(structureID).isBuilt;
+        }
+
+        @Override
+        public int getGarrisonSize(int structureID) {
+            return unit(structureID).garrisoned.size();
+        }
+
+        @Override
+        public int senseUnitAt(int x, int y) {
+            int id = OfflineGame.this.occupants.get(this.planet)[y * getMapWidth(this.planet) + x];
+            if (id == NO_UNIT || !isVisible(unit(id))) {
+                return NO_UNIT;
+            }
+            return id;
+        }
+
+        @Override
+        public long karboniteAt(int x, int y) {
+            return OfflineGame.this.karbonite.get(this.planet)[y * getMapWidth(this.planet) + x];
+        }
+
+        @Override
+        public boolean isMoveReady(int unitID) {
+            SimUnit unit = mine(unitID);
+            return unit != null && isRobot(unit.type) && unit.movementHeat < READY_HEAT;
+        }
+
+        @Override
+        public boolean canMove(int unitID, Direction direction) {
+            SimUnit unit = mine(unitID);
+            return unit != null && isHere(unit) && isRobot(unit.type) && direction != Direction.Center
+                    && isFree(this.planet, unit.x + DX[direction.ordinal()], unit.y + DY[direction.ordinal()]);
+        }
+
+        @Override
+        public void moveRobot(int unitID, Direction direction) {
+            check(canMove(unitID, direction) && isMoveReady(unitID), "move " + direction, unitID);
+            SimUnit unit = unit(unitID);
+            lift(unit);
+            place(unit, this.planet, unit.x + DX[direction.ordinal()], unit.y + DY[direction.ordinal()]);
+            unit.movementHeat += STATS.get(unit.type)[MOVE_COOLDOWN];
+        }
+
+        @Override
+        public boolean canAttack(int unitID, int targetID) {
+            SimUnit unit = mine(unitID);
+            SimUnit target = OfflineGame.this.units.get(targetID);
+            if (unit == null || target == null || target.team == this.team || !isHere(unit) || !isHere(target)
+                    || !isVisible(target)) {
+                return false;
+            }
+            int[] stats = STATS.get(unit.type);
+            int distSq = distanceSquared(unit, target);
+            return stats[DAMAGE] > 0 && unit.type != UnitType.Worker && unit.attackHeat < READY_HEAT
+                    && distSq <= stats[ATTACK_RANGE] && (unit.type != UnitType.Ranger || distSq > RANGER_MIN_RANGE);
+        }
+
+        @Override
+        public void attack(int unitID, int targetID) {
+            check(canAttack(unitID, targetID), "attack " + targetID, unitID);
+            SimUnit unit = unit(unitID);
+            SimUnit target = unit(targetID);
+            unit.attackHeat += STATS.get(unit.type)[ATTACK_COOLDOWN];
+            target.health -= STATS.get(unit.type)[DAMAGE];
+            if (target.health <= 0) {
+                destroy(target);
+            }
+        }
+
+        @Override
+        public boolean canHarvest(int workerID, Direction direction) {
+            SimUnit worker = mine(workerID);
+            if (worker == null || worker.type != UnitType.Worker || !isHere(worker) || worker.hasActed) {
+                return false;
+            }
+            int x = worker.x + DX[direction.ordinal()];
+            int y = worker.y + DY[direction.ordinal()];
+            if (x < 0 || y < 0 || x >= getMapWidth(this.planet) || y >= getMapHeight(this.planet)) {
+                return false;
+            }
+            return karboniteAt(x, y) > 0;
+        }
+
+        @Override
+        public void harvest(int workerID, Direction direction) {
+            check(canHarvest(workerID, direction), "harvest " + direction, workerID);
+            SimUnit worker = unit(workerID);
+            int index = (worker.y + DY[direction.ordinal()]) * getMapWidth(this.planet) + worker.x + DX[direction.ordinal()];
+            int[] karbonite = OfflineGame.this.karbonite.get(this.planet);
+            int amount = Math.min(HARVEST_AMOUNT, karbonite[index]);
+            karbonite[index] -= amount;
+            teamState().karbonite += amount;
+            worker.hasActed = true;
+        }
+
+        @Override
+        public boolean canBlueprint(int workerID, UnitType type, Direction direction) {
+            SimUnit worker = mine(workerID);
+            if (worker == null || worker.type != UnitType.Worker || !isHere(worker) || worker.hasActed || isRobot(type)) {
+                return false;
+            }
+            if (this.planet != Planet.Earth || (type == UnitType.Rocket && teamState().levels.get(UnitType.Rocket) == 0)) {
+                return false;
+            }
+            return teamState().karbonite >= STATS.get(type)[COST]
+                    && isFree(this.planet, worker.x + DX[direction.ordinal()], worker.y + DY[direction.ordinal()]);
+        }
+
+        @Override
+        public void blueprint(int workerID, UnitType type, Direction direction) {
+            check(canBlueprint(workerID, type, direction), "blueprint " + type, workerID);
+            SimUnit worker = unit(workerID);
+            SimUnit structure = create(type, this.team);
+            structure.health = STATS.get(type)[MAX_HEALTH] / 4;
+            place(structure, this.planet, worker.x + DX[direction.ordinal()], worker.y + DY[direction.ordinal()]);
+            teamState().karbonite -= STATS.get(type)[COST];
+            worker.hasActed = true;
+        }
+
+        @Override
+        public boolean canBuild(int workerID, int blueprintID) {
+            SimUnit worker = mine(workerID);
+            SimUnit blueprint = mine(blueprintID);
+            return worker != null && blueprint != null && worker.type == UnitType.Worker && !worker.hasActed
+                    && !blueprint.isBuilt && isHere(worker) && isHere(blueprint) && distanceSquared(worker, blueprint) <= 2;
+        }
+
+        @Override
+        public void build(int workerID, int blueprintID) {
+            check(canBuild(workerID, blueprintID), "build " + blueprintID, workerID);
+            SimUnit blueprint = unit(blueprintID);
+            int maxHealth = STATS.get(blueprint.type)[MAX_HEALTH];
+            blueprint.health = Math.min(maxHealth, blueprint.health + BUILD_AMOUNT);
+            blueprint.isBuilt = blueprint.health == maxHealth;
+            unit(workerID).hasActed = true;
+        }
+
+        @Override
+        public boolean canReplicate(int workerID, Direction direction) {
+            SimUnit worker = mine(workerID);
+            return worker != null && worker.type == UnitType.Worker && isHere(worker) && worker.abilityHeat < READY_HEAT
+                    && teamState().karbonite >= REPLICATE_COST
+                    && isFree(this.planet, worker.x + DX[direction.ordinal()], worker.y + DY[direction.ordinal()]);
+        }
+
+        @Override
+        public void replicate(int workerID, Direction direction) {
+            check(canReplicate(workerID, direction), "replicate " + direction, workerID);
+            SimUnit worker = unit(workerID);
+            SimUnit copy = create(UnitType.Worker, this.team);
+            place(copy, this.planet, worker.x + DX[direction.ordinal()], worker.y + DY[direction.ordinal()]);
+            teamState().karbonite -= REPLICATE_COST;
+            worker.abilityHeat += REPLICATE_COOLDOWN;
+        }
+
+        @Override
+        public boolean canLoad(int structureID, int robotID) {
+            SimUnit structure = mine(structureID);
+            SimUnit robot = mine(robotID);
+            return structure != null && robot != null && structure.type == UnitType.Rocket && structure.isBuilt
+                    && isRobot(robot.type) && isHere(structure) && isHere(robot) && robot.movementHeat < READY_HEAT
+                    && structure.garrisoned.size() < GARRISON_CAPACITY && distanceSquared(structure, robot) <= 2;
+        }
+
+        @Override
+        public void load(int structureID, int robotID) {
+            check(canLoad(structureID, robotID), "load " + robotID, structureID);
+            SimUnit structure = unit(structureID);
+            SimUnit robot = unit(robotID);
+            lift(robot);
+            robot.x = structure.x;
+            robot.y = structure.y;
+            robot.garrison = structure.id;
+            robot.movementHeat += STATS.get(robot.type)[MOVE_COOLDOWN];
+            structure.garrisoned.add(robot.id);
+        }
+
+        @Override
+        public boolean canUnload(int structureID, Direction direction) {
+            SimUnit structure = mine(structureID);
+            if (structure == null || !isHere(structure) || !structure.isBuilt || structure.garrisoned.isEmpty()) {
+                return false;
+            }
+            SimUnit robot = unit(structure.garrisoned.get(0));
+            return robot.movementHeat < READY_HEAT
+                    && isFree(this.planet, structure.x + DX[direction.ordinal()], structure.y + DY[direction.ordinal()]);
+        }
+
+        @Override
+        public void unload(int structureID, Direction direction) {
+            check(canUnload(structureID, direction), "unload " + direction, structureID);
+            SimUnit structure = unit(structureID);
+            SimUnit robot = unit(structure.garrisoned.remove(0));
+            place(robot, this.planet, structure.x + DX[direction.ordinal()], structure.y + DY[direction.ordinal()]);
+            robot.movementHeat += STATS.get(robot.type)[MOVE_COOLDOWN];
+        }
+
+        @Override
+        public boolean canProduceRobot(int factoryID, UnitType type) {
+            SimUnit factory = mine(factoryID);
+            return factory != null && factory.type == UnitType.Factory && factory.isBuilt && factory.producing == null
+                    && isRobot(type) && teamState().karbonite >= STATS.get(type)[COST];
+        }
+
+        @Override
+        public void produceRobot(int factoryID, UnitType type) {
+            check(canProduceRobot(factoryID, type), "produce " + type, factoryID);
+            SimUnit factory = unit(factoryID);
+            factory.producing = type;
+            factory.productionLeft = PRODUCTION_ROUNDS;
+            teamState().karbonite -= STATS.get(type)[COST];
+        }
+
+        @Override
+        public void launchRocket(int rocketID, int x, int y) {
+            SimUnit rocket = mine(rocketID);
+            boolean canLaunch = rocket != null && rocket.type == UnitType.Rocket && rocket.isBuilt && isHere(rocket)
+                    && this.planet == Planet.Earth && x >= 0 && y >= 0 && x < getMapWidth(Planet.Mars)
+                    && y < getMapHeight(Planet.Mars) && OfflineGame.this.map.isPassable(Planet.Mars, x, y);
+            check(canLaunch, "launch", rocketID);
+            lift(rocket);
+            rocket.isInSpace = true;
+            rocket.landingRound = OfflineGame.this.round + ROCKET_FLIGHT_ROUNDS;
+            rocket.landingX = x;
+            rocket.landingY = y;
+        }
+
+        @Override
+        public void queueResearch(UnitType branch) {
+            teamState().research.add(branch);
+        }
+
+        @Override
+        public void readTeamArray(Planet planet, int[] values) {
+            System.arraycopy(teamState().teamArrays.get(planet), 0, values, 0, values.length);
+        }
+
+        @Override
+        public void writeTeamArray(int index, int value) {
+            teamState().teamArrays.get(this.planet)[index] = value;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import bc.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The starting state of both planets for an offline game, read from a text
+ * file. A file has a section for each planet, starting with a header line of
+ * the planet name and its width and height, followed by one line per row of
+ * the map. The first line is the top row, the one with the highest
+ * y-coordinate. Each character is one location:
+ *
+ * <pre>
+ * #      impassable
+ * .      passable, with no karbonite
+ * 1-9    passable, with 10 times that much karbonite
+ * r, b   passable, with a Red or Blue worker on it
+ * </pre>
+ *
+ * Blank lines and lines starting with ';' are ignored. If there is no Mars
+ * section, Mars is an empty map the size of Earth.
+ */
+public class OfflineMap {
+    // Karbonite at a location per unit of its digit
+    static final int KARBONITE_PER_DIGIT = 10;
+
+    // Key: Planet, Value: Terrain of the planet
+    private Map<Planet, Terrain> terrains;
+
+    private OfflineMap() {
+        this.terrains = new EnumMap<>(Planet.class);
+    }
+
+    /**
+     * Reads a map from a file.
+     *
+     * @param path The path of the file.
+     * @return The map in the file.
+     * @throws IOException If the file can't be read.
+     */
+    public static OfflineMap load(String path) throws IOException {
+        return parse(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a map from text in the map format.
+     *
+     * @param text The text of the map.
+     * @return The map.
+     * @throws IllegalArgumentException If the text isn't a valid map.
+     */
+    public static OfflineMap parse(String text) {
+        OfflineMap map = new OfflineMap();
+        Terrain terrain = null;
+        int row = 0;
+        for (String line : text.split("\r?\n")) {
+            if (line.trim().isEmpty() || line.startsWith(";")) {
+                continue;
+            }
+            if (terrain == null || row == terrain.height) {
+                String[] header = line.trim().split("\\s+");
+                if (header.length != 3) {
+                    throw new IllegalArgumentException("Expected a planet header, got: " + line);
+                }
+                Planet planet = header[0].equalsIgnoreCase("mars") ? Planet.Mars : Planet.Earth;
+                terrain = new Terrain(Integer.parseInt(header[1]), Integer.parseInt(header[2]));
+                map.terrains.put(planet, terrain);
+                row = 0;
+                continue;
+            }
+            if (line.length() < terrain.width) {
+                throw new IllegalArgumentException("Row " + row + " is shorter than the map width: " + line);
+            }
+            int y = terrain.height - 1 - row;
+            for (int x = 0; x < terrain.width; x++) {
+                terrain.set(x, y, line.charAt(x));
+            }
+            row++;
+        }
+
+        Terrain earth = map.terrains.get(Planet.Earth);
+        if (earth == null || (terrain != null && row != terrain.height)) {
+            throw new IllegalArgumentException("Map is missing Earth or has a short section");
+        }
+        if (!map.terrains.containsKey(Planet.Mars)) {
+            Terrain mars = new Terrain(earth.width, earth.height);
+            for (int i = 0; i < mars.passable.length; i++) {
+                mars.passable[i] = true;
+            }
+            map.terrains.put(Planet.Mars, mars);
+        }
+        return map;
+    }
+
+    public int getWidth(Planet planet) {
+        return this.terrains.get(planet).width;
+    }
+
+    public int getHeight(Planet planet) {
+        return this.terrains.get(planet).height;
+    }
+
+    public boolean isPassable(Planet planet, int x, int y) {
+        Terrain terrain = this.terrains.get(planet);
+        return terrain.passable[y * terrain.width + x];
+    }
+
+    public int getKarbonite(Planet planet, int x, int y) {
+        Terrain terrain = this.terrains.get(planet);
+        return terrain.karbonite[y * terrain.width + x];
+    }
+
+    /**
+     * Returns the number of units on a planet at the start of the game.
+     */
+    public int getUnitCount(Planet planet) {
+        return this.terrains.get(planet).units.size();
+    }
+
+    /**
+     * Returns the team of a starting unit.
+     *
+     * @param planet The planet the unit is on.
+     * @param i      Which unit to get, less than the unit count.
+     * @return The team of the unit.
+     */
+    public Team getUnitTeam(Planet planet, int i) {
+        return this.terrains.get(planet).units.get(i).team;
+    }
+
+    public int getUnitX(Planet planet, int i) {
+        return this.terrains.get(planet).units.get(i).x;
+    }
+
+    public int getUnitY(Planet planet, int i) {
+        return this.terrains.get(planet).units.get(i).y;
+    }
+
+    private static class Terrain {
+        private int width;
+        private int height;
+        private boolean[] passable;
+        private int[] karbonite;
+        private List<StartingUnit> units;
+
+        private Terrain(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.passable = new boolean[width * height];
+            this.karbonite = new int[width * height];
+            this.units = new ArrayList<>();
+        }
+
+        private void set(int x, int y, char c) {
+            int index = y * this.width + x;
+            this.passable[index] = c != '#';
+            if (c >= '1' && c <= '9') {
+                this.karbonite[index] = (c - '0') * KARBONITE_PER_DIGIT;
+            } else if (c == 'r' || c == 'b') {
+                this.units.add(new StartingUnit(c == 'r' ? Team.Red : Team.Blue, x, y));
+            } else if (c != '#' && c != '.') {
+                throw new IllegalArgumentException("Unknown map character: " + c);
+            }
+        }
+    }
+
+    private static class StartingUnit {
+        private Team team;
+        private int x;
+        private int y;
+
+        private StartingUnit(Team team, int x, int y) {
+            this.team = team;
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+import bc.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Plays the player alone on Earth in an offline game and reports how long
+ * its turns took. The player's own output is hidden so that printing doesn't
+ * count toward the timings.
+ *
+ * Usage: OfflineRunner map-file [rounds]
+ */
+public class OfflineRunner {
+    // Rounds to play if none are given
+    static final int DEFAULT_ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OfflineRunner map-file [rounds]");
+            System.exit(1);
+        }
+        OfflineMap map = OfflineMap.load(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        OfflineGame game = new OfflineGame(map);
+        GameApi gc = RecordingGameApi.recordIfEnabled(game.view(Team.Red, Planet.Earth));
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        long[] turnNanos = new long[rounds];
+        long initStart = System.nanoTime();
+        Player player;
+        try {
+            player = new Player(gc);
+            long initNanos = System.nanoTime() - initStart;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                player.playTurn();
+                turnNanos[i] = System.nanoTime() - start;
+            }
+            System.setOut(out);
+            System.out.printf("init %.1f ms%n", initNanos / 1e6);
+        } finally {
+            System.setOut(out);
+        }
+
+        long[] sorted = turnNanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long nanos : turnNanos) {
+            total += nanos;
+        }
+        System.out.printf("rounds %d mean %.3f ms p50 %.3f ms p99 %.3f ms max %.3f ms%n", rounds,
+                total / 1e6 / rounds, sorted[rounds / 2] / 1e6, sorted[Math.min(rounds - 1, rounds * 99 / 100)] / 1e6,
+                sorted[rounds - 1] / 1e6);
+        System.out.printf("karbonite %d workers %d factories %d rangers %d rockets %d%n", game.getKarbonite(Team.Red),
+                game.countUnits(Team.Red, UnitType.Worker), game.countUnits(Team.Red, UnitType.Factory),
+                game.countUnits(Team.Red, UnitType.Ranger), game.countUnits(Team.Red, UnitType.Rocket));
+    }
+}
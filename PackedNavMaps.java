@@ -0,0 +1,80 @@
+/**
+ * A table of navigation maps with each direction value packed into four
+ * bits, keyed by the index of their target location. Used to hold maps for
+ * every target on the planet in a fraction of the memory of the cache.
+ */
+public class PackedNavMaps {
+    // Packed value for locations that can't reach the target
+    private static final int NO_DIR = 0xF;
+
+    // Packed maps, indexed by target location index
+    private byte[][] maps;
+    private int locations;
+    private int size;
+    private long usedBytes;
+
+    /**
+     * Creates a new empty table.
+     *
+     * @param locations The number of locations on the map.
+     */
+    public PackedNavMaps(int locations) {
+        this.maps = new byte[locations][];
+        this.locations = locations;
+        this.size = 0;
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Returns whether the table has a map for a target.
+     *
+     * @param target The index of the target location.
+     * @return True if the map is in the table, false otherwise.
+     */
+    public boolean contains(int target) {
+        return this.maps[target] != null;
+    }
+
+    /**
+     * Packs a navigation map into the table.
+     *
+     * @param target The index of the target location.
+     * @param navMap The navigation map for the target. Values must be -1 or
+     *               between 0 and 14.
+     */
+    public void put(int target, byte[] navMap) {
+        byte[] packed = new byte[(this.locations + 1) / 2];
+        for (int i = 0; i < this.locations; i++) {
+            int value = navMap[i] < 0 ? NO_DIR : navMap[i];
+            packed[i >> 1] |= value << ((i & 1) << 2);
+        }
+
+        if (this.maps[target] == null) {
+            this.size++;
+            this.usedBytes += packed.length;
+        }
+        this.maps[target] = packed;
+    }
+
+    /**
+     * Returns the direction value for a location in the map of a target. The
+     * map must be in the table.
+     *
+     * @param target   The index of the target location.
+     * @param location The index of the location to get the direction of.
+     * @return The direction value stored for the location, or -1 if the
+     * location can't reach the target.
+     */
+    public int get(int target, int location) {
+        int value = (this.maps[target][location >> 1] >> ((location & 1) << 2)) & 0xF;
+        return value == NO_DIR ? -1 : value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getUsedBytes() {
+        return this.usedBytes;
+    }
+}
@@ -1,36 +1,32 @@
 import bc.*;
 
-import java.awt.Point;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public abstract class PlanetPlayer {
     static final Direction[] DIRECTIONS = {Direction.North, Direction.Northeast, Direction.East, Direction.Southeast, Direction.South, Direction.Southwest, Direction.West, Direction.Northwest};
-    static Map<Direction, Point> DIR_VECTORS = new HashMap<>();
-
-    static {
-        DIR_VECTORS.put(Direction.North, new Point(0, 1));
-        DIR_VECTORS.put(Direction.Northeast, new Point(1, 1));
-        DIR_VECTORS.put(Direction.East, new Point(1, 0));
-        DIR_VECTORS.put(Direction.Southeast, new Point(1, -1));
-        DIR_VECTORS.put(Direction.South, new Point(0, -1));
-        DIR_VECTORS.put(Direction.Southwest, new Point(-1, -1));
-        DIR_VECTORS.put(Direction.West, new Point(-1, 0));
-        DIR_VECTORS.put(Direction.Northwest, new Point(-1, 1));
-    }
 
     // Represents impassable terrain in the game map.
     static final int IMPASSABLE = -1;
+    // Whether to build navigation maps for every location at startup. Off
+    // until it is measured to help: the predicted targets are built in spare
+    // turn time anyway, and building everything spends a quarter of the time
+    // bank before the first turn.
+    static final boolean PRECOMPUTE_NAV_MAPS = false;
+    // Fraction of the initial time bank to spend precomputing navigation maps
+    static final double PRECOMPUTE_TIME_FRACTION = 0.25;
+    // Most time to spend building navigation maps after a turn
+    static final long BACKGROUND_MAX_MS = 20;
+    // The round the game ends on
+    static final long LAST_ROUND = 1000;
     // What team this player is on
     protected final Team MY_TEAM;
     // What team the enemy is
     protected final Team ENEMY_TEAM;
-    // This player's game controller
-    protected GameController gc;
+    // The game this player is playing
+    protected GameApi gc;
     // The planet this player is on
     protected Planet planet;
     // The navigator for this player
@@ -38,29 +34,44 @@ public abstract class PlanetPlayer {
     // Map of all locations on the planet, represented as the amount of
     // karbonite at each location. -1 signifies impassable terrain.
     protected int[][] karboniteMap;
-    protected boolean[][] passableMap;
-    protected boolean[][] factoryLocationMap;
+    // Locations with passable terrain
+    protected BitGrid passableMap;
+    // Locations where a factory could be placed
+    protected BitGrid factoryLocationMap;
+    // Locations holding a unit this turn
+    protected BitGrid occupiedMap;
     protected int mapWidth;
     protected int mapHeight;
-    protected Set<Point> impassablePoints;
-    // Key: UnitID, Value: Unit
-    protected Map<Integer, Unit> allUnits;
+    // Every location on this planet, to hand to the game without allocating
+    protected LocationTable locations;
+    // Every visible unit as of the start of this turn
+    protected UnitSnapshot units;
+    // Enemy units on the map as of the start of this turn
+    protected SpatialHash enemies;
+    // Deadlines for each phase of the current turn
+    protected TurnBudget budget;
     // Key: UnitType, Value: Set of all my units of that type
-    protected Map<UnitType, Set<Integer>> myUnits;
+    protected Map<UnitType, IntSet> myUnits;
     // Key: UnitType, Value: Set of all my units of that type
-    protected Map<UnitType, Set<Integer>> oppUnits;
+    protected Map<UnitType, IntSet> oppUnits;
     protected List<MapLocation> attackPoints;
     protected MapLocation rallyPoint;
     protected MapLocation base;
-    protected Map<Integer, Integer> stalemateTime;
+    // Key: UnitID, Value: Turns the unit has been unable to move
+    protected IntIntMap stalemateTime;
+    // Reusable buffers for moving groups of units
+    private int[] swarmUnits;
+    private int[] swarmX;
+    private int[] swarmY;
+    private byte[] swarmResults;
 
     /**
      * Creates a new player.
      *
-     * @param gc     The game controller for this player.
+     * @param gc     The game for this player.
      * @param planet The planet this player is on.
      */
-    public PlanetPlayer(GameController gc, Planet planet) {
+    public PlanetPlayer(GameApi gc, Planet planet) {
         this.gc = gc;
         this.planet = planet;
         this.MY_TEAM = gc.team();
@@ -71,35 +82,34 @@ public abstract class PlanetPlayer {
         }
 
         // Create planet maps
-        PlanetMap pm = gc.startingMap(planet);
-        this.mapWidth = (int) pm.getWidth();
-        this.mapHeight = (int) pm.getHeight();
-        this.impassablePoints = new HashSet<>();
+        this.mapWidth = gc.getMapWidth(planet);
+        this.mapHeight = gc.getMapHeight(planet);
+        this.locations = new LocationTable(planet, this.mapWidth, this.mapHeight);
+        this.occupiedMap = new BitGrid(this.mapWidth, this.mapHeight);
         this.karboniteMap = new int[this.mapHeight][this.mapWidth];
-        this.passableMap = new boolean[this.mapHeight][this.mapWidth];
+        this.passableMap = new BitGrid(this.mapWidth, this.mapHeight);
         this.attackPoints = new ArrayList<>();
         this.rallyPoint = null;
         this.base = null;
-        this.factoryLocationMap = new boolean[this.mapHeight][this.mapWidth];
-        this.stalemateTime = new HashMap<>();
+        this.factoryLocationMap = new BitGrid(this.mapWidth, this.mapHeight);
+        this.stalemateTime = new IntIntMap();
+        this.swarmUnits = new int[0];
+        this.swarmX = new int[0];
+        this.swarmY = new int[0];
+        this.swarmResults = new byte[0];
         for (int y = 0; y < this.karboniteMap.length; y++) {
             for (int x = 0; x < this.karboniteMap[y].length; x++) {
-                MapLocation loc = new MapLocation(planet, x, y);
-                this.karboniteMap[y][x] = (int) pm.initialKarboniteAt(loc);
-                if (pm.isPassableTerrainAt(loc) == 1) {
-                    this.passableMap[y][x] = true;
-                } else {
-                    this.passableMap[y][x] = false;
-                }
+                this.karboniteMap[y][x] = (int) gc.initialKarboniteAt(planet, x, y);
+                this.passableMap.set(x, y, gc.isPassableTerrainAt(planet, x, y));
             }
         }
 
         for (int y = 0; y < this.karboniteMap.length; y++) {
             for (int x = 0; x < this.karboniteMap[y].length; x++) {
-                if (!this.passableMap[y][x]) {
+                if (!this.passableMap.get(x, y)) {
                     continue;
                 }
-                this.factoryLocationMap[y][x] = true;
+                this.factoryLocationMap.set(x, y);
             }
         }
 
@@ -145,18 +155,26 @@ public abstract class PlanetPlayer {
         //     }
         // }
 
-        // Set up unit lookup map
-        this.allUnits = new HashMap<>();
+        // Set up unit lookup table
+        this.units = new UnitSnapshot();
+        this.enemies = new SpatialHash(this.mapWidth, this.mapHeight);
+        this.budget = new TurnBudget();
 
         // Set up units map
-        this.myUnits = new HashMap<>();
-        this.oppUnits = new HashMap<>();
+        this.myUnits = new EnumMap<>(UnitType.class);
+        this.oppUnits = new EnumMap<>(UnitType.class);
         for (UnitType type : UnitType.values()) {
-            this.myUnits.put(type, new HashSet<>());
-            this.oppUnits.put(type, new HashSet<>());
+            this.myUnits.put(type, new IntSet());
+            this.oppUnits.put(type, new IntSet());
         }
 
-        this.navigator = new Navigator(gc, this.passableMap);
+        this.navigator = new Navigator(gc, this.passableMap, SearchMode.JUMP_POINT);
+        if (PRECOMPUTE_NAV_MAPS) {
+            long precomputeMs = (long) (gc.getTimeLeftMs() * PRECOMPUTE_TIME_FRACTION);
+            boolean complete = this.navigator.precomputeNavMaps(System.nanoTime() + precomputeMs * 1000000);
+            PackedNavMaps precomputed = this.navigator.getPrecomputedNavMaps();
+            System.out.println("Precomputed " + precomputed.size() + " navigation maps in " + precomputed.getUsedBytes() + " bytes" + (complete ? "." : ", ran out of time."));
+        }
 
         System.out.println("Ending initialization with " + gc.getTimeLeftMs() + "ms remaining.");
     }
@@ -169,56 +187,65 @@ public abstract class PlanetPlayer {
             return;
         }
 
+        MapLocation previousRallyPoint = this.rallyPoint;
+
         if (this.attackPoints.isEmpty()) {
-            for (int u : this.allUnits.keySet()) {
-                Unit unit = this.gc.unit(u);
-                if (unit.team() == this.ENEMY_TEAM) {
-                    Location loc = unit.location();
-                    if (loc.isOnMap()) {
-                        MapLocation mapLoc = loc.mapLocation();
-                        this.attackPoints.add(mapLoc);
-                        this.rallyPoint = mapLoc;
-                        break;
-                    }
+            for (int row = 0; row < this.units.size(); row++) {
+                if (this.units.getTeam(row) == this.ENEMY_TEAM && this.units.isOnMap(row)) {
+                    MapLocation mapLoc = this.locations.get(this.units.getX(row), this.units.getY(row));
+                    this.attackPoints.add(mapLoc);
+                    this.rallyPoint = mapLoc;
+                    break;
                 }
             }
         } else {
-            long closestDistance = Integer.MAX_VALUE;
+            this.rallyPoint = this.navigator.nearestOf(this.base, this.attackPoints);
+        }
 
-            for (MapLocation candidate : this.attackPoints) {
-                long dist = this.base.distanceSquaredTo(candidate);
-                if (dist < closestDistance) {
-                    closestDistance = dist;
-                    this.rallyPoint = candidate;
-                }
+        // Keep the navigation map for the current rally point cached
+        if (this.rallyPoint != previousRallyPoint) {
+            if (previousRallyPoint != null) {
+                this.navigator.unpin(previousRallyPoint);
+            }
+            if (this.rallyPoint != null) {
+                this.navigator.pin(this.rallyPoint);
+                this.navigator.prefetch(this.rallyPoint);
             }
         }
     }
 
+    public TurnBudget getBudget() {
+        return this.budget;
+    }
+
     /**
      * Processes any actions that must happen before a turn.
      */
     public void processPreTurn() {
+        long start = Profiler.start();
+        this.budget.startPhase(TurnBudget.Phase.UNITS);
+        this.navigator.installFinishedPrefetches();
+
         // Update unit maps
         for (UnitType type : this.myUnits.keySet()) {
             this.myUnits.get(type).clear();
             this.oppUnits.get(type).clear();
         }
-        this.allUnits.clear();
-        this.impassablePoints.clear();
-
-        VecUnit units = this.gc.units();
-        for (int i = 0; i < units.size(); i++) {
-            Unit unit = units.get(i);
-            Location unitLoc = unit.location();
-            if (unitLoc.isOnMap()) {
-                MapLocation unitMapLoc = unitLoc.mapLocation();
-                this.impassablePoints.add(new Point(unitMapLoc.getX(), unitMapLoc.getY()));
-
-                if (unit.team() == this.MY_TEAM) {
+        this.occupiedMap.clearAll();
+
+        this.gc.readUnits(this.units);
+        this.enemies.build(this.units, this.ENEMY_TEAM);
+        for (int row = 0; row < this.units.size(); row++) {
+            boolean isMine = this.units.getTeam(row) == this.MY_TEAM;
+            if (this.units.isOnMap(row)) {
+                int x = this.units.getX(row);
+                int y = this.units.getY(row);
+                this.occupiedMap.set(x, y);
+
+                if (isMine) {
                     for (int j = 0; j < this.attackPoints.size(); j++) {
                         MapLocation m = this.attackPoints.get(j);
-                        if (m.getX() == unitMapLoc.getX() && m.getY() == unitMapLoc.getY()) {
+                        if (m.getX() == x && m.getY() == y) {
                             this.attackPoints.remove(j);
                             nextRallyPoint();
                             break;
@@ -226,17 +253,17 @@ public abstract class PlanetPlayer {
                     }
                 }
             }
-            if (unit.team() == this.MY_TEAM) {
-                this.myUnits.get(unit.unitType()).add(unit.id());
+            if (isMine) {
+                this.myUnits.get(this.units.getType(row)).add(this.units.getId(row));
             } else {
-                this.oppUnits.get(unit.unitType()).add(unit.id());
+                this.oppUnits.get(this.units.getType(row)).add(this.units.getId(row));
             }
-            this.allUnits.put(unit.id(), unit);
         }
 
         if (this.rallyPoint == null) {
             nextRallyPoint();
         }
+        Profiler.stop(Profiler.Section.PRE_TURN, start);
     }
 
     /**
@@ -247,7 +274,108 @@ public abstract class PlanetPlayer {
      */
 
     public boolean unitExists(int unitID) {
-        return this.allUnits.containsKey(unitID);
+        return this.units.contains(unitID);
+    }
+
+    /**
+     * Returns the location of a unit. Units created this turn aren't in the
+     * snapshot, so they are looked up in the game instead.
+     *
+     * @param unitID The ID of the unit.
+     * @return The location of the unit, or null if it isn't on the map.
+     */
+    protected MapLocation getMapLocation(int unitID) {
+        int row = this.units.row(unitID);
+        if (row == UnitSnapshot.NONE) {
+            int location = this.gc.getLocationIndex(unitID);
+            return location == LocationTable.NONE ? null : this.locations.get(location);
+        }
+        if (!this.units.isOnMap(row)) {
+            return null;
+        }
+        return this.locations.get(this.units.getX(row), this.units.getY(row));
+    }
+
+    /**
+     * Returns whether a unit is in a garrison. Units created this turn are
+     * looked up in the game.
+     *
+     * @param unitID The ID of the unit.
+     * @return True if the unit is in a garrison, false otherwise.
+     */
+    protected boolean isInGarrison(int unitID) {
+        int row = this.units.row(unitID);
+        if (row == UnitSnapshot.NONE) {
+            return this.gc.isInGarrison(unitID);
+        }
+        return this.units.isInGarrison(row);
+    }
+
+    /**
+     * Returns whether a structure is fully built. Structures blueprinted this
+     * turn are looked up in the game.
+     *
+     * @param unitID The ID of the structure.
+     * @return True if the structure is built, false otherwise.
+     */
+    protected boolean isBuilt(int unitID) {
+        int row = this.units.row(unitID);
+        if (row == UnitSnapshot.NONE) {
+            return this.gc.isBuilt(unitID);
+        }
+        return this.units.isBuilt(row);
+    }
+
+    /**
+     * Moves a unit in a given direction if it can, keeping the snapshot and
+     * the occupancy map up to date.
+     *
+     * @param unitID    The unit to move.
+     * @param direction The direction to move in.
+     * @return True if the unit moved, false otherwise.
+     */
+    protected boolean tryMove(int unitID, Direction direction) {
+        int row = this.units.row(unitID);
+        if (row == UnitSnapshot.NONE) {
+            MapLocation unitLoc = getMapLocation(unitID);
+            if (unitLoc == null || !this.navigator.tryMove(unitID, direction)) {
+                return false;
+            }
+            MapLocation newLoc = this.locations.add(unitLoc, direction);
+            this.occupiedMap.clear(unitLoc.getX(), unitLoc.getY());
+            this.occupiedMap.set(newLoc.getX(), newLoc.getY());
+            return true;
+        }
+        if (!this.units.isMoveReady(row) || direction == Direction.Center || !this.gc.canMove(unitID, direction)) {
+            return false;
+        }
+        this.gc.moveRobot(unitID, direction);
+
+        int x = this.units.getX(row);
+        int y = this.units.getY(row);
+        int newX = x + LocationTable.DX[direction.ordinal()];
+        int newY = y + LocationTable.DY[direction.ordinal()];
+        this.occupiedMap.clear(x, y);
+        this.occupiedMap.set(newX, newY);
+        this.units.moved(row, newX, newY);
+        return true;
+    }
+
+    /**
+     * Marks the location next to a unit as occupied, after something was
+     * placed there this turn. Swarms move without asking the game whether a
+     * location is free, so the occupied map has to keep up with every unit
+     * that is built, replicated or unloaded.
+     *
+     * @param unitID    The unit that placed something next to it.
+     * @param direction The direction it was placed in.
+     */
+    protected void occupyNextTo(int unitID, Direction direction) {
+        MapLocation unitLoc = getMapLocation(unitID);
+        if (unitLoc != null) {
+            MapLocation placedLoc = this.locations.add(unitLoc, direction);
+            this.occupiedMap.set(placedLoc.getX(), placedLoc.getY());
+        }
     }
 
     /**
@@ -259,6 +387,22 @@ public abstract class PlanetPlayer {
      * Processes any actions that must happen at the end of a turn.
      */
     public void processPostTurn() {
+        // Spend spare time building navigation maps for predicted targets
+        this.budget.startPhase(TurnBudget.Phase.PRECOMPUTE);
+        if (this.budget.hasTime()) {
+            long deadlineNanos = Math.min(this.budget.getDeadlineNanos(), System.nanoTime() + BACKGROUND_MAX_MS * 1000000);
+            this.navigator.runBackgroundPrecompute(deadlineNanos);
+        }
+
+        NavMapCache navMaps = this.navigator.getNavMapCache();
+        Profiler.endTurn(navMaps.getHits(), navMaps.getMisses());
+        long round = this.gc.round();
+        AllocationTracker.endTurn(round);
+        if (round >= LAST_ROUND) {
+            Profiler.writeReport();
+            AllocationTracker.writeReport();
+        }
+
         System.out.println("Ending round " + this.gc.round() + " with " + this.gc.getTimeLeftMs() + "ms remaining.");
     }
 
@@ -273,6 +417,25 @@ public abstract class PlanetPlayer {
         return x < 0 || y < 0 || x >= this.mapWidth || y >= this.mapHeight;
     }
 
+    /**
+     * Returns the direction a unit should move in to follow the navigation
+     * map to a target. If the current phase is out of time and the map isn't
+     * ready, the map is built on the side instead and the unit heads
+     * straight for the target until it is.
+     *
+     * @param unitID  The unit to move.
+     * @param unitLoc The location of the unit.
+     * @param target  The target to move the unit to.
+     * @return The direction to move in, or Center to stay put.
+     */
+    protected Direction navigate(int unitID, MapLocation unitLoc, MapLocation target) {
+        if (!this.budget.hasTime() && !this.navigator.hasNavMap(target)) {
+            this.navigator.prefetch(target);
+            return this.navigator.greedyDirection(unitLoc, target, this.occupiedMap);
+        }
+        return this.navigator.navigate(unitID, unitLoc, target);
+    }
+
     /**
      * Attempts to move a unit to a given target.
      *
@@ -280,14 +443,14 @@ public abstract class PlanetPlayer {
      * @param target The target to move the given unit to.
      */
     protected void move(int unitID, MapLocation target) {
-        Unit unit = this.allUnits.get(unitID);
-        if (!unit.location().isOnMap()) {
+        MapLocation unitLoc = getMapLocation(unitID);
+        if (unitLoc == null) {
             return;
         }
-        Direction toMove = this.navigator.navigate(unitID, unit.location().mapLocation(), target);
+        Direction toMove = navigate(unitID, unitLoc, target);
         // MapLocation loc = unit.location().mapLocation();
-        // Direction toMove = this.navigator.pathfind(new Point(loc.getX(), loc.getY()), new Point(target.getX(), target.getY()), this.passableMap, this.impassablePoints);
-        this.navigator.tryMove(unitID, toMove);
+        // Direction toMove = this.navigator.pathfind(unit.location().mapLocation(), target, this.occupiedMap);
+        tryMove(unitID, toMove);
     }
 
 
@@ -299,25 +462,92 @@ public abstract class PlanetPlayer {
      * @param target The target to move the given unit to.
      */
     protected void goodMove(int unitID, MapLocation target) {
-        Unit unit = this.allUnits.get(unitID);
-        if (!unit.location().isOnMap()) {
+        MapLocation unitLoc = getMapLocation(unitID);
+        if (unitLoc == null) {
             return;
         }
-        if (!this.stalemateTime.containsKey(unitID)) {
-            this.stalemateTime.put(unitID, 0);
-        }
-        MapLocation unitLoc = unit.location().mapLocation();
-
-        Direction toMove = this.navigator.navigate(unitID, unit.location().mapLocation(), target);
+        Direction toMove = navigate(unitID, unitLoc, target);
         if (!this.gc.canMove(unitID, toMove)) {
-            this.stalemateTime.put(unit.id(), this.stalemateTime.get(unit.id()) + 1);
+            this.stalemateTime.put(unitID, this.stalemateTime.get(unitID, 0) + 1);
         } else {
             this.stalemateTime.put(unitID, 0);
         }
-        if (this.stalemateTime.get(unitID) > 5 && this.gc.getTimeLeftMs() > 10000) { // TODO
-            toMove = this.navigator.pathfind(new Point(unitLoc.getX(), unitLoc.getY()), new Point(target.getX(), target.getY()), this.passableMap, this.impassablePoints);
+        if (this.stalemateTime.get(unitID, 0) > 5 && this.budget.hasTime()) { // TODO
+            toMove = this.navigator.pathfind(unitLoc, target, this.occupiedMap);
         }
 
-        this.navigator.tryMove(unitID, toMove);
+        tryMove(unitID, toMove);
+    }
+
+    /**
+     * Moves a group of units toward a shared target in a single pass. Units
+     * that have been stuck for a while fall back to the more expensive
+     * navigator used by goodMove(). If out of time before the target's map
+     * is built, units head straight for the target instead.
+     *
+     * @param unitIDs The units to move.
+     * @param target  The target to move the given units to.
+     */
+    protected void swarmMove(IntSet unitIDs, MapLocation target) {
+        if (target == null) {
+            return;
+        }
+        // Don't build the target's map during the turn if out of time, but
+        // keep the units heading for the target until it is built
+        if (!this.budget.hasTime() && !this.navigator.hasDistances(target)) {
+            this.navigator.prefetch(target);
+            for (int i = 0; i < unitIDs.size(); i++) {
+                int unitID = unitIDs.get(i);
+                int row = this.units.row(unitID);
+                if (row == UnitSnapshot.NONE || !this.units.isMoveReady(row) || !this.units.isOnMap(row)) {
+                    continue;
+                }
+                MapLocation unitLoc = this.locations.get(this.units.getX(row), this.units.getY(row));
+                tryMove(unitID, this.navigator.greedyDirection(unitLoc, target, this.occupiedMap));
+            }
+            return;
+        }
+        if (this.swarmUnits.length < unitIDs.size()) {
+            int capacity = Math.max(unitIDs.size(), 2 * this.swarmUnits.length);
+            this.swarmUnits = new int[capacity];
+            this.swarmX = new int[capacity];
+            this.swarmY = new int[capacity];
+            this.swarmResults = new byte[capacity];
+        }
+
+        // Units that are still cooling down aren't stuck, so leave them out
+        int count = 0;
+        for (int i = 0; i < unitIDs.size(); i++) {
+            int unitID = unitIDs.get(i);
+            int row = this.units.row(unitID);
+            if (row == UnitSnapshot.NONE || !this.units.isMoveReady(row) || !this.units.isOnMap(row)) {
+                continue;
+            }
+            this.swarmUnits[count] = unitID;
+            this.swarmX[count] = this.units.getX(row);
+            this.swarmY[count] = this.units.getY(row);
+            count++;
+        }
+
+        this.navigator.moveSwarm(this.swarmUnits, this.swarmX, this.swarmY, count, target, this.occupiedMap, this.swarmResults);
+
+        // Only units held up by something outside the group are stuck
+        for (int i = 0; i < count; i++) {
+            int unitID = this.swarmUnits[i];
+            if (this.swarmResults[i] == Navigator.SWARM_MOVED) {
+                this.units.moved(this.units.row(unitID), this.swarmX[i], this.swarmY[i]);
+                this.stalemateTime.put(unitID, 0);
+                continue;
+            }
+            if (this.swarmResults[i] != Navigator.SWARM_BLOCKED) {
+                continue;
+            }
+            int time = this.stalemateTime.get(unitID, 0) + 1;
+            this.stalemateTime.put(unitID, time);
+            if (time > 5 && this.budget.hasTime()) { // TODO
+                MapLocation unitLoc = this.locations.get(this.swarmX[i], this.swarmY[i]);
+                tryMove(unitID, this.navigator.pathfind(unitLoc, target, this.occupiedMap));
+            }
+        }
     }
 }
@@ -4,17 +4,18 @@ import bc.*;
  * TODO: Update the ==0, ==1 checks when methods are updated to return booleans
  */
 public class Player {
-    // This player's game controller
-    protected GameController gc;
+    // The game this player is playing
+    protected GameApi gc;
     // Holds the player AI for this planet
     private PlanetPlayer player;
 
     /**
      * Initializes the player for a new game.
+     *
+     * @param gc The game to play.
      */
-    public Player() {
-        // Connect ot the manager and start the game
-        this.gc = new GameController();
+    public Player(GameApi gc) {
+        this.gc = gc;
 
         Planet planet = this.gc.planet();
         if (planet == Planet.Earth) {
@@ -30,7 +31,8 @@ public class Player {
     }
 
     public static void main(String[] args) {
-        Player player = new Player();
+        // Connect ot the manager and start the game, recording it if asked to
+        Player player = new Player(RecordingGameApi.recordIfEnabled(new NativeGameApi(new GameController())));
         player.start();
     }
 
@@ -49,17 +51,25 @@ public class Player {
 
         // Keep playing turns as long as possible
         while (true) {
-            // Catch all exceptions, since crashing will disable all play for the
-            // rest of the game.
-            try {
-                this.player.processPreTurn();
-                this.player.processTurn();
-                this.player.processPostTurn();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            this.gc.nextTurn();
+            playTurn();
+        }
+    }
 
+    /**
+     * Plays a single turn and waits for the next one.
+     */
+    public void playTurn() {
+        // Catch all exceptions, since crashing will disable all play for the
+        // rest of the game.
+        try {
+            // Decide how long this turn can take before doing anything
+            this.player.getBudget().startTurn(this.gc.getTimeLeftMs());
+            this.player.processPreTurn();
+            this.player.processTurn();
+            this.player.processPostTurn();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        this.gc.nextTurn();
     }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Records how long the hot paths of the player take, and writes a summary at
+ * the end of the game. Profiling is only turned on if the PROFILE_REPORT
+ * environment variable is set, to the file the summary should be written to.
+ * When it is off, start() and stop() return right away.
+ *
+ * Timings are kept in ring buffers allocated up front, both for single calls
+ * and for the total of each turn, so recording doesn't allocate.
+ */
+public class Profiler {
+    /**
+     * The parts of the player that are timed.
+     */
+    public enum Section {
+        PRE_TURN, POD_ROCKET, POD_BUILD, POD_MINE, NAVIGATE, CREATE_NAV_MAP, PATHFIND, NEAREST_KARBONITE, BEST_KARBONITE
+    }
+
+    // Where to write the summary, or null if profiling is off
+    private static final String REPORT_PATH = System.getenv("PROFILE_REPORT");
+    static final boolean ENABLED = REPORT_PATH != null;
+    // Number of single calls kept per section
+    private static final int CALL_CAPACITY = 8192;
+    // Number of turns kept, enough for a whole game
+    private static final int TURN_CAPACITY = 1024;
+
+    private static final int SECTIONS = Section.values().length;
+    // Most recent call times of each section, in nanoseconds
+    private static final long[][] callNanos = new long[SECTIONS][ENABLED ? CALL_CAPACITY : 0];
+    private static final long[] calls = new long[SECTIONS];
+    private static final long[] totalNanos = new long[SECTIONS];
+    // Time and calls of each section so far this turn
+    private static final long[] thisTurnNanos = new long[SECTIONS];
+    private static final int[] thisTurnCalls = new int[SECTIONS];
+    // Time of each section in each of the most recent turns, in nanoseconds
+    private static final long[][] turnNanos = new long[SECTIONS][ENABLED ? TURN_CAPACITY : 0];
+    private static final int[][] turnCalls = new int[SECTIONS][ENABLED ? TURN_CAPACITY : 0];
+    // Navigation map cache lookups in each of the most recent turns
+    private static final long[] turnCacheHits = new long[ENABLED ? TURN_CAPACITY : 0];
+    private static final long[] turnCacheMisses = new long[ENABLED ? TURN_CAPACITY : 0];
+    private static int turns = 0;
+    private static long lastCacheHits = 0;
+    private static long lastCacheMisses = 0;
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Profiler::writeReport));
+        }
+    }
+
+    private Profiler() {
+    }
+
+    /**
+     * Returns the time to pass to stop() at the end of a timed section.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a call to a section.
+     *
+     * @param section    The section that was called.
+     * @param startNanos The time returned by start() when the call began.
+     */
+    public static void stop(Section section, long startNanos) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        int s = section.ordinal();
+        callNanos[s][(int) (calls[s] % CALL_CAPACITY)] = nanos;
+        calls[s]++;
+        totalNanos[s] += nanos;
+        thisTurnNanos[s] += nanos;
+        thisTurnCalls[s]++;
+    }
+
+    /**
+     * Records the totals for the turn that just ended and starts the next one.
+     *
+     * @param cacheHits   The total number of navigation map cache hits so far.
+     * @param cacheMisses The total number of navigation map cache misses so
+     *                    far.
+     */
+    public static void endTurn(long cacheHits, long cacheMisses) {
+        if (!ENABLED) {
+            return;
+        }
+        int slot = turns % TURN_CAPACITY;
+        for (int s = 0; s < SECTIONS; s++) {
+            turnNanos[s][slot] = thisTurnNanos[s];
+            turnCalls[s][slot] = thisTurnCalls[s];
+            thisTurnNanos[s] = 0;
+            thisTurnCalls[s] = 0;
+        }
+
+        turnCacheHits[slot] = cacheHits - lastCacheHits;
+        turnCacheMisses[slot] = cacheMisses - lastCacheMisses;
+        lastCacheHits = cacheHits;
+        lastCacheMisses = cacheMisses;
+        turns++;
+    }
+
+    /**
+     * Writes a summary of every section to the report file: the number of
+     * calls, the median and 99th percentile time of a single call and of a
+     * whole turn, and the total time spent. Does nothing if profiling is off.
+     */
+    public static synchronized void writeReport() {
+        if (!ENABLED) {
+            return;
+        }
+        int turnCount = Math.min(turns, TURN_CAPACITY);
+        long[] sorted = new long[Math.max(CALL_CAPACITY, TURN_CAPACITY)];
+        try (PrintWriter out = new PrintWriter(new FileWriter(REPORT_PATH))) {
+            out.printf("turns %d%n", turns);
+            out.printf("%-18s %10s %12s %12s %12s %12s %10s%n", "section", "calls", "call_p50_us", "call_p99_us", "turn_p50_us", "turn_p99_us", "total_ms");
+            for (Section section : Section.values()) {
+                int s = section.ordinal();
+                int callCount = (int) Math.min(calls[s], CALL_CAPACITY);
+                System.arraycopy(callNanos[s], 0, sorted, 0, callCount);
+                Arrays.sort(sorted, 0, callCount);
+                double callP50 = percentile(sorted, callCount, 0.50) / 1000.0;
+                double callP99 = percentile(sorted, callCount, 0.99) / 1000.0;
+
+                System.arraycopy(turnNanos[s], 0, sorted, 0, turnCount);
+                Arrays.sort(sorted, 0, turnCount);
+                double turnP50 = percentile(sorted, turnCount, 0.50) / 1000.0;
+                double turnP99 = percentile(sorted, turnCount, 0.99) / 1000.0;
+
+                out.printf("%-18s %10d %12.1f %12.1f %12.1f %12.1f %10.1f%n", section.name().toLowerCase(), calls[s], callP50, callP99, turnP50, turnP99, totalNanos[s] / 1e6);
+            }
+
+            long hits = 0;
+            long misses = 0;
+            for (int i = 0; i < turnCount; i++) {
+                hits += turnCacheHits[i];
+                misses += turnCacheMisses[i];
+            }
+            out.printf("nav_map_cache hits %d misses %d hit_rate %.3f%n", hits, misses, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns a percentile of the first count values of a sorted array, or 0
+     * if there are none.
+     */
+    private static long percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return sorted[Math.min(count - 1, (int) (fraction * count))];
+    }
+}
@@ -0,0 +1,416 @@
+import bc.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Plays through another game while writing everything the player asked the
+ * game, and every action it took, to a log that ReplayGameApi can play back.
+ * The log is flushed at the end of every turn, so it is complete up to the
+ * last finished turn even if the game is killed.
+ *
+ * The log starts with a header of MAGIC, VERSION and the planet and team
+ * ordinals. Each call after that is a record of its Call ordinal, three
+ * arguments and, for calls that return something, the result. Unit snapshots
+ * are written out in full. A turn ends with an END_TURN record. Numbers are
+ * written as zigzag varints, since most of them are small.
+ */
+public class RecordingGameApi implements GameApi {
+    // Where to write the log of a game, or null if games aren't recorded
+    private static final String LOG_PATH = System.getenv("REPLAY_LOG");
+    static final int MAGIC = 0x42435250;
+    static final int VERSION = 2;
+    // Bits of a unit's flags in a snapshot record
+    static final int ON_MAP = 1;
+    static final int IN_GARRISON = 2;
+    static final int MOVE_READY = 4;
+    static final int ATTACK_READY = 8;
+    static final int SNIPING = 16;
+    static final int BUILT = 32;
+    static final int PRODUCING = 64;
+
+    /**
+     * The calls that are recorded. Locations, unit types and directions are
+     * recorded by their coordinates and ordinals.
+     */
+    enum Call {
+        ROUND, TIME_LEFT, KARBONITE, MAP_WIDTH, MAP_HEIGHT, PASSABLE, INITIAL_KARBONITE, INITIAL_UNITS, UNITS,
+        LOCATION, IN_GARRISON, BUILT, GARRISON_SIZE, SENSE_UNIT, KARBONITE_AT, MOVE_READY, CAN_MOVE,
+        CAN_ATTACK, CAN_HARVEST, CAN_BLUEPRINT, CAN_BUILD, CAN_REPLICATE, CAN_LOAD, CAN_UNLOAD, CAN_PRODUCE,
+        TEAM_ARRAY,
+        MOVE(true), ATTACK(true), HARVEST(true), BLUEPRINT(true), BUILD(true), REPLICATE(true), LOAD(true),
+        UNLOAD(true), PRODUCE(true), LAUNCH(true), RESEARCH(true), WRITE_TEAM_ARRAY(true),
+        END_TURN(true);
+
+        // Whether the call changes the game instead of returning something
+        final boolean isAction;
+
+        Call() {
+            this(false);
+        }
+
+        Call(boolean isAction) {
+            this.isAction = isAction;
+        }
+    }
+
+    private GameApi gc;
+    // Where the log is written, or null if writing it failed
+    private DataOutputStream out;
+
+    /**
+     * Starts recording a game.
+     *
+     * @param gc   The game to play through.
+     * @param path The file to write the log to.
+     * @throws IOException If the file can't be created.
+     */
+    public RecordingGameApi(GameApi gc, String path) throws IOException {
+        this.gc = gc;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeByte(gc.planet().ordinal());
+        this.out.writeByte(gc.team().ordinal());
+    }
+
+    /**
+     * Records a game if the REPLAY_LOG environment variable is set, to the
+     * file it names.
+     *
+     * @param gc The game to play through.
+     * @return A game that records to the log, or the given game if games
+     * aren't recorded or the log can't be created.
+     */
+    public static GameApi recordIfEnabled(GameApi gc) {
+        if (LOG_PATH == null) {
+            return gc;
+        }
+        try {
+            return new RecordingGameApi(gc, LOG_PATH);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return gc;
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            this.out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        this.out.writeByte((int) zigzag);
+    }
+
+    private void writeCall(Call call, int a, int b, int c) throws IOException {
+        this.out.writeByte(call.ordinal());
+        writeVarLong(a);
+        writeVarLong(b);
+        writeVarLong(c);
+    }
+
+    /**
+     * Stops recording after a write fails, so that the game keeps going.
+     */
+    private void fail(IOException e) {
+        e.printStackTrace();
+        this.out = null;
+    }
+
+    private long record(Call call, int a, int b, int c, long result) {
+        if (this.out != null) {
+            try {
+                writeCall(call, a, b, c);
+                writeVarLong(result);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return result;
+    }
+
+    private boolean record(Call call, int a, int b, int c, boolean result) {
+        record(call, a, b, c, result ? 1 : 0);
+        return result;
+    }
+
+    private void recordAction(Call call, int a, int b, int c) {
+        if (this.out != null) {
+            try {
+                writeCall(call, a, b, c);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void recordUnits(Call call, int planet, UnitSnapshot snapshot) {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            writeCall(call, planet, 0, 0);
+            writeVarLong(snapshot.size());
+            for (int row = 0; row < snapshot.size(); row++) {
+                int flags = (snapshot.isOnMap(row) ? ON_MAP : 0)
+                        | (snapshot.isInGarrison(row) ? IN_GARRISON : 0)
+                        | (snapshot.isMoveReady(row) ? MOVE_READY : 0)
+                        | (snapshot.isAttackReady(row) ? ATTACK_READY : 0)
+                        | (snapshot.isSniping(row) ? SNIPING : 0)
+                        | (snapshot.isBuilt(row) ? BUILT : 0)
+                        | (snapshot.isProducing(row) ? PRODUCING : 0);
+                writeVarLong(snapshot.getId(row));
+                this.out.writeByte(snapshot.getType(row).ordinal());
+                this.out.writeByte(snapshot.getTeam(row).ordinal());
+                this.out.writeByte(flags);
+                writeVarLong(snapshot.isOnMap(row) ? snapshot.getX(row) : 0);
+                writeVarLong(snapshot.isOnMap(row) ? snapshot.getY(row) : 0);
+                writeVarLong(snapshot.getHealth(row));
+                writeVarLong(snapshot.getVisionRange(row));
+                writeVarLong(snapshot.getAttackRange(row));
+                writeVarLong(snapshot.getDamage(row));
+                writeVarLong(snapshot.getGarrisonSize(row));
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public Planet planet() {
+        return this.gc.planet();
+    }
+
+    @Override
+    public Team team() {
+        return this.gc.team();
+    }
+
+    @Override
+    public long round() {
+        return record(Call.ROUND, 0, 0, 0, this.gc.round());
+    }
+
+    @Override
+    public long getTimeLeftMs() {
+        return record(Call.TIME_LEFT, 0, 0, 0, this.gc.getTimeLeftMs());
+    }
+
+    @Override
+    public long karbonite() {
+        return record(Call.KARBONITE, 0, 0, 0, this.gc.karbonite());
+    }
+
+    /**
+     * Ends the turn in the log and flushes it before waiting for the next
+     * turn.
+     */
+    @Override
+    public void nextTurn() {
+        recordAction(Call.END_TURN, 0, 0, 0);
+        if (this.out != null) {
+            try {
+                this.out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        this.gc.nextTurn();
+    }
+
+    @Override
+    public int getMapWidth(Planet planet) {
+        return (int) record(Call.MAP_WIDTH, planet.ordinal(), 0, 0, this.gc.getMapWidth(planet));
+    }
+
+    @Override
+    public int getMapHeight(Planet planet) {
+        return (int) record(Call.MAP_HEIGHT, planet.ordinal(), 0, 0, this.gc.getMapHeight(planet));
+    }
+
+    @Override
+    public boolean isPassableTerrainAt(Planet planet, int x, int y) {
+        return record(Call.PASSABLE, planet.ordinal(), x, y, this.gc.isPassableTerrainAt(planet, x, y));
+    }
+
+    @Override
+    public long initialKarboniteAt(Planet planet, int x, int y) {
+        return record(Call.INITIAL_KARBONITE, planet.ordinal(), x, y, this.gc.initialKarboniteAt(planet, x, y));
+    }
+
+    @Override
+    public void readInitialUnits(Planet planet, UnitSnapshot snapshot) {
+        this.gc.readInitialUnits(planet, snapshot);
+        recordUnits(Call.INITIAL_UNITS, planet.ordinal(), snapshot);
+    }
+
+    @Override
+    public void readUnits(UnitSnapshot snapshot) {
+        this.gc.readUnits(snapshot);
+        recordUnits(Call.UNITS, 0, snapshot);
+    }
+
+    @Override
+    public int getLocationIndex(int unitID) {
+        return (int) record(Call.LOCATION, unitID, 0, 0, this.gc.getLocationIndex(unitID));
+    }
+
+    @Override
+    public boolean isInGarrison(int unitID) {
+        return record(Call.IN_GARRISON, unitID, 0, 0, this.gc.isInGarrison(unitID));
+    }
+
+    @Override
+    public boolean isBuilt(int structureID) {
+        return record(Call.BUILT, structureID, 0, 0, this.gc.isBuilt(structureID));
+    }
+
+    @Override
+    public int getGarrisonSize(int structureID) {
+        return (int) record(Call.GARRISON_SIZE, structureID, 0, 0, this.gc.getGarrisonSize(structureID));
+    }
+
+    @Override
+    public int senseUnitAt(int x, int y) {
+        return (int) record(Call.SENSE_UNIT, x, y, 0, this.gc.senseUnitAt(x, y));
+    }
+
+    @Override
+    public long karboniteAt(int x, int y) {
+        return record(Call.KARBONITE_AT, x, y, 0, this.gc.karboniteAt(x, y));
+    }
+
+    @Override
+    public boolean isMoveReady(int unitID) {
+        return record(Call.MOVE_READY, unitID, 0, 0, this.gc.isMoveReady(unitID));
+    }
+
+    @Override
+    public boolean canMove(int unitID, Direction direction) {
+        return record(Call.CAN_MOVE, unitID, direction.ordinal(), 0, this.gc.canMove(unitID, direction));
+    }
+
+    @Override
+    public void moveRobot(int unitID, Direction direction) {
+        recordAction(Call.MOVE, unitID, direction.ordinal(), 0);
+        this.gc.moveRobot(unitID, direction);
+    }
+
+    @Override
+    public boolean canAttack(int unitID, int targetID) {
+        return record(Call.CAN_ATTACK, unitID, targetID, 0, this.gc.canAttack(unitID, targetID));
+    }
+
+    @Override
+    public void attack(int unitID, int targetID) {
+        recordAction(Call.ATTACK, unitID, targetID, 0);
+        this.gc.attack(unitID, targetID);
+    }
+
+    @Override
+    public boolean canHarvest(int workerID, Direction direction) {
+        return record(Call.CAN_HARVEST, workerID, direction.ordinal(), 0, this.gc.canHarvest(workerID, direction));
+    }
+
+    @Override
+    public void harvest(int workerID, Direction direction) {
+        recordAction(Call.HARVEST, workerID, direction.ordinal(), 0);
+        this.gc.harvest(workerID, direction);
+    }
+
+    @Override
+    public boolean canBlueprint(int workerID, UnitType type, Direction direction) {
+        return record(Call.CAN_BLUEPRINT, workerID, type.ordinal(), direction.ordinal(),
+                this.gc.canBlueprint(workerID, type, direction));
+    }
+
+    @Override
+    public void blueprint(int workerID, UnitType type, Direction direction) {
+        recordAction(Call.BLUEPRINT, workerID, type.ordinal(), direction.ordinal());
+        this.gc.blueprint(workerID, type, direction);
+    }
+
+    @Override
+    public boolean canBuild(int workerID, int blueprintID) {
+        return record(Call.CAN_BUILD, workerID, blueprintID, 0, this.gc.canBuild(workerID, blueprintID));
+    }
+
+    @Override
+    public void build(int workerID, int blueprintID) {
+        recordAction(Call.BUILD, workerID, blueprintID, 0);
+        this.gc.build(workerID, blueprintID);
+    }
+
+    @Override
+    public boolean canReplicate(int workerID, Direction direction) {
+        return record(Call.CAN_REPLICATE, workerID, direction.ordinal(), 0, this.gc.canReplicate(workerID, direction));
+    }
+
+    @Override
+    public void replicate(int workerID, Direction direction) {
+        recordAction(Call.REPLICATE, workerID, direction.ordinal(), 0);
+        this.gc.replicate(workerID, direction);
+    }
+
+    @Override
+    public boolean canLoad(int structureID, int robotID) {
+        return record(Call.CAN_LOAD, structureID, robotID, 0, this.gc.canLoad(structureID, robotID));
+    }
+
+    @Override
+    public void load(int structureID, int robotID) {
+        recordAction(Call.LOAD, structureID, robotID, 0);
+        this.gc.load(structureID, robotID);
+    }
+
+    @Override
+    public boolean canUnload(int structureID, Direction direction) {
+        return record(Call.CAN_UNLOAD, structureID, direction.ordinal(), 0, this.gc.canUnload(structureID, direction));
+    }
+
+    @Override
+    public void unload(int structureID, Direction direction) {
+        recordAction(Call.UNLOAD, structureID, direction.ordinal(), 0);
+        this.gc.unload(structureID, direction);
+    }
+
+    @Override
+    public boolean canProduceRobot(int factoryID, UnitType type) {
+        return record(Call.CAN_PRODUCE, factoryID, type.ordinal(), 0, this.gc.canProduceRobot(factoryID, type));
+    }
+
+    @Override
+    public void produceRobot(int factoryID, UnitType type) {
+        recordAction(Call.PRODUCE, factoryID, type.ordinal(), 0);
+        this.gc.produceRobot(factoryID, type);
+    }
+
+    @Override
+    public void launchRocket(int rocketID, int x, int y) {
+        recordAction(Call.LAUNCH, rocketID, x, y);
+        this.gc.launchRocket(rocketID, x, y);
+    }
+
+    @Override
+    public void queueResearch(UnitType branch) {
+        recordAction(Call.RESEARCH, branch.ordinal(), 0, 0);
+        this.gc.queueResearch(branch);
+    }
+
+    @Override
+    public void readTeamArray(Planet planet, int[] values) {
+        this.gc.readTeamArray(planet, values);
+        for (int i = 0; i < values.length; i++) {
+            record(Call.TEAM_ARRAY, planet.ordinal(), i, 0, values[i]);
+        }
+    }
+
+    @Override
+    public void writeTeamArray(int index, int value) {
+        recordAction(Call.WRITE_TEAM_ARRAY, index, value, 0);
+        this.gc.writeTeamArray(index, value);
+    }
+}
@@ -0,0 +1,591 @@
+import bc.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plays back a log written by RecordingGameApi, answering the player's calls
+ * with what the game answered when the log was recorded. The whole log is
+ * read up front, so playing it back doesn't wait on the disk.
+ *
+ * Calls are answered from the turn they are made in. If the player makes
+ * them in the same order as when the log was recorded, each one is just the
+ * next record. Otherwise the next unused record of the same call with the
+ * same arguments is used, or the last one if they have all been used, so
+ * that a changed player still gets sensible answers. Calls that weren't
+ * recorded at all are answered from the first turn, which includes the
+ * player's setup where the map was read, or with a default. Actions don't
+ * change anything, but are checked against the recorded ones, so that a
+ * changed player can be compared with the one that was recorded.
+ */
+public class ReplayGameApi implements GameApi {
+    private Planet planet;
+    private Team team;
+    // Every recorded turn. The first one includes the calls made while the
+    // player was being set up.
+    private List<Turn> turns;
+    // Every recorded snapshot. The records of snapshot calls hold an index
+    // into this list.
+    private List<UnitSnapshot> snapshots;
+    private int turn;
+    // Calls that weren't answered by the next record
+    private long reorderedCalls;
+    // Calls that weren't recorded in their turn
+    private long unrecordedCalls;
+    // Actions the player took that weren't recorded, and recorded actions it
+    // didn't take
+    private long extraActions;
+    private long missingActions;
+
+    /**
+     * Reads a log.
+     *
+     * @param path The file the log was written to.
+     * @throws IOException              If the file can't be read.
+     * @throws IllegalArgumentException If the file isn't a log.
+     */
+    public ReplayGameApi(String path) throws IOException {
+        this.turns = new ArrayList<>();
+        this.snapshots = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (in.readInt() != RecordingGameApi.MAGIC || in.readByte() != RecordingGameApi.VERSION) {
+                throw new IllegalArgumentException("Not a replay log: " + path);
+            }
+            this.planet = Planet.values()[in.readByte()];
+            this.team = Team.values()[in.readByte()];
+            read(in);
+        }
+        if (this.turns.isEmpty()) {
+            this.turns.add(new Turn());
+        }
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Reads records until the end of the log. A turn cut off by the end of
+     * the log is dropped.
+     */
+    private void read(DataInputStream in) throws IOException {
+        RecordingGameApi.Call[] calls = RecordingGameApi.Call.values();
+        Turn turn = new Turn();
+        while (true) {
+            int ordinal = in.read();
+            if (ordinal < 0) {
+                return;
+            }
+            try {
+                RecordingGameApi.Call call = calls[ordinal];
+                int a = (int) readVarLong(in);
+                int b = (int) readVarLong(in);
+                int c = (int) readVarLong(in);
+                if (call == RecordingGameApi.Call.END_TURN) {
+                    this.turns.add(turn);
+                    turn = new Turn();
+                } else if (call == RecordingGameApi.Call.UNITS || call == RecordingGameApi.Call.INITIAL_UNITS) {
+                    turn.add(call, a, b, c, this.snapshots.size());
+                    this.snapshots.add(readUnits(in));
+                } else {
+                    turn.add(call, a, b, c, call.isAction ? 0 : readVarLong(in));
+                }
+            } catch (EOFException e) {
+                return;
+            }
+        }
+    }
+
+    private static UnitSnapshot readUnits(DataInputStream in) throws IOException {
+        UnitType[] types = UnitType.values();
+        Team[] teams = Team.values();
+        int count = (int) readVarLong(in);
+        UnitSnapshot snapshot = new UnitSnapshot();
+        snapshot.clear(count);
+        for (int i = 0; i < count; i++) {
+            int id = (int) readVarLong(in);
+            UnitType type = types[in.readByte()];
+            Team team = teams[in.readByte()];
+            int flags = in.readByte();
+            int x = (int) readVarLong(in);
+            int y = (int) readVarLong(in);
+            int health = (int) readVarLong(in);
+            int visionRange = (int) readVarLong(in);
+            int attackRange = (int) readVarLong(in);
+            int damage = (int) readVarLong(in);
+            int garrisonSize = (int) readVarLong(in);
+
+            int row = snapshot.add(id, type, team);
+            snapshot.setLocation(row, (flags & RecordingGameApi.ON_MAP) != 0,
+                    (flags & RecordingGameApi.IN_GARRISON) != 0, x, y);
+            snapshot.setStats(row, health, visionRange, attackRange, damage);
+            snapshot.setReady(row, (flags & RecordingGameApi.MOVE_READY) != 0,
+                    (flags & RecordingGameApi.ATTACK_READY) != 0, (flags & RecordingGameApi.SNIPING) != 0);
+            snapshot.setStructure(row, (flags & RecordingGameApi.BUILT) != 0,
+                    (flags & RecordingGameApi.PRODUCING) != 0, garrisonSize);
+        }
+        return snapshot;
+    }
+
+    private static void copyUnits(UnitSnapshot from, UnitSnapshot to) {
+        to.clear(from.size());
+        for (int i = 0; i < from.size(); i++) {
+            int row = to.add(from.getId(i), from.getType(i), from.getTeam(i));
+            to.setLocation(row, from.isOnMap(i), from.isInGarrison(i), from.getX(i), from.getY(i));
+            to.setStats(row, from.getHealth(i), from.getVisionRange(i), from.getAttackRange(i), from.getDamage(i));
+            to.setReady(row, from.isMoveReady(i), from.isAttackReady(i), from.isSniping(i));
+            to.setStructure(row, from.isBuilt(i), from.isProducing(i), from.getGarrisonSize(i));
+        }
+    }
+
+    /**
+     * Returns the recorded answer to a call.
+     *
+     * @param call         The call that was made.
+     * @param a            The first argument of the call.
+     * @param b            The second argument of the call.
+     * @param c            The third argument of the call.
+     * @param defaultValue The answer if the call wasn't recorded.
+     * @return The recorded answer.
+     */
+    private long answer(RecordingGameApi.Call call, int a, int b, int c, long defaultValue) {
+        Turn current = this.turns.get(Math.min(this.turn, this.turns.size() - 1));
+        int i = current.next(call, a, b, c);
+        if (i >= 0) {
+            return current.values[i];
+        }
+        this.reorderedCalls++;
+        i = current.find(call, a, b, c, true);
+        if (i >= 0) {
+            return current.values[i];
+        }
+        this.unrecordedCalls++;
+        Turn setup = this.turns.get(0);
+        i = setup.find(call, a, b, c, true);
+        return i >= 0 ? setup.values[i] : defaultValue;
+    }
+
+    private boolean answer(RecordingGameApi.Call call, int a, int b, int c) {
+        return answer(call, a, b, c, 0) != 0;
+    }
+
+    /**
+     * Checks an action the player took against the recorded ones.
+     */
+    private void act(RecordingGameApi.Call call, int a, int b, int c) {
+        if (this.turn >= this.turns.size()) {
+            return;
+        }
+        Turn current = this.turns.get(this.turn);
+        if (current.next(call, a, b, c) < 0 && current.find(call, a, b, c, false) < 0) {
+            this.extraActions++;
+        }
+    }
+
+    @Override
+    public Planet planet() {
+        return this.planet;
+    }
+
+    @Override
+    public Team team() {
+        return this.team;
+    }
+
+    public int getTurnCount() {
+        return this.turns.size();
+    }
+
+    /**
+     * Returns the turn being played back, starting from 0.
+     */
+    public int getTurn() {
+        return this.turn;
+    }
+
+    public boolean hasMoreTurns() {
+        return this.turn < this.turns.size();
+    }
+
+    public long getReorderedCalls() {
+        return this.reorderedCalls;
+    }
+
+    public long getUnrecordedCalls() {
+        return this.unrecordedCalls;
+    }
+
+    public long getExtraActions() {
+        return this.extraActions;
+    }
+
+    public long getMissingActions() {
+        return this.missingActions;
+    }
+
+    @Override
+    public long round() {
+        return answer(RecordingGameApi.Call.ROUND, 0, 0, 0, this.turn);
+    }
+
+    @Override
+    public long getTimeLeftMs() {
+        return answer(RecordingGameApi.Call.TIME_LEFT, 0, 0, 0, 0);
+    }
+
+    @Override
+    public long karbonite() {
+        return answer(RecordingGameApi.Call.KARBONITE, 0, 0, 0, 0);
+    }
+
+    /**
+     * Moves on to the next turn, counting the recorded actions of this turn
+     * that weren't taken.
+     */
+    @Override
+    public void nextTurn() {
+        if (this.turn < this.turns.size()) {
+            this.missingActions += this.turns.get(this.turn).unusedActions();
+        }
+        this.turn++;
+    }
+
+    @Override
+    public int getMapWidth(Planet planet) {
+        return (int) answer(RecordingGameApi.Call.MAP_WIDTH, planet.ordinal(), 0, 0, 0);
+    }
+
+    @Override
+    public int getMapHeight(Planet planet) {
+        return (int) answer(RecordingGameApi.Call.MAP_HEIGHT, planet.ordinal(), 0, 0, 0);
+    }
+
+    @Override
+    public boolean isPassableTerrainAt(Planet planet, int x, int y) {
+        return answer(RecordingGameApi.Call.PASSABLE, planet.ordinal(), x, y);
+    }
+
+    @Override
+    public long initialKarboniteAt(Planet planet, int x, int y) {
+        return answer(RecordingGameApi.Call.INITIAL_KARBONITE, planet.ordinal(), x, y, 0);
+    }
+
+    @Override
+    public void readInitialUnits(Planet planet, UnitSnapshot snapshot) {
+        int i = (int) answer(RecordingGameApi.Call.INITIAL_UNITS, planet.ordinal(), 0, 0, -1);
+        if (i < 0) {
+            snapshot.clear(0);
+        } else {
+            copyUnits(this.snapshots.get(i), snapshot);
+        }
+    }
+
+    @Override
+    public void readUnits(UnitSnapshot snapshot) {
+        int i = (int) answer(RecordingGameApi.Call.UNITS, 0, 0, 0, -1);
+        if (i < 0) {
+            snapshot.clear(0);
+        } else {
+            copyUnits(this.snapshots.get(i), snapshot);
+        }
+    }
+
+    @Override
+    public int getLocationIndex(int unitID) {
+        return (int) answer(RecordingGameApi.Call.LOCATION, unitID, 0, 0, LocationTable.NONE);
+    }
+
+    @Override
+    public boolean isInGarrison(int unitID) {
+        return answer(RecordingGameApi.Call.IN_GARRISON, unitID, 0, 0);
+    }
+
+    @Override
+    public boolean isBuilt(int structureID) {
+        return answer(RecordingGameApi.Call.BUILT, structureID, 0, 0);
+    }
+
+    @Override
+    public int getGarrisonSize(int structureID) {
+        return (int) answer(RecordingGameApi.Call.GARRISON_SIZE, structureID, 0, 0, 0);
+    }
+
+    @Override
+    public int senseUnitAt(int x, int y) {
+        return (int) answer(RecordingGameApi.Call.SENSE_UNIT, x, y, 0, -1);
+    }
+
+    @Override
+    public long karboniteAt(int x, int y) {
+        return answer(RecordingGameApi.Call.KARBONITE_AT, x, y, 0, 0);
+    }
+
+    @Override
+    public boolean isMoveReady(int unitID) {
+        return answer(RecordingGameApi.Call.MOVE_READY, unitID, 0, 0);
+    }
+
+    @Override
+    public boolean canMove(int unitID, Direction direction) {
+        return answer(RecordingGameApi.Call.CAN_MOVE, unitID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public void moveRobot(int unitID, Direction direction) {
+        act(RecordingGameApi.Call.MOVE, unitID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public boolean canAttack(int unitID, int targetID) {
+        return answer(RecordingGameApi.Call.CAN_ATTACK, unitID, targetID, 0);
+    }
+
+    @Override
+    public void attack(int unitID, int targetID) {
+        act(RecordingGameApi.Call.ATTACK, unitID, targetID, 0);
+    }
+
+    @Override
+    public boolean canHarvest(int workerID, Direction direction) {
+        return answer(RecordingGameApi.Call.CAN_HARVEST, workerID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public void harvest(int workerID, Direction direction) {
+        act(RecordingGameApi.Call.HARVEST, workerID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public boolean canBlueprint(int workerID, UnitType type, Direction direction) {
+        return answer(RecordingGameApi.Call.CAN_BLUEPRINT, workerID, type.ordinal(), direction.ordinal());
+    }
+
+    @Override
+    public void blueprint(int workerID, UnitType type, Direction direction) {
+        act(RecordingGameApi.Call.BLUEPRINT, workerID, type.ordinal(), direction.ordinal());
+    }
+
+    @Override
+    public boolean canBuild(int workerID, int blueprintID) {
+        return answer(RecordingGameApi.Call.CAN_BUILD, workerID, blueprintID, 0);
+    }
+
+    @Override
+    public void build(int workerID, int blueprintID) {
+        act(RecordingGameApi.Call.BUILD, workerID, blueprintID, 0);
+    }
+
+    @Override
+    public boolean canReplicate(int workerID, Direction direction) {
+        return answer(RecordingGameApi.Call.CAN_REPLICATE, workerID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public void replicate(int workerID, Direction direction) {
+        act(RecordingGameApi.Call.REPLICATE, workerID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public boolean canLoad(int structureID, int robotID) {
+        return answer(RecordingGameApi.Call.CAN_LOAD, structureID, robotID, 0);
+    }
+
+    @Override
+    public void load(int structureID, int robotID) {
+        act(RecordingGameApi.Call.LOAD, structureID, robotID, 0);
+    }
+
+    @Override
+    public boolean canUnload(int structureID, Direction direction) {
+        return answer(RecordingGameApi.Call.CAN_UNLOAD, structureID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public void unload(int structureID, Direction direction) {
+        act(RecordingGameApi.Call.UNLOAD, structureID, direction.ordinal(), 0);
+    }
+
+    @Override
+    public boolean canProduceRobot(int factoryID, UnitType type) {
+        return answer(RecordingGameApi.Call.CAN_PRODUCE, factoryID, type.ordinal(), 0);
+    }
+
+    @Override
+    public void produceRobot(int factoryID, UnitType type) {
+        act(RecordingGameApi.Call.PRODUCE, factoryID, type.ordinal(), 0);
+    }
+
+    @Override
+    public void launchRocket(int rocketID, int x, int y) {
+        act(RecordingGameApi.Call.LAUNCH, rocketID, x, y);
+    }
+
+    @Override
+    public void queueResearch(UnitType branch) {
+        act(RecordingGameApi.Call.RESEARCH, branch.ordinal(), 0, 0);
+    }
+
+    @Override
+    public void readTeamArray(Planet planet, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) answer(RecordingGameApi.Call.TEAM_ARRAY, planet.ordinal(), i, 0, 0);
+        }
+    }
+
+    @Override
+    public void writeTeamArray(int index, int value) {
+        act(RecordingGameApi.Call.WRITE_TEAM_ARRAY, index, value, 0);
+    }
+
+    /**
+     * The records of one turn, in the order they were made.
+     */
+    private static class Turn {
+        private int size;
+        private byte[] calls;
+        private int[] a;
+        private int[] b;
+        private int[] c;
+        private long[] values;
+        private boolean[] used;
+        // The first record that might not have been used yet
+        private int next;
+        // Key: Call and arguments, Value: Records with that call and those
+        // arguments, built the first time a call is made out of order
+        private Map<Long, int[]> index;
+
+        private Turn() {
+            this.calls = new byte[16];
+            this.a = new int[16];
+            this.b = new int[16];
+            this.c = new int[16];
+            this.values = new long[16];
+        }
+
+        private void add(RecordingGameApi.Call call, int a, int b, int c, long value) {
+            if (this.size == this.calls.length) {
+                int capacity = 2 * this.size;
+                this.calls = Arrays.copyOf(this.calls, capacity);
+                this.a = Arrays.copyOf(this.a, capacity);
+                this.b = Arrays.copyOf(this.b, capacity);
+                this.c = Arrays.copyOf(this.c, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+            }
+            this.calls[this.size] = (byte) call.ordinal();
+            this.a[this.size] = a;
+            this.b[this.size] = b;
+            this.c[this.size] = c;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        private boolean matches(int i, RecordingGameApi.Call call, int a, int b, int c) {
+            return this.calls[i] == call.ordinal() && this.a[i] == a && this.b[i] == b && this.c[i] == c;
+        }
+
+        private void use(int i) {
+            if (this.used == null) {
+                this.used = new boolean[this.size];
+            }
+            this.used[i] = true;
+        }
+
+        private boolean isUsed(int i) {
+            return this.used != null && this.used[i];
+        }
+
+        /**
+         * Uses the next unused record if it matches a call.
+         *
+         * @return The record, or -1 if the next record doesn't match.
+         */
+        private int next(RecordingGameApi.Call call, int a, int b, int c) {
+            while (this.next < this.size && isUsed(this.next)) {
+                this.next++;
+            }
+            if (this.next < this.size && matches(this.next, call, a, b, c)) {
+                use(this.next);
+                return this.next++;
+            }
+            return -1;
+        }
+
+        /**
+         * Uses the first unused record that matches a call.
+         *
+         * @param reuse Whether to return the last matching record if they
+         *              have all been used.
+         * @return The record, or -1 if there isn't one.
+         */
+        private int find(RecordingGameApi.Call call, int a, int b, int c, boolean reuse) {
+            if (this.index == null) {
+                this.index = new HashMap<>();
+                for (int i = 0; i < this.size; i++) {
+                    long key = key(this.calls[i], this.a[i], this.b[i], this.c[i]);
+                    int[] records = this.index.get(key);
+                    records = records == null ? new int[1] : Arrays.copyOf(records, records.length + 1);
+                    records[records.length - 1] = i;
+                    this.index.put(key, records);
+                }
+            }
+            int[] records = this.index.get(key(call.ordinal(), a, b, c));
+            if (records == null) {
+                return -1;
+            }
+            int last = -1;
+            for (int i : records) {
+                if (matches(i, call, a, b, c)) {
+                    if (!isUsed(i)) {
+                        use(i);
+                        return i;
+                    }
+                    last = i;
+                }
+            }
+            return reuse ? last : -1;
+        }
+
+        /**
+         * Returns the number of actions that weren't used.
+         */
+        private int unusedActions() {
+            RecordingGameApi.Call[] calls = RecordingGameApi.Call.values();
+            int count = 0;
+            for (int i = 0; i < this.size; i++) {
+                if (calls[this.calls[i]].isAction && !isUsed(i)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns a hash of a call and its arguments. Different calls can
+         * have the same hash, so records found by it are checked with
+         * matches().
+         */
+        private static long key(int call, int a, int b, int c) {
+            long h = call;
+            h = h * 0x9E3779B97F4A7C15L + a;
+            h = h * 0x9E3779B97F4A7C15L + b;
+            h = h * 0x9E3779B97F4A7C15L + c;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import bc.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Plays a recorded game back through the player and reports how long each
+ * turn took, so that a slow turn can be looked at on its own and a changed
+ * player can be timed on exactly the same input as the recorded one. Games
+ * are recorded by setting the REPLAY_LOG environment variable to the log
+ * file when running Player or OfflineRunner.
+ *
+ * Usage: ReplayRunner log-file [last-turn]
+ *
+ * If a last turn is given, playing stops after that turn, so that a
+ * profiler or the PROFILE_REPORT summary ends with it.
+ */
+public class ReplayRunner {
+    // Number of slowest turns to list
+    static final int SLOWEST_TURNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayRunner log-file [last-turn]");
+            System.exit(1);
+        }
+        ReplayGameApi gc = new ReplayGameApi(args[0]);
+        int turns = gc.getTurnCount();
+        if (args.length > 1) {
+            turns = Math.min(turns, Integer.parseInt(args[1]) + 1);
+        }
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        long[] turnNanos = new long[turns];
+        try {
+            Player player = new Player(gc);
+            for (int i = 0; i < turns; i++) {
+                long start = System.nanoTime();
+                player.playTurn();
+                turnNanos[i] = System.nanoTime() - start;
+            }
+        } finally {
+            System.setOut(out);
+        }
+        if (turns == 0) {
+            System.out.println("No complete turns in the log");
+            return;
+        }
+
+        long[] sorted = turnNanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long nanos : turnNanos) {
+            total += nanos;
+        }
+        System.out.printf("%s %s turns %d mean %.3f ms p50 %.3f ms p99 %.3f ms max %.3f ms%n", gc.planet(),
+                gc.team(), turns, total / 1e6 / turns, sorted[turns / 2] / 1e6,
+                sorted[Math.min(turns - 1, turns * 99 / 100)] / 1e6, sorted[turns - 1] / 1e6);
+
+        // List the slowest turns, slowest first
+        Integer[] order = new Integer[turns];
+        for (int i = 0; i < turns; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(turnNanos[b], turnNanos[a]));
+        for (int i = 0; i < Math.min(SLOWEST_TURNS, turns); i++) {
+            System.out.printf("slow turn %d %.3f ms%n", order[i], turnNanos[order[i]] / 1e6);
+        }
+        if (args.length > 1) {
+            System.out.printf("turn %d %.3f ms%n", turns - 1, turnNanos[turns - 1] / 1e6);
+        }
+
+        System.out.printf("calls reordered %d unrecorded %d, actions extra %d missing %d%n", gc.getReorderedCalls(),
+                gc.getUnrecordedCalls(), gc.getExtraActions(), gc.getMissingActions());
+    }
+}
@@ -0,0 +1,3 @@
+public enum SearchMode {
+    A_STAR, JUMP_POINT
+}
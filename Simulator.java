@@ -0,0 +1,257 @@
+import bc.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays whole offline games of the player against itself, with a player for
+ * each team on each planet, and reports how much CPU time and memory each
+ * player's turns took. Games on different maps are played at the same time,
+ * one per core.
+ *
+ * Usage: Simulator map-file-or-directory [rounds] [threads]
+ *
+ * A directory is searched for map files, ending in .txt, in it and its
+ * subdirectories.
+ *
+ * All games share one JVM, so heap use can only be told apart per player by
+ * what its turns allocated. The peak heap of the whole batch is reported
+ * too. Navigation maps built in the background run on a shared pool, and
+ * don't count toward a player's CPU time.
+ */
+public class Simulator {
+    // The order players take their turns in, as in the real game
+    private static final Planet[] PLAYER_PLANETS = {Planet.Earth, Planet.Earth, Planet.Mars, Planet.Mars};
+    private static final Team[] PLAYER_TEAMS = {Team.Red, Team.Blue, Team.Red, Team.Blue};
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: Simulator map-file-or-directory [rounds] [threads]");
+            System.exit(1);
+        }
+        List<String> maps = new ArrayList<>();
+        findMaps(new File(args[0]), maps);
+        if (maps.isEmpty()) {
+            System.err.println("No maps found in " + args[0]);
+            System.exit(1);
+        }
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : (int) OfflineGame.LAST_ROUND;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        // The players print a lot, and from every thread at once
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<GameResult>> futures = new ArrayList<>();
+        for (String map : maps) {
+            futures.add(executor.submit(() -> play(map, rounds)));
+        }
+        executor.shutdown();
+
+        // Key: Team, Value: Number of games the team won
+        Map<Team, Integer> wins = new EnumMap<>(Team.class);
+        for (Team team : Team.values()) {
+            wins.put(team, 0);
+        }
+        int draws = 0;
+        int failures = 0;
+        try {
+            for (Future<GameResult> future : futures) {
+                GameResult result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    out.println("failed: " + e.getCause());
+                    continue;
+                }
+                result.print(out);
+                if (result.winner == null) {
+                    draws++;
+                } else {
+                    wins.put(result.winner, wins.get(result.winner) + 1);
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("games %d red %d blue %d draws %d failed %d in %.1f s on %d threads%n", maps.size(),
+                wins.get(Team.Red), wins.get(Team.Blue), draws, failures, seconds, threads);
+        System.out.printf("peak heap %.1f MB%n", peakHeapBytes() / 1048576.0);
+    }
+
+    private static void findMaps(File file, List<String> maps) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    findMaps(child, maps);
+                }
+            }
+        } else if (file.getName().endsWith(".txt")) {
+            maps.add(file.getPath());
+        }
+    }
+
+    /**
+     * Returns the sum of the peak use of every heap memory pool since the
+     * peaks were reset.
+     */
+    private static long peakHeapBytes() {
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                bytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Plays a game on a map until it is over or a number of rounds have been
+     * played, timing every turn of every player.
+     *
+     * @param path   The map file.
+     * @param rounds The most rounds to play.
+     * @return How the game went.
+     * @throws IOException If the map can't be read.
+     */
+    private static GameResult play(String path, int rounds) throws IOException {
+        OfflineGame game = new OfflineGame(OfflineMap.load(path));
+        PlayerStats[] stats = new PlayerStats[PLAYER_PLANETS.length];
+        Player[] players = new Player[PLAYER_PLANETS.length];
+        for (int i = 0; i < players.length; i++) {
+            stats[i] = new PlayerStats(PLAYER_PLANETS[i], PLAYER_TEAMS[i], rounds);
+            long cpuStart = THREADS.getCurrentThreadCpuTime();
+            players[i] = new Player(game.view(PLAYER_TEAMS[i], PLAYER_PLANETS[i]));
+            stats[i].setupNanos = THREADS.getCurrentThreadCpuTime() - cpuStart;
+        }
+
+        int round = 0;
+        while (round < rounds && !game.isOver()) {
+            for (int i = 0; i < players.length; i++) {
+                long cpuStart = THREADS.getCurrentThreadCpuTime();
+                long allocatedStart = AllocationTracker.allocatedBytes();
+                players[i].playTurn();
+                stats[i].addTurn(THREADS.getCurrentThreadCpuTime() - cpuStart, AllocationTracker.allocatedBytes() - allocatedStart);
+            }
+            round++;
+        }
+
+        GameResult result = new GameResult(path, round, game.isOver() ? game.getWinner() : null, stats);
+        result.redUnits = game.countUnits(Team.Red);
+        result.blueUnits = game.countUnits(Team.Blue);
+        return result;
+    }
+
+    /**
+     * The CPU time and allocation of every turn a player took.
+     */
+    private static class PlayerStats {
+        private Planet planet;
+        private Team team;
+        private long setupNanos;
+        private long[] cpuNanos;
+        private long[] allocatedBytes;
+        private int turns;
+
+        private PlayerStats(Planet planet, Team team, int rounds) {
+            this.planet = planet;
+            this.team = team;
+            this.cpuNanos = new long[rounds];
+            this.allocatedBytes = new long[rounds];
+        }
+
+        private void addTurn(long cpuNanos, long allocatedBytes) {
+            this.cpuNanos[this.turns] = cpuNanos;
+            this.allocatedBytes[this.turns] = allocatedBytes;
+            this.turns++;
+        }
+
+        private void print(PrintStream out) {
+            long[] cpu = Arrays.copyOf(this.cpuNanos, this.turns);
+            long[] allocated = Arrays.copyOf(this.allocatedBytes, this.turns);
+            Arrays.sort(cpu);
+            Arrays.sort(allocated);
+            long totalCpu = 0;
+            long totalAllocated = 0;
+            for (int i = 0; i < this.turns; i++) {
+                totalCpu += cpu[i];
+                totalAllocated += allocated[i];
+            }
+            int n = Math.max(1, this.turns);
+            out.printf("  %-5s %-4s setup %.1f ms, cpu per turn mean %.3f ms p99 %.3f ms max %.3f ms, "
+                            + "allocated per turn mean %.1f KB max %.1f KB%n", this.planet, this.team,
+                    this.setupNanos / 1e6, totalCpu / 1e6 / n, percentile(cpu, 0.99) / 1e6,
+                    percentile(cpu, 1.0) / 1e6, totalAllocated / 1024.0 / n, percentile(allocated, 1.0) / 1024.0);
+        }
+
+        /**
+         * Returns a percentile of a sorted array, or 0 if it is empty.
+         */
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+        }
+    }
+
+    /**
+     * How a game went.
+     */
+    private static class GameResult {
+        private String map;
+        private int rounds;
+        // The winning team, or null if the game was a draw or ran out of
+        // rounds to play
+        private Team winner;
+        private int redUnits;
+        private int blueUnits;
+        private PlayerStats[] players;
+
+        private GameResult(String map, int rounds, Team winner, PlayerStats[] players) {
+            this.map = map;
+            this.rounds = rounds;
+            this.winner = winner;
+            this.players = players;
+        }
+
+        private void print(PrintStream out) {
+            out.printf("%s rounds %d winner %s units red %d blue %d%n", this.map, this.rounds,
+                    this.winner == null ? "none" : this.winner, this.redUnits, this.blueUnits);
+            for (PlayerStats player : this.players) {
+                player.print(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import bc.*;
+
+/**
+ * A uniform grid of buckets holding the units of one team from a unit
+ * snapshot, so that the units near a location can be found without asking
+ * the game. Built once per turn; units are referred to by their snapshot row.
+ */
+public class SpatialHash {
+    // Row returned when no unit matches a query
+    static final int NONE = -1;
+    // Each bucket covers a square of 1 << CELL_BITS locations on a side
+    private static final int CELL_BITS = 3;
+
+    private UnitSnapshot units;
+    private int cellsX;
+    private int cellsY;
+    // Rows in each bucket are entries[cellStart[cell]] up to
+    // entries[cellStart[cell + 1]]
+    private int[] cellStart;
+    private int[] entries;
+    private int[] entryCells;
+    private int size;
+
+    /**
+     * Creates a new empty grid.
+     *
+     * @param mapWidth  The width of the map.
+     * @param mapHeight The height of the map.
+     */
+    public SpatialHash(int mapWidth, int mapHeight) {
+        this.cellsX = (mapWidth + (1 << CELL_BITS) - 1) >> CELL_BITS;
+        this.cellsY = (mapHeight + (1 << CELL_BITS) - 1) >> CELL_BITS;
+        this.cellStart = new int[this.cellsX * this.cellsY + 1];
+        this.entries = new int[0];
+        this.entryCells = new int[0];
+        this.size = 0;
+    }
+
+    /**
+     * Replaces the contents of the grid with the units of a team that are on
+     * the map, using a counting sort by bucket.
+     *
+     * @param units The snapshot to take units from.
+     * @param team  The team whose units to add.
+     */
+    public void build(UnitSnapshot units, Team team) {
+        this.units = units;
+        if (this.entryCells.length < units.size()) {
+            this.entries = new int[units.size()];
+            this.entryCells = new int[units.size()];
+        }
+
+        int cellCount = this.cellsX * this.cellsY;
+        for (int cell = 0; cell <= cellCount; cell++) {
+            this.cellStart[cell] = 0;
+        }
+        this.size = 0;
+        for (int row = 0; row < units.size(); row++) {
+            if (units.getTeam(row) != team || !units.isOnMap(row)) {
+                continue;
+            }
+            int cell = (units.getY(row) >> CELL_BITS) * this.cellsX + (units.getX(row) >> CELL_BITS);
+            this.entryCells[this.size++] = cell;
+            this.cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            this.cellStart[cell + 1] += this.cellStart[cell];
+        }
+
+        // Place each row in its bucket, using cellStart as the insertion
+        // point and shifting it back afterwards
+        int next = 0;
+        for (int row = 0; row < units.size(); row++) {
+            if (units.getTeam(row) != team || !units.isOnMap(row)) {
+                continue;
+            }
+            int cell = this.entryCells[next++];
+            this.entries[this.cellStart[cell]++] = row;
+        }
+        for (int cell = cellCount; cell > 0; cell--) {
+            this.cellStart[cell] = this.cellStart[cell - 1];
+        }
+        this.cellStart[0] = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Finds the living units whose squared distance from a location is
+     * within a range.
+     *
+     * @param x          The x-coordinate of the location.
+     * @param y          The y-coordinate of the location.
+     * @param minRangeSq Units at this squared distance or closer are skipped.
+     *                   Use -1 to include every unit.
+     * @param maxRangeSq The largest squared distance to include.
+     * @param out        Filled with the rows of the units found. Must be at
+     *                   least as long as the size of the grid.
+     * @return The number of units found.
+     */
+    public int query(int x, int y, int minRangeSq, int maxRangeSq, int[] out) {
+        int count = 0;
+        int radius = (int) Math.sqrt(maxRangeSq);
+        int minCellX = Math.max(0, (x - radius) >> CELL_BITS);
+        int maxCellX = Math.min(this.cellsX - 1, (x + radius) >> CELL_BITS);
+        int minCellY = Math.max(0, (y - radius) >> CELL_BITS);
+        int maxCellY = Math.min(this.cellsY - 1, (y + radius) >> CELL_BITS);
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                int cell = cellY * this.cellsX + cellX;
+                for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+                    int row = this.entries[i];
+                    if (isInRange(row, x, y, minRangeSq, maxRangeSq)) {
+                        out[count++] = row;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the living unit with the least health whose squared distance
+     * from a location is within a range.
+     *
+     * @param x          The x-coordinate of the location.
+     * @param y          The y-coordinate of the location.
+     * @param minRangeSq Units at this squared distance or closer are skipped.
+     *                   Use -1 to include every unit.
+     * @param maxRangeSq The largest squared distance to include.
+     * @return The row of the unit, or NONE if no unit is in range.
+     */
+    public int lowestHealth(int x, int y, int minRangeSq, int maxRangeSq) {
+        int best = NONE;
+        int radius = (int) Math.sqrt(maxRangeSq);
+        int minCellX = Math.max(0, (x - radius) >> CELL_BITS);
+        int maxCellX = Math.min(this.cellsX - 1, (x + radius) >> CELL_BITS);
+        int minCellY = Math.max(0, (y - radius) >> CELL_BITS);
+        int maxCellY = Math.min(this.cellsY - 1, (y + radius) >> CELL_BITS);
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                int cell = cellY * this.cellsX + cellX;
+                for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+                    int row = this.entries[i];
+                    if (isInRange(row, x, y, minRangeSq, maxRangeSq)
+                            && (best == NONE || this.units.getHealth(row) < this.units.getHealth(best))) {
+                        best = row;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean isInRange(int row, int x, int y, int minRangeSq, int maxRangeSq) {
+        if (!this.units.isAlive(row)) {
+            return false;
+        }
+        int dx = this.units.getX(row) - x;
+        int dy = this.units.getY(row) - y;
+        int distSq = dx * dx + dy * dy;
+        return distSq > minRangeSq && distSq <= maxRangeSq;
+    }
+}
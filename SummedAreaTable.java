@@ -0,0 +1,118 @@
+/**
+ * A summed-area table over a grid of values, where locations outside a mask
+ * count as zero. The sum over any rectangle is found in constant time. Small
+ * changes to the values are applied to the table directly, and the table is
+ * rebuilt on the next query once they would cost more than a rebuild.
+ */
+public class SummedAreaTable {
+    private int[][] values;
+    private BitGrid mask;
+    private int width;
+    private int height;
+    // Sums of every rectangle with its corner at the origin, with an extra
+    // row and column of zeros. Entry (x, y) holds the sum of all locations
+    // less than x and less than y.
+    private int[] sums;
+    // Locations touched by incremental updates since the last rebuild
+    private int pendingCost;
+    private boolean isDirty;
+
+    /**
+     * Creates a new table.
+     *
+     * @param values The values to sum, indexed by y and then x.
+     * @param mask   Map of which locations to include in sums.
+     */
+    public SummedAreaTable(int[][] values, BitGrid mask) {
+        this.values = values;
+        this.mask = mask;
+        this.width = mask.getWidth();
+        this.height = mask.getHeight();
+        this.sums = new int[(this.width + 1) * (this.height + 1)];
+        rebuild();
+    }
+
+    /**
+     * Recomputes the table from the values.
+     */
+    public void rebuild() {
+        int stride = this.width + 1;
+        for (int y = 0; y < this.height; y++) {
+            int rowSum = 0;
+            for (int x = 0; x < this.width; x++) {
+                if (this.mask.get(x, y)) {
+                    rowSum += this.values[y][x];
+                }
+                this.sums[(y + 1) * stride + x + 1] = this.sums[y * stride + x + 1] + rowSum;
+            }
+        }
+        this.pendingCost = 0;
+        this.isDirty = false;
+    }
+
+    /**
+     * Records that the value at a location has changed. The values must
+     * already hold the new value.
+     *
+     * @param x     The x-coordinate of the location.
+     * @param y     The y-coordinate of the location.
+     * @param delta How much the value changed by.
+     */
+    public void add(int x, int y, int delta) {
+        if (this.isDirty || !this.mask.get(x, y)) {
+            return;
+        }
+        int cost = (this.width - x) * (this.height - y);
+        this.pendingCost += cost;
+        if (this.pendingCost > this.width * this.height) {
+            this.isDirty = true;
+            return;
+        }
+
+        int stride = this.width + 1;
+        for (int sumY = y + 1; sumY <= this.height; sumY++) {
+            int row = sumY * stride;
+            for (int sumX = x + 1; sumX <= this.width; sumX++) {
+                this.sums[row + sumX] += delta;
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the values in a rectangle. Parts of the rectangle
+     * outside the grid are ignored.
+     *
+     * @param minX The smallest x-coordinate in the rectangle.
+     * @param minY The smallest y-coordinate in the rectangle.
+     * @param maxX The largest x-coordinate in the rectangle.
+     * @param maxY The largest y-coordinate in the rectangle.
+     * @return The sum of the values in the rectangle.
+     */
+    public int sum(int minX, int minY, int maxX, int maxY) {
+        if (this.isDirty) {
+            rebuild();
+        }
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, this.width - 1) + 1;
+        maxY = Math.min(maxY, this.height - 1) + 1;
+        if (minX >= maxX || minY >= maxY) {
+            return 0;
+        }
+        int stride = this.width + 1;
+        return this.sums[maxY * stride + maxX] - this.sums[minY * stride + maxX]
+                - this.sums[maxY * stride + minX] + this.sums[minY * stride + minX];
+    }
+
+    /**
+     * Returns the sum of the values in a square centered on a location.
+     *
+     * @param x      The x-coordinate of the center.
+     * @param y      The y-coordinate of the center.
+     * @param radius Distance from the center to each side of the square.
+     * @return The sum of the values in the square.
+     */
+    public int sumAround(int x, int y, int radius) {
+        return sum(x - radius, y - radius, x + radius, y + radius);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Splits the time a turn may use between the phases of the turn. At the
+ * start of each turn the time bank is read once to decide how long the turn
+ * can take, and each phase gets a deadline that is a share of that time.
+ * Deadlines are measured from the start of the turn, so time a phase doesn't
+ * use carries over to the phases after it. Expensive operations should check
+ * hasTime() and fall back to something cheaper once the deadline passes.
+ */
+public class TurnBudget {
+    /**
+     * The parts of a turn, in the order they run.
+     */
+    public enum Phase {
+        UNITS, ECONOMY, FACTORIES, ARMY, PRECOMPUTE
+    }
+
+    // Time added to the time bank at the start of every turn
+    static final long TURN_INCREMENT_MS = 50;
+    // Time bank to leave untouched, so that a slow turn never times out
+    static final long RESERVE_MS = 2000;
+    // Number of turns to spread the rest of the time bank over
+    static final long SPREAD_TURNS = 20;
+    // Share of a turn's time given to each phase, indexed by phase ordinal
+    private static final double[] PHASE_SHARES = {0.1, 0.25, 0.1, 0.4, 0.15};
+
+    private long turnStartNanos;
+    private long turnNanos;
+    // Time from the start of the turn that each phase must finish by,
+    // indexed by phase ordinal
+    private long[] phaseEndNanos;
+    private Phase phase;
+
+    /**
+     * Creates a new budget with no time for the current turn.
+     */
+    public TurnBudget() {
+        this.phaseEndNanos = new long[Phase.values().length];
+        startTurn(0);
+    }
+
+    /**
+     * Starts a new turn and decides how long it can take. A turn can spend
+     * the time added to the bank each turn plus a fraction of the rest of the
+     * bank, never dipping into the reserve.
+     *
+     * @param timeLeftMs The time left in the time bank, in milliseconds.
+     */
+    public void startTurn(long timeLeftMs) {
+        this.turnStartNanos = System.nanoTime();
+        long spareMs = timeLeftMs - RESERVE_MS;
+        long turnMs = spareMs <= 0 ? 0 : Math.min(spareMs, TURN_INCREMENT_MS + spareMs / SPREAD_TURNS);
+        this.turnNanos = turnMs * 1000000;
+
+        double share = 0;
+        for (Phase p : Phase.values()) {
+            share += PHASE_SHARES[p.ordinal()];
+            this.phaseEndNanos[p.ordinal()] = (long) (this.turnNanos * share);
+        }
+        this.phase = Phase.UNITS;
+        AllocationTracker.startTurn();
+    }
+
+    /**
+     * Moves on to a phase of the turn.
+     *
+     * @param phase The phase that is starting.
+     */
+    public void startPhase(Phase phase) {
+        this.phase = phase;
+        AllocationTracker.startPhase(phase);
+    }
+
+    public Phase getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Returns whether the current phase is still before its deadline.
+     */
+    public boolean hasTime() {
+        return System.nanoTime() < getDeadlineNanos();
+    }
+
+    /**
+     * Returns the System.nanoTime() that the current phase must finish by.
+     */
+    public long getDeadlineNanos() {
+        return this.turnStartNanos + this.phaseEndNanos[this.phase.ordinal()];
+    }
+
+    /**
+     * Returns the total time the current turn can take, in milliseconds.
+     */
+    public long getTurnMs() {
+        return this.turnNanos / 1000000;
+    }
+}
@@ -0,0 +1,360 @@
+import bc.*;
+
+import java.util.Arrays;
+
+/**
+ * The state of every visible unit at the start of a turn, read from the game
+ * once and stored in columns indexed by row. Reading a field from the
+ * snapshot doesn't call into the game. Units created during the turn aren't
+ * in the snapshot until the next turn.
+ */
+public class UnitSnapshot {
+    // Row returned for units that aren't in the snapshot
+    static final int NONE = -1;
+    // Heat below which a unit can move or attack
+    static final long READY_HEAT = 10;
+
+    private int size;
+    private int[] ids;
+    private UnitType[] types;
+    private Team[] teams;
+    private boolean[] isOnMap;
+    private boolean[] isInGarrison;
+    private int[] x;
+    private int[] y;
+    private int[] health;
+    private int[] visionRange;
+    private int[] attackRange;
+    private int[] damage;
+    private boolean[] isMoveReady;
+    private boolean[] isAttackReady;
+    private boolean[] isSniping;
+    private boolean[] isBuilt;
+    private boolean[] isProducing;
+    private int[] garrisonSize;
+    // Key: UnitID, Value: Row
+    private IntIntMap rows;
+
+    /**
+     * Creates a new empty snapshot.
+     */
+    public UnitSnapshot() {
+        this.rows = new IntIntMap();
+        this.ids = new int[0];
+        this.types = new UnitType[0];
+        this.teams = new Team[0];
+        this.isOnMap = new boolean[0];
+        this.isInGarrison = new boolean[0];
+        this.x = new int[0];
+        this.y = new int[0];
+        this.health = new int[0];
+        this.visionRange = new int[0];
+        this.attackRange = new int[0];
+        this.damage = new int[0];
+        this.isMoveReady = new boolean[0];
+        this.isAttackReady = new boolean[0];
+        this.isSniping = new boolean[0];
+        this.isBuilt = new boolean[0];
+        this.isProducing = new boolean[0];
+        this.garrisonSize = new int[0];
+    }
+
+    /**
+     * Resizes every column, keeping the units already in the snapshot.
+     */
+    private void allocate(int capacity) {
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.teams = Arrays.copyOf(this.teams, capacity);
+        this.isOnMap = Arrays.copyOf(this.isOnMap, capacity);
+        this.isInGarrison = Arrays.copyOf(this.isInGarrison, capacity);
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.health = Arrays.copyOf(this.health, capacity);
+        this.visionRange = Arrays.copyOf(this.visionRange, capacity);
+        this.attackRange = Arrays.copyOf(this.attackRange, capacity);
+        this.damage = Arrays.copyOf(this.damage, capacity);
+        this.isMoveReady = Arrays.copyOf(this.isMoveReady, capacity);
+        this.isAttackReady = Arrays.copyOf(this.isAttackReady, capacity);
+        this.isSniping = Arrays.copyOf(this.isSniping, capacity);
+        this.isBuilt = Arrays.copyOf(this.isBuilt, capacity);
+        this.isProducing = Arrays.copyOf(this.isProducing, capacity);
+        this.garrisonSize = Arrays.copyOf(this.garrisonSize, capacity);
+    }
+
+    /**
+     * Replaces the snapshot with the current state of the given units. Only
+     * the fields that apply to each unit's type are read.
+     *
+     * @param planet The planet whose map locations are recorded.
+     * @param units  The units to record.
+     */
+    public void update(Planet planet, VecUnit units) {
+        int count = (int) units.size();
+        clear(count);
+
+        for (int i = 0; i < count; i++) {
+            Unit unit = units.get(i);
+            UnitType type = unit.unitType();
+            int row = add(unit.id(), type, unit.team());
+
+            Location loc = unit.location();
+            boolean isOnMap = loc.isOnPlanet(planet);
+            if (isOnMap) {
+                MapLocation mapLoc = loc.mapLocation();
+                setLocation(row, true, false, mapLoc.getX(), mapLoc.getY());
+            } else {
+                setLocation(row, false, loc.isInGarrison(), 0, 0);
+            }
+
+            boolean isStructure = type == UnitType.Factory || type == UnitType.Rocket;
+            boolean isWorker = type == UnitType.Worker;
+            int attackRange = isStructure || isWorker ? 0 : (int) unit.attackRange();
+            int damage = isStructure || isWorker ? 0 : unit.damage();
+            setStats(row, (int) unit.health(), (int) unit.visionRange(), attackRange, damage);
+            if (isStructure) {
+                setReady(row, false, false, false);
+                setStructure(row, unit.structureIsBuilt() == 1,
+                        type == UnitType.Factory && unit.isFactoryProducing() == 1,
+                        (int) unit.structureGarrison().size());
+            } else {
+                setReady(row, isOnMap && unit.movementHeat() < READY_HEAT,
+                        isOnMap && !isWorker && unit.attackHeat() < READY_HEAT,
+                        type == UnitType.Ranger && unit.rangerIsSniping() == 1);
+                setStructure(row, false, false, 0);
+            }
+        }
+    }
+
+    /**
+     * Empties the snapshot so that it can be filled with add() and the
+     * setters, making room for a number of units.
+     *
+     * @param capacity The number of units that will be added.
+     */
+    public void clear(int capacity) {
+        this.rows.clear();
+        this.size = 0;
+        if (this.ids.length < capacity) {
+            allocate(Math.max(capacity, 2 * this.ids.length));
+        }
+    }
+
+    /**
+     * Adds a unit to the snapshot. The rest of its fields should be filled in
+     * with the setters.
+     *
+     * @param id   The ID of the unit.
+     * @param type The type of the unit.
+     * @param team The team of the unit.
+     * @return The row of the unit.
+     */
+    public int add(int id, UnitType type, Team team) {
+        if (this.size == this.ids.length) {
+            allocate(Math.max(8, 2 * this.size));
+        }
+        int row = this.size++;
+        this.ids[row] = id;
+        this.types[row] = type;
+        this.teams[row] = team;
+        this.rows.put(id, row);
+        return row;
+    }
+
+    /**
+     * Sets where a unit is.
+     *
+     * @param row          The row of the unit.
+     * @param isOnMap      Whether the unit is on the map of the snapshot's
+     *                     planet.
+     * @param isInGarrison Whether the unit is in a garrison.
+     * @param x            The x-coordinate of the unit, if it is on the map.
+     * @param y            The y-coordinate of the unit, if it is on the map.
+     */
+    public void setLocation(int row, boolean isOnMap, boolean isInGarrison, int x, int y) {
+        this.isOnMap[row] = isOnMap;
+        this.isInGarrison[row] = isInGarrison;
+        this.x[row] = x;
+        this.y[row] = y;
+    }
+
+    /**
+     * Sets the health and combat stats of a unit.
+     *
+     * @param row         The row of the unit.
+     * @param health      The health of the unit.
+     * @param visionRange The vision range of the unit.
+     * @param attackRange The attack range of the unit, or 0 if it can't
+     *                    attack.
+     * @param damage      The damage of the unit's attack, or 0 if it can't
+     *                    attack.
+     */
+    public void setStats(int row, int health, int visionRange, int attackRange, int damage) {
+        this.health[row] = health;
+        this.visionRange[row] = visionRange;
+        this.attackRange[row] = attackRange;
+        this.damage[row] = damage;
+    }
+
+    /**
+     * Sets what a unit is ready to do this turn.
+     *
+     * @param row           The row of the unit.
+     * @param isMoveReady   Whether the unit can move.
+     * @param isAttackReady Whether the unit can attack.
+     * @param isSniping     Whether the unit is a ranger that is sniping.
+     */
+    public void setReady(int row, boolean isMoveReady, boolean isAttackReady, boolean isSniping) {
+        this.isMoveReady[row] = isMoveReady;
+        this.isAttackReady[row] = isAttackReady;
+        this.isSniping[row] = isSniping;
+    }
+
+    /**
+     * Sets the state of a structure.
+     *
+     * @param row          The row of the unit.
+     * @param isBuilt      Whether the structure is fully built.
+     * @param isProducing  Whether the structure is a factory that is
+     *                     producing a unit.
+     * @param garrisonSize The number of units in the structure's garrison.
+     */
+    public void setStructure(int row, boolean isBuilt, boolean isProducing, int garrisonSize) {
+        this.isBuilt[row] = isBuilt;
+        this.isProducing[row] = isProducing;
+        this.garrisonSize[row] = garrisonSize;
+    }
+
+    /**
+     * Returns the row of a unit.
+     *
+     * @param unitID The ID of the unit.
+     * @return The row of the unit, or NONE if it isn't in the snapshot.
+     */
+    public int row(int unitID) {
+        return this.rows.get(unitID, NONE);
+    }
+
+    public boolean contains(int unitID) {
+        return this.rows.containsKey(unitID);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getId(int row) {
+        return this.ids[row];
+    }
+
+    public UnitType getType(int row) {
+        return this.types[row];
+    }
+
+    public Team getTeam(int row) {
+        return this.teams[row];
+    }
+
+    /**
+     * Returns whether a unit is on the map of the snapshot's planet.
+     */
+    public boolean isOnMap(int row) {
+        return this.isOnMap[row];
+    }
+
+    public boolean isInGarrison(int row) {
+        return this.isInGarrison[row];
+    }
+
+    /**
+     * Returns the x-coordinate of a unit. Only valid if the unit is on the
+     * map.
+     */
+    public int getX(int row) {
+        return this.x[row];
+    }
+
+    /**
+     * Returns the y-coordinate of a unit. Only valid if the unit is on the
+     * map.
+     */
+    public int getY(int row) {
+        return this.y[row];
+    }
+
+    public int getHealth(int row) {
+        return this.health[row];
+    }
+
+    public int getVisionRange(int row) {
+        return this.visionRange[row];
+    }
+
+    public int getAttackRange(int row) {
+        return this.attackRange[row];
+    }
+
+    /**
+     * Returns how much health a unit's attack takes away. Negative for
+     * healers, and 0 for units that can't attack.
+     */
+    public int getDamage(int row) {
+        return this.damage[row];
+    }
+
+    public boolean isMoveReady(int row) {
+        return this.isMoveReady[row];
+    }
+
+    public boolean isAttackReady(int row) {
+        return this.isAttackReady[row];
+    }
+
+    public boolean isSniping(int row) {
+        return this.isSniping[row];
+    }
+
+    public boolean isBuilt(int row) {
+        return this.isBuilt[row];
+    }
+
+    public boolean isProducing(int row) {
+        return this.isProducing[row];
+    }
+
+    public int getGarrisonSize(int row) {
+        return this.garrisonSize[row];
+    }
+
+    /**
+     * Records that a unit moved during the turn.
+     *
+     * @param row The row of the unit.
+     * @param x   The new x-coordinate of the unit.
+     * @param y   The new y-coordinate of the unit.
+     */
+    public void moved(int row, int x, int y) {
+        this.x[row] = x;
+        this.y[row] = y;
+        this.isMoveReady[row] = false;
+    }
+
+    /**
+     * Records that a unit attacked another unit during the turn.
+     *
+     * @param row       The row of the attacking unit.
+     * @param targetRow The row of the unit that was attacked.
+     */
+    public void attacked(int row, int targetRow) {
+        this.isAttackReady[row] = false;
+        this.health[targetRow] -= this.damage[row];
+    }
+
+    /**
+     * Returns whether a unit still has health left, as far as the snapshot
+     * knows.
+     */
+    public boolean isAlive(int row) {
+        return this.health[row] > 0;
+    }
+}
@@ -0,0 +1,7 @@
+#!/bin/sh
+# Runs the JMH benchmarks of the player's hot paths on the synthetic maps in
+# maps/bench, with the time and bytes allocated per operation. Any arguments
+# are passed to JMH, for example a benchmark name or -p size=50 to run only
+# some of them. Run "gradle :benchmarks:generateMaps" to rewrite the maps.
+
+gradle -q :benchmarks:jmh -PbattlecodeJava=../battlecode/java -PjmhArgs="$*"
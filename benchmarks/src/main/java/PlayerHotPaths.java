@@ -0,0 +1,138 @@
+import bc.*;
+
+import bench.HotPaths;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * The player's hot paths for the benchmarks, on an offline game of a map.
+ * The inputs are random passable locations, the same every time for a
+ * given map, and the locations of the player's own units.
+ */
+public class PlayerHotPaths implements HotPaths {
+    private EarthPlayer player;
+    private Navigator navigator;
+    private NavMapBuilder builder;
+    private byte[] navMap;
+    private short[] distMap;
+    private BitGrid occupied;
+    private UnitSnapshot units;
+    // Index and coordinates of each input location
+    private int[] inputs;
+    private int[] inputX;
+    private int[] inputY;
+    // Each input location, and another one to search for a path to from it
+    private MapLocation[] starts;
+    private MapLocation[] ends;
+    // The player's units, and the location of each of them
+    private int[] unitIds;
+    private MapLocation[] unitLocations;
+    private int unitCount;
+    // Where the player's units navigate to
+    private MapLocation rallyPoint;
+
+    @Override
+    public void load(String mapPath) throws IOException {
+        OfflineMap map = OfflineMap.load(mapPath);
+        int width = map.getWidth(Planet.Earth);
+        int height = map.getHeight(Planet.Earth);
+        BitGrid passable = new BitGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                passable.set(x, y, map.isPassable(Planet.Earth, x, y));
+            }
+        }
+
+        Random random = new Random(width * 31 + height);
+        this.inputs = new int[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            int location;
+            do {
+                location = random.nextInt(width * height);
+            } while (!passable.get(location));
+            this.inputs[i] = location;
+        }
+        this.inputX = new int[INPUTS];
+        this.inputY = new int[INPUTS];
+        this.starts = new MapLocation[INPUTS];
+        this.ends = new MapLocation[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            int from = this.inputs[i];
+            int to = this.inputs[(i * 7 + 1) % INPUTS];
+            this.inputX[i] = from % width;
+            this.inputY[i] = from / width;
+            this.starts[i] = new MapLocation(Planet.Earth, from % width, from / width);
+            this.ends[i] = new MapLocation(Planet.Earth, to % width, to / width);
+        }
+        this.rallyPoint = this.starts[0];
+
+        // The player and navigator print while they are set up
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        GameApi gc = new OfflineGame(map).view(Team.Red, Planet.Earth);
+        try {
+            this.player = new EarthPlayer(gc, Planet.Earth);
+            this.navigator = new Navigator(gc, passable, SearchMode.JUMP_POINT);
+        } finally {
+            System.setOut(out);
+        }
+        this.builder = new NavMapBuilder(passable);
+        this.navMap = new byte[width * height];
+        this.distMap = new short[width * height];
+
+        this.units = new UnitSnapshot();
+        gc.readUnits(this.units);
+        this.occupied = new BitGrid(width, height);
+        this.unitIds = new int[this.units.size()];
+        this.unitLocations = new MapLocation[this.units.size()];
+        this.unitCount = 0;
+        for (int row = 0; row < this.units.size(); row++) {
+            this.occupied.set(this.units.getX(row), this.units.getY(row));
+            if (this.units.getTeam(row) == Team.Red) {
+                this.unitIds[this.unitCount] = this.units.getId(row);
+                this.unitLocations[this.unitCount] = new MapLocation(Planet.Earth, this.units.getX(row), this.units.getY(row));
+                this.unitCount++;
+            }
+        }
+    }
+
+    @Override
+    public int createNavMap(int i) {
+        this.builder.reset(this.inputs[i], this.navMap, this.distMap);
+        this.builder.run();
+        return this.distMap[this.inputs[(i + 1) % INPUTS]];
+    }
+
+    @Override
+    public Object navigate(int i) {
+        int unit = i % this.unitCount;
+        return this.navigator.navigate(this.unitIds[unit], this.unitLocations[unit], this.rallyPoint);
+    }
+
+    @Override
+    public Object pathfind(int i) {
+        return this.navigator.pathfind(this.starts[i], this.ends[i], this.occupied);
+    }
+
+    @Override
+    public Object findNearestKarbonite(int i) {
+        return this.player.findNearestKarbonite(this.starts[i]);
+    }
+
+    @Override
+    public int getDepositValue(int i) {
+        return this.player.getDepositValue(this.inputX[i], this.inputY[i], EarthPlayer.DEPOSIT_SCAN_RADIUS);
+    }
+
+    @Override
+    public void processPreTurn() {
+        this.player.processPreTurn();
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Writes the synthetic maps in maps/bench that the benchmarks run on, one
+ * for every combination of the benchmark parameters.
+ *
+ * Usage: BenchmarkMaps
+ */
+public class BenchmarkMaps {
+    static final String MAP_DIRECTORY = "maps/bench";
+    static final int[] MAP_SIZES = {20, 30, 40, 50};
+    // Fraction of locations that are impassable, in percent
+    static final int[] OBSTACLE_PERCENTS = {10, 25};
+    static final int[] UNIT_COUNTS = {10, 50};
+
+    public static void main(String[] args) throws IOException {
+        Files.createDirectories(Paths.get(MAP_DIRECTORY));
+        for (int size : MAP_SIZES) {
+            for (int obstacles : OBSTACLE_PERCENTS) {
+                for (int unitCount : UNIT_COUNTS) {
+                    writeMap(size, obstacles, unitCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the file of the map with the given parameters.
+     */
+    static String path(int size, int obstacles, int unitCount) {
+        return MAP_DIRECTORY + "/" + size + "x" + size + "-o" + obstacles + "-u" + unitCount + ".txt";
+    }
+
+    /**
+     * Writes a map with random obstacles, karbonite on about a tenth of its
+     * passable locations, and the given number of workers split between the
+     * two teams. The random seed depends only on the map's parameters, so the
+     * map is always the same.
+     */
+    private static void writeMap(int size, int obstacles, int unitCount) throws IOException {
+        Random random = new Random(size * 10000 + obstacles * 100 + unitCount);
+        char[][] rows = new char[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int x = 0; x < size; x++) {
+                int roll = random.nextInt(100);
+                if (roll < obstacles) {
+                    rows[row][x] = '#';
+                } else if (random.nextInt(10) == 0) {
+                    rows[row][x] = (char) ('1' + random.nextInt(9));
+                } else {
+                    rows[row][x] = '.';
+                }
+            }
+        }
+        for (int i = 0; i < unitCount; i++) {
+            int row;
+            int x;
+            do {
+                row = random.nextInt(size);
+                x = random.nextInt(size);
+            } while (rows[row][x] != '.');
+            rows[row][x] = i % 2 == 0 ? 'r' : 'b';
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("; Synthetic benchmark map, written by BenchmarkMaps\n");
+        sb.append("earth ").append(size).append(' ').append(size).append('\n');
+        for (char[] row : rows) {
+            sb.append(row).append('\n');
+        }
+        Path path = Paths.get(path(size, obstacles, unitCount));
+        Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import java.io.IOException;
+
+/**
+ * The hot paths of the player that the benchmarks measure, set up on one
+ * map. The player's classes are in the default package, which the code JMH
+ * generates can't refer to, so the benchmarks reach them through this
+ * interface. PlayerHotPaths, in the default package, implements it.
+ *
+ * Each operation works through a fixed sequence of inputs, made when the map
+ * is loaded, so that runs are comparable and making the inputs isn't
+ * measured.
+ */
+public interface HotPaths {
+    // Number of different inputs each operation cycles through
+    int INPUTS = 1024;
+
+    /**
+     * Sets up the player and the inputs for a map.
+     *
+     * @param mapPath The map file.
+     * @throws IOException If the map can't be read.
+     */
+    void load(String mapPath) throws IOException;
+
+    /**
+     * Builds the navigation map to a location from scratch.
+     *
+     * @param i Which input to use, from 0 to one less than INPUTS.
+     * @return The distance to another location in the built map.
+     */
+    int createNavMap(int i);
+
+    /**
+     * Finds the direction a unit should move in toward the rally point, from
+     * a cached navigation map.
+     *
+     * @param i Which input to use, from 0 to one less than INPUTS.
+     * @return The direction.
+     */
+    Object navigate(int i);
+
+    /**
+     * Searches for a path between two locations around occupied locations.
+     *
+     * @param i Which input to use, from 0 to one less than INPUTS.
+     * @return The first direction of the path.
+     */
+    Object pathfind(int i);
+
+    /**
+     * Calls EarthPlayer.findNearestKarbonite.
+     *
+     * @param i Which input to use, from 0 to one less than INPUTS.
+     * @return The nearest karbonite location.
+     */
+    Object findNearestKarbonite(int i);
+
+    /**
+     * Calls EarthPlayer.getDepositValue.
+     *
+     * @param i Which input to use, from 0 to one less than INPUTS.
+     * @return The deposit value.
+     */
+    int getDepositValue(int i);
+
+    /**
+     * Calls EarthPlayer.processPreTurn, which reads the units for a turn.
+     */
+    void processPreTurn();
+}
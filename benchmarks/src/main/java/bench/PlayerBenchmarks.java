@@ -0,0 +1,87 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hot paths of the player on every synthetic map in
+ * maps/bench. Run with the gc profiler, as the jmh task does, to see the
+ * bytes allocated per operation as well as the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmarks {
+    @Param({"20", "30", "40", "50"})
+    public int size;
+    // Fraction of locations that are impassable, in percent
+    @Param({"10", "25"})
+    public int obstacles;
+    @Param({"10", "50"})
+    public int units;
+
+    private HotPaths paths;
+    private int input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.paths = (HotPaths) Class.forName("PlayerHotPaths").getDeclaredConstructor().newInstance();
+        this.paths.load(BenchmarkMaps.path(this.size, this.obstacles, this.units));
+        this.input = 0;
+    }
+
+    /**
+     * Returns the next input to use, cycling through all of them.
+     */
+    private int nextInput() {
+        int i = this.input;
+        this.input = (i + 1) % HotPaths.INPUTS;
+        return i;
+    }
+
+    @Benchmark
+    public void createNavMap(Blackhole blackhole) {
+        blackhole.consume(this.paths.createNavMap(nextInput()));
+    }
+
+    @Benchmark
+    public void navigate(Blackhole blackhole) {
+        blackhole.consume(this.paths.navigate(nextInput()));
+    }
+
+    @Benchmark
+    public void pathfind(Blackhole blackhole) {
+        blackhole.consume(this.paths.pathfind(nextInput()));
+    }
+
+    @Benchmark
+    public void findNearestKarbonite(Blackhole blackhole) {
+        blackhole.consume(this.paths.findNearestKarbonite(nextInput()));
+    }
+
+    @Benchmark
+    public void getDepositValue(Blackhole blackhole) {
+        blackhole.consume(this.paths.getDepositValue(nextInput()));
+    }
+
+    @Benchmark
+    public void processPreTurn() {
+        this.paths.processPreTurn();
+    }
+}
@@ -4,8 +4,8 @@
 # or if you're running in docker.
 
 # Compile our code.
-echo javac $(find . -name '*.java') -classpath ../battlecode/java
-javac $(find . -name '*.java') -classpath ../battlecode/java
+echo javac $(find . -maxdepth 1 -name '*.java') -classpath ../battlecode/java
+javac $(find . -maxdepth 1 -name '*.java') -classpath ../battlecode/java
 
 # Run our code.
 echo java -classpath .:../battlecode/java Player
@@ -0,0 +1,175 @@
+import bc.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttackPlannerTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 20;
+    private static final int RANGER_RANGE = 50;
+    private static final int RANGER_MIN_RANGE = 10;
+    private static final int DAMAGE = 30;
+
+    private UnitSnapshot units = new UnitSnapshot();
+    private IntSet attackerIDs = new IntSet();
+    private int nextID = 1;
+
+    private int addAttacker(int x, int y, boolean isReady) {
+        int id = this.nextID++;
+        int row = this.units.add(id, UnitType.Ranger, Team.Red);
+        this.units.setLocation(row, true, false, x, y);
+        this.units.setStats(row, 200, 70, RANGER_RANGE, DAMAGE);
+        this.units.setReady(row, true, isReady, false);
+        this.attackerIDs.add(id);
+        return row;
+    }
+
+    private int addEnemy(int x, int y, int health) {
+        int row = this.units.add(this.nextID++, UnitType.Worker, Team.Blue);
+        this.units.setLocation(row, true, false, x, y);
+        this.units.setStats(row, health, 50, 0, 0);
+        return row;
+    }
+
+    /**
+     * Plans attacks and returns the target of each attacker, indexed by
+     * snapshot row.
+     */
+    private int[] plan(int minRangeSq) {
+        SpatialHash enemies = new SpatialHash(WIDTH, HEIGHT);
+        enemies.build(this.units, Team.Blue);
+        AttackPlanner planner = new AttackPlanner();
+        int count = planner.plan(this.units, enemies, this.attackerIDs, minRangeSq);
+        int[] targets = new int[this.units.size()];
+        Arrays.fill(targets, AttackPlanner.NONE);
+        for (int i = 0; i < count; i++) {
+            targets[planner.getAttacker(i)] = planner.getTarget(i);
+        }
+        return targets;
+    }
+
+    private static int shotsAt(int[] targets, int enemy) {
+        int shots = 0;
+        for (int target : targets) {
+            if (target == enemy) {
+                shots++;
+            }
+        }
+        return shots;
+    }
+
+    @Test
+    public void focusesFireOnWhatCanBeKilled() {
+        int a = addAttacker(0, 0, true);
+        int b = addAttacker(1, 0, true);
+        int c = addAttacker(0, 1, true);
+        int weak = addEnemy(4, 4, 60);
+        int strong = addEnemy(5, 4, 200);
+        int[] targets = plan(-1);
+
+        assertEquals(2, shotsAt(targets, weak));
+        assertEquals(1, shotsAt(targets, strong));
+        assertTrue(targets[a] != AttackPlanner.NONE && targets[b] != AttackPlanner.NONE
+                && targets[c] != AttackPlanner.NONE);
+    }
+
+    @Test
+    public void killsTheCheapestTargetsFirst() {
+        addAttacker(0, 0, true);
+        addAttacker(1, 0, true);
+        addAttacker(0, 1, true);
+        int cheap = addEnemy(4, 4, 30);
+        int dear = addEnemy(5, 4, 60);
+        int[] targets = plan(-1);
+
+        assertEquals(1, shotsAt(targets, cheap));
+        assertEquals(2, shotsAt(targets, dear));
+    }
+
+    @Test
+    public void doesNotOverkill() {
+        int a = addAttacker(0, 0, true);
+        int b = addAttacker(1, 0, true);
+        int c = addAttacker(0, 1, true);
+        int enemy = addEnemy(4, 4, 40);
+        int[] targets = plan(-1);
+
+        // Two shots kill it, so the third attacker is left with nothing
+        assertEquals(2, shotsAt(targets, enemy));
+        int idle = 0;
+        for (int row : new int[] {a, b, c}) {
+            idle += targets[row] == AttackPlanner.NONE ? 1 : 0;
+        }
+        assertEquals(1, idle);
+    }
+
+    @Test
+    public void leavesFlexibleAttackersForOtherTargets() {
+        // The first attacker can only reach the near enemy; the second can
+        // reach both
+        int narrow = addAttacker(0, 0, true);
+        int wide = addAttacker(7, 0, true);
+        int near = addEnemy(3, 3, DAMAGE);
+        int far = addEnemy(13, 0, DAMAGE);
+        int[] targets = plan(-1);
+
+        assertEquals(near, targets[narrow]);
+        assertEquals(far, targets[wide]);
+    }
+
+    @Test
+    public void skipsEnemiesInsideTheMinimumRange() {
+        int attacker = addAttacker(5, 5, true);
+        addEnemy(6, 6, 10);
+        int[] targets = plan(RANGER_MIN_RANGE);
+        assertEquals(AttackPlanner.NONE, targets[attacker]);
+
+        int distant = addEnemy(9, 9, 100);
+        targets = plan(RANGER_MIN_RANGE);
+        assertEquals(distant, targets[attacker]);
+    }
+
+    @Test
+    public void onlyPlansForReadyAttackers() {
+        addAttacker(0, 0, false);
+        int ready = addAttacker(1, 0, true);
+        int enemy = addEnemy(3, 3, 100);
+        int[] targets = plan(-1);
+        assertEquals(1, shotsAt(targets, enemy));
+        assertEquals(enemy, targets[ready]);
+    }
+
+    @Test
+    public void assignsOnlyEnemiesInRange() {
+        Random random = new Random(9);
+        for (int trial = 0; trial < 50; trial++) {
+            this.units = new UnitSnapshot();
+            this.attackerIDs = new IntSet();
+            for (int i = 0; i < 15; i++) {
+                addAttacker(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(5) != 0);
+            }
+            for (int i = 0; i < 15; i++) {
+                addEnemy(random.nextInt(WIDTH), random.nextInt(HEIGHT), 1 + random.nextInt(100));
+            }
+            int[] targets = plan(RANGER_MIN_RANGE);
+
+            for (int row = 0; row < targets.length; row++) {
+                int target = targets[row];
+                if (target == AttackPlanner.NONE) {
+                    continue;
+                }
+                assertEquals(Team.Red, this.units.getTeam(row));
+                assertTrue(this.units.isAttackReady(row));
+                assertEquals(Team.Blue, this.units.getTeam(target));
+                int dx = this.units.getX(row) - this.units.getX(target);
+                int dy = this.units.getY(row) - this.units.getY(target);
+                int distSq = dx * dx + dy * dy;
+                assertTrue(distSq > RANGER_MIN_RANGE && distSq <= RANGER_RANGE);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitGridTest {
+    @Test
+    public void startsCleared() {
+        BitGrid grid = new BitGrid(7, 5);
+        assertEquals(7, grid.getWidth());
+        assertEquals(5, grid.getHeight());
+        assertEquals(0, grid.count());
+        for (int i = 0; i < 35; i++) {
+            assertFalse(grid.get(i));
+        }
+    }
+
+    @Test
+    public void coordinatesAndIndicesAgree() {
+        BitGrid grid = new BitGrid(7, 5);
+        grid.set(3, 2);
+        assertTrue(grid.get(2 * 7 + 3));
+        grid.set(2 * 7 + 4);
+        assertTrue(grid.get(4, 2));
+        grid.clear(2 * 7 + 3);
+        assertFalse(grid.get(3, 2));
+        grid.set(4, 2, false);
+        assertFalse(grid.get(2 * 7 + 4));
+        grid.set(0, 0, true);
+        assertTrue(grid.get(0));
+    }
+
+    @Test
+    public void flagsOnWordBoundariesAreKeptApart() {
+        // 9 * 9 = 81 locations, spanning two words
+        BitGrid grid = new BitGrid(9, 9);
+        grid.set(63);
+        grid.set(64);
+        assertTrue(grid.get(63));
+        assertTrue(grid.get(64));
+        assertFalse(grid.get(62));
+        assertFalse(grid.get(65));
+        assertFalse(grid.get(0));
+        grid.clear(63);
+        assertFalse(grid.get(63));
+        assertTrue(grid.get(64));
+        grid.set(80);
+        assertEquals(2, grid.count());
+    }
+
+    @Test
+    public void matchesBooleanArrayForRandomUpdates() {
+        Random random = new Random(3);
+        BitGrid grid = new BitGrid(50, 50);
+        boolean[] expected = new boolean[50 * 50];
+        for (int i = 0; i < 10000; i++) {
+            int index = random.nextInt(expected.length);
+            boolean value = random.nextBoolean();
+            grid.set(index % 50, index / 50, value);
+            expected[index] = value;
+        }
+        int count = 0;
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], grid.get(i));
+            count += expected[i] ? 1 : 0;
+        }
+        assertEquals(count, grid.count());
+
+        grid.clearAll();
+        assertEquals(0, grid.count());
+    }
+}
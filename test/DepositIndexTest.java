@@ -0,0 +1,276 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DepositIndexTest {
+    private static final int WIDTH = 15;
+    private static final int HEIGHT = 12;
+
+    private int[][] karboniteMap;
+    private BitGrid passable;
+
+    private void fill(Random random, double obstacles, double deposits) {
+        this.karboniteMap = new int[HEIGHT][WIDTH];
+        this.passable = new BitGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                this.passable.set(x, y, random.nextDouble() >= obstacles);
+                this.karboniteMap[y][x] = random.nextDouble() < deposits ? 1 + random.nextInt(50) : 0;
+            }
+        }
+    }
+
+    /**
+     * Finds the walking distance from a location to every other location
+     * with a breadth first search.
+     */
+    private int[] distancesFrom(int start) {
+        int[] dist = new int[WIDTH * HEIGHT];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[WIDTH * HEIGHT];
+        int head = 0;
+        int tail = 0;
+        dist[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int next = queue[head++];
+            for (int d = 0; d < Navigator.DIRECTIONS.length; d++) {
+                int x = next % WIDTH + Navigator.DIR_DX[d];
+                int y = next / WIDTH + Navigator.DIR_DY[d];
+                if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
+                    continue;
+                }
+                int adj = y * WIDTH + x;
+                if (this.passable.get(adj) && dist[adj] == -1) {
+                    dist[adj] = dist[next] + 1;
+                    queue[tail++] = adj;
+                }
+            }
+        }
+        return dist;
+    }
+
+    private boolean isDeposit(int index) {
+        return this.passable.get(index) && this.karboniteMap[index / WIDTH][index % WIDTH] > 0;
+    }
+
+    /**
+     * Checks every passable location's nearest deposit and distance against
+     * a search from that location.
+     */
+    private void checkAgainstSearch(DepositIndex index) {
+        for (int start = 0; start < WIDTH * HEIGHT; start++) {
+            int x = start % WIDTH;
+            int y = start / WIDTH;
+            if (!this.passable.get(start)) {
+                continue;
+            }
+            int[] dist = distancesFrom(start);
+            int best = -1;
+            for (int i = 0; i < dist.length; i++) {
+                if (dist[i] != -1 && isDeposit(i) && (best == -1 || dist[i] < best)) {
+                    best = dist[i];
+                }
+            }
+
+            String location = x + "," + y;
+            int nearest = index.nearest(x, y);
+            if (best == -1) {
+                assertEquals(location, -1, nearest);
+                assertEquals(location, Navigator.NO_DIST, index.nearestDistance(x, y));
+            } else {
+                assertEquals(location, best, index.nearestDistance(x, y));
+                assertTrue(location, isDeposit(nearest));
+                assertEquals(location, best, dist[nearest]);
+            }
+        }
+    }
+
+    @Test
+    public void matchesSearchOnOpenMaps() {
+        fill(new Random(1), 0.0, 0.05);
+        checkAgainstSearch(new DepositIndex(this.karboniteMap, this.passable));
+    }
+
+    @Test
+    public void matchesSearchAroundWalls() {
+        Random random = new Random(2);
+        for (int trial = 0; trial < 20; trial++) {
+            fill(random, 0.3, 0.03);
+            checkAgainstSearch(new DepositIndex(this.karboniteMap, this.passable));
+        }
+    }
+
+    @Test
+    public void hasNoDepositsWithoutKarbonite() {
+        fill(new Random(3), 0.1, 0.0);
+        DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+        assertEquals(-1, index.nearest(0, 0));
+        assertEquals(Navigator.NO_DIST, index.nearestDistance(0, 0));
+    }
+
+    @Test
+    public void refreshDropsDepositsThatRanOut() {
+        fill(new Random(4), 0.0, 0.0);
+        this.karboniteMap[2][2] = 10;
+        this.karboniteMap[9][12] = 10;
+        DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+        assertEquals(2 * WIDTH + 2, index.nearest(3, 3));
+
+        // Still has karbonite, so nothing changes
+        this.karboniteMap[2][2] = 5;
+        index.update(2, 2);
+        index.refresh();
+        assertEquals(2 * WIDTH + 2, index.nearest(3, 3));
+
+        // Answers stay as of the last refresh until the next one
+        this.karboniteMap[2][2] = 0;
+        index.update(2, 2);
+        assertEquals(2 * WIDTH + 2, index.nearest(3, 3));
+        assertEquals(1, index.nearestDistance(3, 3));
+        index.refresh();
+        assertEquals(9 * WIDTH + 12, index.nearest(3, 3));
+        assertEquals(9, index.nearestDistance(3, 3));
+        checkAgainstSearch(index);
+    }
+
+    @Test
+    public void refreshesManyDepletionsTogether() {
+        Random random = new Random(5);
+        fill(random, 0.2, 0.1);
+        DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (this.karboniteMap[y][x] > 0 && random.nextBoolean()) {
+                    this.karboniteMap[y][x] = 0;
+                    index.update(x, y);
+                }
+            }
+        }
+        index.refresh();
+        checkAgainstSearch(index);
+    }
+
+    /**
+     * Adds up the karbonite on passable locations in a square, the same way
+     * as the deposit values that best() scores by.
+     */
+    private long squareValue(int centerX, int centerY, int radius) {
+        long value = 0;
+        for (int y = Math.max(0, centerY - radius); y <= Math.min(HEIGHT - 1, centerY + radius); y++) {
+            for (int x = Math.max(0, centerX - radius); x <= Math.min(WIDTH - 1, centerX + radius); x++) {
+                if (this.passable.get(x, y)) {
+                    value += this.karboniteMap[y][x];
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks that best() picks a deposit with the most value per move from
+     * the closest source, by scoring every deposit from a search out of each
+     * source.
+     */
+    private void checkBest(DepositIndex index, int[] sources, int radius) {
+        SummedAreaTable values = new SummedAreaTable(this.karboniteMap, this.passable);
+        int[][] sourceDistances = new int[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            sourceDistances[i] = distancesFrom(sources[i]);
+        }
+
+        double bestScore = -1;
+        for (int deposit = 0; deposit < WIDTH * HEIGHT; deposit++) {
+            if (!isDeposit(deposit)) {
+                continue;
+            }
+            int distance = -1;
+            for (int[] dist : sourceDistances) {
+                if (dist[deposit] != -1 && (distance == -1 || dist[deposit] < distance)) {
+                    distance = dist[deposit];
+                }
+            }
+            if (distance != -1) {
+                bestScore = Math.max(bestScore, (double) squareValue(deposit % WIDTH, deposit / WIDTH, radius) / (distance + 1));
+            }
+        }
+
+        int best = index.best(sources, sources.length, values, radius);
+        if (bestScore < 0) {
+            assertEquals(-1, best);
+            return;
+        }
+        assertTrue(isDeposit(best));
+        int distance = Integer.MAX_VALUE;
+        for (int[] dist : sourceDistances) {
+            if (dist[best] != -1) {
+                distance = Math.min(distance, dist[best]);
+            }
+        }
+        double score = (double) squareValue(best % WIDTH, best / WIDTH, radius) / (distance + 1);
+        assertEquals(bestScore, score, 1e-9);
+    }
+
+    @Test
+    public void bestWeighsValueAgainstDistance() {
+        fill(new Random(6), 0.0, 0.0);
+        // A small deposit right next to the pod and a rich field further off
+        this.karboniteMap[1][1] = 5;
+        for (int y = 8; y <= 10; y++) {
+            for (int x = 10; x <= 12; x++) {
+                this.karboniteMap[y][x] = 50;
+            }
+        }
+        DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+        SummedAreaTable values = new SummedAreaTable(this.karboniteMap, this.passable);
+        int[] pod = {0, 1};
+
+        assertEquals(1 * WIDTH + 1, index.nearest(0, 0));
+        int best = index.best(pod, pod.length, values, 1);
+        assertEquals(9 * WIDTH + 11, best);
+        checkBest(index, pod, 1);
+    }
+
+    @Test
+    public void bestMatchesScoringEveryDeposit() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 30; trial++) {
+            fill(random, 0.3, 0.05);
+            DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+            int[] sources = new int[1 + random.nextInt(4)];
+            for (int i = 0; i < sources.length; i++) {
+                do {
+                    sources[i] = random.nextInt(WIDTH * HEIGHT);
+                } while (!this.passable.get(sources[i]));
+            }
+            checkBest(index, sources, trial % 3);
+        }
+    }
+
+    @Test
+    public void bestSkipsDepositsThatRanOutAfterRefresh() {
+        fill(new Random(8), 0.0, 0.0);
+        this.karboniteMap[2][2] = 40;
+        this.karboniteMap[9][12] = 10;
+        DepositIndex index = new DepositIndex(this.karboniteMap, this.passable);
+        SummedAreaTable values = new SummedAreaTable(this.karboniteMap, this.passable);
+        int[] pod = {3 * WIDTH + 3};
+        assertEquals(2 * WIDTH + 2, index.best(pod, pod.length, values, 0));
+
+        this.karboniteMap[2][2] = 0;
+        values.add(2, 2, -40);
+        index.update(2, 2);
+        index.refresh();
+        assertEquals(9 * WIDTH + 12, index.best(pod, pod.length, values, 0));
+
+        this.karboniteMap[9][12] = 0;
+        values.add(12, 9, -10);
+        index.update(12, 9);
+        index.refresh();
+        assertEquals(-1, index.best(pod, pod.length, values, 0));
+    }
+}
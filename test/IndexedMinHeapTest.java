@@ -0,0 +1,95 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedMinHeapTest {
+    @Test
+    public void pollsInPriorityOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(8);
+        heap.add(3, 5.0f);
+        heap.add(1, 2.0f);
+        heap.add(7, 9.0f);
+        heap.add(0, 1.0f);
+        assertEquals(4, heap.size());
+
+        assertEquals(0, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(7, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void tracksWhichItemsAreIn() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.add(2, 1.0f);
+        assertTrue(heap.contains(2));
+        assertFalse(heap.contains(1));
+        heap.poll();
+        assertFalse(heap.contains(2));
+    }
+
+    @Test
+    public void decreaseKeyMovesAnItemUp() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.add(0, 1.0f);
+        heap.add(1, 2.0f);
+        heap.add(2, 3.0f);
+        heap.decreaseKey(2, 0.5f);
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void decreaseKeyIgnoresHigherPriorities() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.add(0, 1.0f);
+        heap.add(1, 2.0f);
+        heap.decreaseKey(0, 5.0f);
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void clearEmptiesTheHeapForReuse() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.add(0, 1.0f);
+        heap.add(3, 2.0f);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+        assertFalse(heap.contains(3));
+        heap.add(3, 4.0f);
+        assertEquals(3, heap.poll());
+    }
+
+    @Test
+    public void matchesSortedOrderForRandomUpdates() {
+        Random random = new Random(4);
+        int capacity = 200;
+        IndexedMinHeap heap = new IndexedMinHeap(capacity);
+        float[] keys = new float[capacity];
+        for (int item = 0; item < capacity; item++) {
+            keys[item] = random.nextFloat() * 100;
+            heap.add(item, keys[item]);
+        }
+        for (int i = 0; i < 500; i++) {
+            int item = random.nextInt(capacity);
+            float key = random.nextFloat() * 100;
+            heap.decreaseKey(item, key);
+            keys[item] = Math.min(keys[item], key);
+        }
+
+        float[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < capacity; i++) {
+            int item = heap.poll();
+            assertEquals(sorted[i], keys[item], 0.0f);
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
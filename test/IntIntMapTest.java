@@ -0,0 +1,138 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntIntMapTest {
+    // Capacity of a new map, which holds up to half that many entries
+    // before growing
+    private static final int CAPACITY = 16;
+
+    /**
+     * Finds keys that hash to the same slot of a new map, so they all land
+     * in one probe run.
+     */
+    private static int[] collidingKeys(int homeSlot, int count) {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = 0; found < count; key++) {
+            int h = key * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & (CAPACITY - 1)) == homeSlot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void putGetAndOverwrite() {
+        IntIntMap map = new IntIntMap();
+        assertTrue(map.isEmpty());
+        map.put(7, 70);
+        map.put(-3, 30);
+        assertEquals(70, map.get(7, -1));
+        assertEquals(30, map.get(-3, -1));
+        assertEquals(-1, map.get(8, -1));
+        assertTrue(map.containsKey(7));
+        assertFalse(map.containsKey(8));
+
+        map.put(7, 71);
+        assertEquals(71, map.get(7, -1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void removeShiftsCollidingKeysBack() {
+        int[] keys = collidingKeys(3, 5);
+        IntIntMap map = new IntIntMap();
+        for (int key : keys) {
+            map.put(key, key + 1000);
+        }
+
+        // Remove from the front, middle and end of the run
+        assertTrue(map.remove(keys[0]));
+        assertTrue(map.remove(keys[2]));
+        assertTrue(map.remove(keys[4]));
+        assertFalse(map.remove(keys[2]));
+        assertEquals(2, map.size());
+        assertFalse(map.containsKey(keys[0]));
+        assertEquals(keys[1] + 1000, map.get(keys[1], -1));
+        assertEquals(keys[3] + 1000, map.get(keys[3], -1));
+
+        map.put(keys[0], 5);
+        assertEquals(5, map.get(keys[0], -1));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void removeShiftsRunsThatWrapAround() {
+        int[] keys = collidingKeys(CAPACITY - 2, 4);
+        int[] others = collidingKeys(1, 2);
+        IntIntMap map = new IntIntMap();
+        for (int key : keys) {
+            map.put(key, key);
+        }
+        // These sit after the wrapped run without belonging to it
+        for (int key : others) {
+            map.put(key, key);
+        }
+
+        assertTrue(map.remove(keys[1]));
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i != 1, map.containsKey(keys[i]));
+        }
+        for (int key : others) {
+            assertEquals(key, map.get(key, -1));
+        }
+        assertTrue(map.remove(keys[0]));
+        assertTrue(map.remove(others[0]));
+        assertEquals(keys[2], map.get(keys[2], -1));
+        assertEquals(keys[3], map.get(keys[3], -1));
+        assertEquals(others[1], map.get(others[1], -1));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void growsAndKeepsEntries() {
+        IntIntMap map = new IntIntMap();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 31, i);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i * 31, -1));
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(31));
+    }
+
+    @Test
+    public void matchesHashMapForRandomUpdates() {
+        Random random = new Random(11);
+        IntIntMap map = new IntIntMap(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // A small key range, so there are plenty of removes that hit
+            int key = random.nextInt(200) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                int value = random.nextInt();
+                expected.put(key, value);
+                map.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -100; key < 100; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals((int) expected.getOrDefault(key, 0), map.get(key, 0));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntSetTest {
+    /**
+     * Collects the elements of a set by index.
+     */
+    private static Set<Integer> elements(IntSet set) {
+        Set<Integer> elements = new HashSet<>();
+        for (int i = 0; i < set.size(); i++) {
+            assertTrue("listed twice: " + set.get(i), elements.add(set.get(i)));
+        }
+        return elements;
+    }
+
+    @Test
+    public void addsEachElementOnce() {
+        IntSet set = new IntSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(4));
+        assertTrue(set.add(-2));
+        assertFalse(set.add(4));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(4));
+        assertTrue(set.contains(-2));
+        assertFalse(set.contains(3));
+        assertEquals("[4, -2]", set.toString());
+    }
+
+    @Test
+    public void removeMovesTheLastElementIntoTheGap() {
+        IntSet set = new IntSet();
+        set.add(1);
+        set.add(2);
+        set.add(3);
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertEquals(2, set.size());
+        assertEquals(3, set.get(0));
+        assertEquals(2, set.get(1));
+
+        // The moved element can still be removed from its new place
+        assertTrue(set.remove(3));
+        assertEquals(1, set.size());
+        assertEquals(2, set.get(0));
+        assertTrue(set.remove(2));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void growsAndCanBeReusedAfterClear() {
+        IntSet set = new IntSet();
+        for (int i = 0; i < 100; i++) {
+            set.add(i * 7);
+        }
+        assertEquals(100, set.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 7, set.get(i));
+        }
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(7));
+        assertTrue(set.add(7));
+        assertEquals(7, set.get(0));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void matchesHashSetForRandomUpdates() {
+        Random random = new Random(5);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            int element = random.nextInt(100);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(element), set.add(element));
+            } else {
+                assertEquals(expected.remove(element), set.remove(element));
+            }
+            assertEquals(expected.size(), set.size());
+            if (i % 500 == 0) {
+                assertEquals(expected, elements(set));
+            }
+        }
+        assertEquals(expected, elements(set));
+        for (int element = 0; element < 100; element++) {
+            assertEquals(expected.contains(element), set.contains(element));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import bc.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KarboniteTrackerTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+    // Every location has 30 karbonite, apart from a wall at (3, 2)
+    private static final String MAP = "earth 8 6\n"
+            + "33333333\n"
+            + "33333333\n"
+            + "33333333\n"
+            + "333#3333\n"
+            + "33333333\n"
+            + "33333333\n";
+    // More karbonite than the map has anywhere
+    private static final int KNOWN = 90;
+    private static final int ACTUAL = 3 * OfflineMap.KARBONITE_PER_DIGIT;
+
+    private int[][] karboniteMap;
+    private BitGrid passable;
+    private KarboniteTracker tracker;
+    private UnitSnapshot units;
+
+    private void setUp() {
+        GameApi gc = new OfflineGame(OfflineMap.parse(MAP)).view(Team.Red, Planet.Earth);
+        this.karboniteMap = new int[HEIGHT][WIDTH];
+        this.passable = new BitGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                this.karboniteMap[y][x] = KNOWN;
+                this.passable.set(x, y, x != 3 || y != 2);
+            }
+        }
+        this.tracker = new KarboniteTracker(gc, Team.Red, this.karboniteMap, this.passable);
+        this.units = new UnitSnapshot();
+        this.units.clear(4);
+    }
+
+    private void addUnit(int id, Team team, boolean isOnMap, int x, int y, int visionRange) {
+        int row = this.units.add(id, UnitType.Worker, team);
+        this.units.setLocation(row, isOnMap, !isOnMap, x, y);
+        this.units.setStats(row, 100, visionRange, 0, 0);
+    }
+
+    private static boolean isInVision(int x, int y, int unitX, int unitY, int visionRange) {
+        return (x - unitX) * (x - unitX) + (y - unitY) * (y - unitY) <= visionRange;
+    }
+
+    @Test
+    public void sensesPassableLocationsInVision() {
+        setUp();
+        addUnit(1, Team.Red, true, 2, 2, 8);
+        int changed = this.tracker.refresh(this.units);
+
+        int expected = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean isSensed = isInVision(x, y, 2, 2, 8) && this.passable.get(x, y);
+                expected += isSensed ? 1 : 0;
+                assertEquals(x + "," + y, isSensed ? ACTUAL : KNOWN, this.karboniteMap[y][x]);
+            }
+        }
+        assertEquals(expected, changed);
+        assertEquals(expected, this.tracker.getChangedCount());
+        for (int i = 0; i < changed; i++) {
+            int index = this.tracker.getChanged(i);
+            assertTrue(isInVision(index % WIDTH, index / WIDTH, 2, 2, 8));
+            assertEquals(KNOWN - ACTUAL, this.tracker.getDelta(i));
+        }
+    }
+
+    @Test
+    public void sensesOverlappingVisionOnce() {
+        setUp();
+        addUnit(1, Team.Red, true, 4, 3, 2);
+        addUnit(2, Team.Red, true, 5, 3, 2);
+        int changed = this.tracker.refresh(this.units);
+
+        int expected = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if ((isInVision(x, y, 4, 3, 2) || isInVision(x, y, 5, 3, 2)) && this.passable.get(x, y)) {
+                    expected++;
+                }
+            }
+        }
+        assertEquals(expected, changed);
+        boolean[] seen = new boolean[WIDTH * HEIGHT];
+        for (int i = 0; i < changed; i++) {
+            assertTrue("sensed twice", !seen[this.tracker.getChanged(i)]);
+            seen[this.tracker.getChanged(i)] = true;
+        }
+    }
+
+    @Test
+    public void ignoresOtherTeamsAndUnitsOffTheMap() {
+        setUp();
+        addUnit(1, Team.Blue, true, 2, 2, 50);
+        addUnit(2, Team.Red, false, 5, 5, 50);
+        assertEquals(0, this.tracker.refresh(this.units));
+        assertEquals(KNOWN, this.karboniteMap[2][2]);
+        assertEquals(KNOWN, this.karboniteMap[5][5]);
+    }
+
+    @Test
+    public void neverRaisesKnownKarbonite() {
+        setUp();
+        this.karboniteMap[1][1] = 10;
+        addUnit(1, Team.Red, true, 1, 1, 2);
+        this.tracker.refresh(this.units);
+        assertEquals(10, this.karboniteMap[1][1]);
+        assertEquals(ACTUAL, this.karboniteMap[1][2]);
+
+        // Nothing has changed since the last refresh
+        assertEquals(0, this.tracker.refresh(this.units));
+        assertEquals(0, this.tracker.getChangedCount());
+    }
+}
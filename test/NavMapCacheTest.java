@@ -0,0 +1,137 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NavMapCacheTest {
+    private static final int LOCATIONS = 16;
+    // Bytes taken by one map and its distance field
+    private static final long ENTRY_BYTES = 3L * LOCATIONS;
+
+    private static void put(NavMapCache cache, int target) {
+        cache.put(target, new byte[LOCATIONS], new short[LOCATIONS]);
+    }
+
+    @Test
+    public void getReturnsWhatWasPut() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 10 * ENTRY_BYTES);
+        byte[] navMap = new byte[LOCATIONS];
+        short[] distMap = new short[LOCATIONS];
+        navMap[3] = 5;
+        distMap[3] = 7;
+        cache.put(4, navMap, distMap);
+
+        assertTrue(cache.contains(4));
+        assertSame(navMap, cache.get(4));
+        assertSame(distMap, cache.getDistances(4));
+        assertEquals(1, cache.size());
+        assertEquals(ENTRY_BYTES, cache.getUsedBytes());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 10 * ENTRY_BYTES);
+        put(cache, 1);
+        assertNull(cache.get(2));
+        cache.get(1);
+        cache.get(1);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void replacingAMapKeepsTheSizeAndBytes() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 10 * ENTRY_BYTES);
+        put(cache, 1);
+        short[] distMap = new short[LOCATIONS];
+        distMap[0] = 9;
+        cache.put(1, new byte[LOCATIONS], distMap);
+        assertEquals(1, cache.size());
+        assertEquals(ENTRY_BYTES, cache.getUsedBytes());
+        assertArrayEquals(distMap, cache.getDistances(1));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 2 * ENTRY_BYTES);
+        put(cache, 1);
+        put(cache, 2);
+        // Using 1 makes 2 the least recently used
+        cache.get(1);
+        put(cache, 3);
+
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertEquals(2, cache.size());
+        assertEquals(2 * ENTRY_BYTES, cache.getUsedBytes());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void containsDoesNotMarkAsUsed() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 2 * ENTRY_BYTES);
+        put(cache, 1);
+        put(cache, 2);
+        cache.contains(1);
+        put(cache, 3);
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    public void pinnedMapsAreNeverEvicted() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 2 * ENTRY_BYTES);
+        // Targets can be pinned before they are cached
+        cache.pin(1);
+        put(cache, 1);
+        for (int target = 2; target < 8; target++) {
+            put(cache, target);
+        }
+        assertTrue(cache.contains(1));
+        assertTrue(cache.contains(7));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void unpinningEvictsIfOverBudget() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, ENTRY_BYTES);
+        cache.pin(1);
+        cache.pin(2);
+        put(cache, 1);
+        put(cache, 2);
+        assertEquals(2, cache.size());
+
+        cache.unpin(1);
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(2));
+        assertEquals(ENTRY_BYTES, cache.getUsedBytes());
+    }
+
+    @Test
+    public void mostRecentMapIsKeptEvenIfOverBudget() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, ENTRY_BYTES / 2);
+        put(cache, 1);
+        assertTrue(cache.contains(1));
+        put(cache, 2);
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    public void loweringTheBudgetEvictsOnTheNextPut() {
+        NavMapCache cache = new NavMapCache(LOCATIONS, 4 * ENTRY_BYTES);
+        for (int target = 0; target < 4; target++) {
+            put(cache, target);
+        }
+        cache.setBudgetBytes(2 * ENTRY_BYTES);
+        put(cache, 4);
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains(3));
+        assertTrue(cache.contains(4));
+    }
+}
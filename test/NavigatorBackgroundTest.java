@@ -0,0 +1,134 @@
+import bc.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class NavigatorBackgroundTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 10;
+    // Bytes taken by one navigation map and its distance field
+    private static final long MAP_BYTES = 3L * WIDTH * HEIGHT;
+
+    /**
+     * Makes an open map with one wall, placed so that the map has no
+     * symmetry and every build caches exactly one map.
+     */
+    private static BitGrid grid() {
+        BitGrid passable = new BitGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                passable.set(x, y);
+            }
+        }
+        passable.clear(2, 7);
+        return passable;
+    }
+
+    private static MapLocation at(int x, int y) {
+        return new MapLocation(Planet.Earth, x, y);
+    }
+
+    @Test
+    public void greedyDirectionStepsTowardTheTarget() {
+        Navigator navigator = new Navigator(null, grid());
+        BitGrid occupied = new BitGrid(WIDTH, HEIGHT);
+        assertEquals(Direction.Northeast, navigator.greedyDirection(at(0, 0), at(5, 5), occupied));
+        assertEquals(Direction.West, navigator.greedyDirection(at(5, 5), at(1, 5), occupied));
+        assertEquals(Direction.Center, navigator.greedyDirection(at(4, 4), at(4, 4), occupied));
+
+        // Turns aside when the straight step is taken, but only to get closer
+        occupied.set(1, 1);
+        Direction aside = navigator.greedyDirection(at(0, 0), at(5, 5), occupied);
+        assertTrue(aside == Direction.North || aside == Direction.East);
+    }
+
+    @Test
+    public void greedyDirectionWaitsWhenNoStepGetsCloser() {
+        Navigator navigator = new Navigator(null, grid());
+        BitGrid occupied = new BitGrid(WIDTH, HEIGHT);
+        occupied.set(6, 4);
+        occupied.set(6, 5);
+        occupied.set(6, 6);
+        assertEquals(Direction.Center, navigator.greedyDirection(at(5, 5), at(9, 5), occupied));
+    }
+
+    @Test
+    public void urgentTargetsAreBuiltFirstAndEvict() {
+        Navigator navigator = new Navigator(null, grid(), SearchMode.A_STAR, 2 * MAP_BYTES);
+        navigator.schedulePrecompute(at(1, 1));
+        navigator.schedulePrecompute(at(3, 3));
+        navigator.schedulePrecompute(at(5, 5));
+        navigator.scheduleUrgent(at(8, 8));
+        assertTrue(navigator.runBackgroundPrecompute(Long.MAX_VALUE));
+
+        // The urgent target and the first predicted one fill the cache, and
+        // the predicted targets that don't fit are dropped
+        assertTrue(navigator.hasNavMap(at(8, 8)));
+        assertTrue(navigator.hasNavMap(at(1, 1)));
+        assertFalse(navigator.hasNavMap(at(3, 3)));
+        assertFalse(navigator.hasNavMap(at(5, 5)));
+
+        navigator.scheduleUrgent(at(5, 5));
+        assertTrue(navigator.runBackgroundPrecompute(Long.MAX_VALUE));
+        assertTrue(navigator.hasNavMap(at(5, 5)));
+        assertEquals(2, navigator.getNavMapCache().size());
+    }
+
+    @Test
+    public void pinnedMapsSurviveUrgentBuilds() {
+        Navigator navigator = new Navigator(null, grid(), SearchMode.A_STAR, 2 * MAP_BYTES);
+        navigator.pin(at(1, 1));
+        navigator.pathDistance(at(0, 0), at(1, 1));
+        navigator.pathDistance(at(0, 0), at(3, 3));
+        navigator.scheduleUrgent(at(5, 5));
+        navigator.scheduleUrgent(at(7, 7));
+        assertTrue(navigator.runBackgroundPrecompute(Long.MAX_VALUE));
+
+        assertTrue(navigator.hasNavMap(at(1, 1)));
+        assertTrue(navigator.hasNavMap(at(7, 7)));
+        assertFalse(navigator.hasNavMap(at(3, 3)));
+    }
+
+    @Test
+    public void prefetchedMapIsReadyAfterBackgroundTime() throws InterruptedException {
+        Navigator navigator = new Navigator(null, grid(), SearchMode.A_STAR, 2 * MAP_BYTES);
+        navigator.pathDistance(at(0, 0), at(1, 1));
+        navigator.pathDistance(at(0, 0), at(3, 3));
+        navigator.schedulePrecompute(at(7, 7));
+        navigator.prefetch(at(5, 5));
+
+        // Either a worker thread or the background time after the turn builds
+        // the map, so give the pool a while if there is one
+        for (int i = 0; i < 1000 && !navigator.hasNavMap(at(5, 5)); i++) {
+            navigator.runBackgroundPrecompute(Long.MAX_VALUE);
+            if (!navigator.hasNavMap(at(5, 5))) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue(navigator.hasNavMap(at(5, 5)));
+        assertFalse(navigator.hasNavMap(at(7, 7)));
+        assertEquals(2, navigator.getNavMapCache().size());
+    }
+
+    @Test
+    public void prefetchOnOneCoreWaitsForBackgroundTime() {
+        assumeFalse(Navigator.hasBuildPool());
+        Navigator navigator = new Navigator(null, grid(), SearchMode.A_STAR, 2 * MAP_BYTES);
+        navigator.schedulePrecompute(at(1, 1));
+        navigator.prefetch(at(5, 5));
+        assertFalse(navigator.hasNavMap(at(5, 5)));
+
+        // Nothing is built during the turn
+        assertFalse(navigator.runBackgroundPrecompute(System.nanoTime()));
+        assertFalse(navigator.hasNavMap(at(5, 5)));
+
+        // The prefetched target is built ahead of the predicted one
+        navigator.getNavMapCache().setBudgetBytes(MAP_BYTES);
+        assertTrue(navigator.runBackgroundPrecompute(Long.MAX_VALUE));
+        assertTrue(navigator.hasNavMap(at(5, 5)));
+        assertFalse(navigator.hasNavMap(at(1, 1)));
+    }
+}
@@ -0,0 +1,170 @@
+import bc.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NavigatorSearchTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 15;
+    private static final float SQRT2 = (float) Math.sqrt(2.0);
+    // Allowed difference between path costs summed in a different order
+    private static final double EPSILON = 1e-3;
+
+    @Test
+    public void startAtTargetStaysPut() {
+        BitGrid passable = grid(new Random(1), 0.0);
+        Navigator navigator = new Navigator(null, passable, SearchMode.JUMP_POINT);
+        MapLocation here = new MapLocation(Planet.Earth, 3, 4);
+        assertEquals(Direction.Center, navigator.pathfind(here, here, new BitGrid(WIDTH, HEIGHT)));
+    }
+
+    @Test
+    public void walledOffTargetHasNoPath() {
+        BitGrid passable = grid(new Random(1), 0.0);
+        for (int y = 0; y < HEIGHT; y++) {
+            passable.clear(10, y);
+        }
+        BitGrid occupied = new BitGrid(WIDTH, HEIGHT);
+        MapLocation start = new MapLocation(Planet.Earth, 2, 2);
+        MapLocation target = new MapLocation(Planet.Earth, 15, 2);
+        for (SearchMode mode : SearchMode.values()) {
+            Navigator navigator = new Navigator(null, passable, mode);
+            assertEquals(mode.toString(), Direction.Center, navigator.pathfind(start, target, occupied));
+        }
+    }
+
+    @Test
+    public void jumpPointPathsCostTheSameAsAStar() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            BitGrid passable = grid(random, 0.25);
+            BitGrid occupied = new BitGrid(WIDTH, HEIGHT);
+            for (int i = 0; i < 20; i++) {
+                occupied.set(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            }
+            int start = freeLocation(random, passable, occupied);
+            int target = freeLocation(random, passable, occupied);
+            double[] expected = distancesTo(target, passable, occupied);
+
+            for (SearchMode mode : SearchMode.values()) {
+                Navigator navigator = new Navigator(null, passable, mode);
+                double cost = walk(navigator, passable, start, target, occupied);
+                String message = mode + " trial " + trial;
+                if (expected[start] == Double.POSITIVE_INFINITY) {
+                    assertEquals(message, Double.POSITIVE_INFINITY, cost, 0);
+                } else {
+                    assertEquals(message, expected[start], cost, EPSILON);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchesCanBeRepeatedOnOneNavigator() {
+        Random random = new Random(7);
+        BitGrid passable = grid(random, 0.2);
+        BitGrid occupied = new BitGrid(WIDTH, HEIGHT);
+        Navigator aStar = new Navigator(null, passable, SearchMode.A_STAR);
+        Navigator jumpPoint = new Navigator(null, passable, SearchMode.JUMP_POINT);
+        for (int i = 0; i < 100; i++) {
+            int start = freeLocation(random, passable, occupied);
+            int target = freeLocation(random, passable, occupied);
+            double expected = distancesTo(target, passable, occupied)[start];
+            if (expected == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            assertEquals(expected, walk(aStar, passable, start, target, occupied), EPSILON);
+            assertEquals(expected, walk(jumpPoint, passable, start, target, occupied), EPSILON);
+        }
+    }
+
+    /**
+     * Makes a map with a fraction of its locations impassable at random.
+     */
+    private static BitGrid grid(Random random, double obstacles) {
+        BitGrid passable = new BitGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                passable.set(x, y, random.nextDouble() >= obstacles);
+            }
+        }
+        return passable;
+    }
+
+    private static int freeLocation(Random random, BitGrid passable, BitGrid occupied) {
+        while (true) {
+            int index = random.nextInt(WIDTH * HEIGHT);
+            if (passable.get(index) && !occupied.get(index)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Follows the directions a navigator gives from the start until it
+     * reaches the target, and adds up the cost of every step.
+     *
+     * @return The cost of the path, or infinity if the navigator gave up.
+     */
+    private static double walk(Navigator navigator, BitGrid passable, int start, int target, BitGrid occupied) {
+        MapLocation goal = new MapLocation(Planet.Earth, target % WIDTH, target / WIDTH);
+        int x = start % WIDTH;
+        int y = start / WIDTH;
+        double cost = 0;
+        for (int steps = 0; y * WIDTH + x != target; steps++) {
+            assertTrue("path never reaches the target", steps < WIDTH * HEIGHT);
+            Direction direction = navigator.pathfind(new MapLocation(Planet.Earth, x, y), goal, occupied);
+            if (direction == Direction.Center) {
+                return Double.POSITIVE_INFINITY;
+            }
+            int d = Arrays.asList(Navigator.DIRECTIONS).indexOf(direction);
+            x += Navigator.DIR_DX[d];
+            y += Navigator.DIR_DY[d];
+            int index = y * WIDTH + x;
+            assertTrue("stepped onto a blocked location", index == target || (passable.get(index) && !occupied.get(index)));
+            cost += Navigator.DIR_DX[d] != 0 && Navigator.DIR_DY[d] != 0 ? SQRT2 : 1;
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the cheapest cost from every location to a target with
+     * Dijkstra's algorithm, where straight steps cost 1 and diagonal steps
+     * cost the square root of 2. The target can always be moved onto.
+     */
+    private static double[] distancesTo(int target, BitGrid passable, BitGrid occupied) {
+        double[] dist = new double[WIDTH * HEIGHT];
+        boolean[] done = new boolean[WIDTH * HEIGHT];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[target] = 0;
+        while (true) {
+            int current = -1;
+            for (int i = 0; i < dist.length; i++) {
+                if (!done[i] && dist[i] != Double.POSITIVE_INFINITY && (current == -1 || dist[i] < dist[current])) {
+                    current = i;
+                }
+            }
+            if (current == -1) {
+                return dist;
+            }
+            done[current] = true;
+            for (int d = 0; d < Navigator.DIRECTIONS.length; d++) {
+                int x = current % WIDTH + Navigator.DIR_DX[d];
+                int y = current / WIDTH + Navigator.DIR_DY[d];
+                if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
+                    continue;
+                }
+                int next = y * WIDTH + x;
+                if (!passable.get(next) || occupied.get(next)) {
+                    continue;
+                }
+                double step = Navigator.DIR_DX[d] != 0 && Navigator.DIR_DY[d] != 0 ? SQRT2 : 1;
+                dist[next] = Math.min(dist[next], dist[current] + step);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import bc.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NavigatorSwarmTest {
+    private GameApi gc;
+    private Navigator navigator;
+    private BitGrid occupied;
+    private int width;
+    // Red units, ordered farthest from the left edge first
+    private int[] units;
+    private int[] unitX;
+    private int[] unitY;
+    private byte[] results;
+
+    /**
+     * Starts a game on a map and gathers the Red units into a group, with
+     * the units on the right listed first.
+     */
+    private void setUp(String map) {
+        OfflineMap offlineMap = OfflineMap.parse(map);
+        this.gc = new OfflineGame(offlineMap).view(Team.Red, Planet.Earth);
+        this.width = offlineMap.getWidth(Planet.Earth);
+        int height = offlineMap.getHeight(Planet.Earth);
+        BitGrid passable = new BitGrid(this.width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                passable.set(x, y, offlineMap.isPassable(Planet.Earth, x, y));
+            }
+        }
+        this.navigator = new Navigator(this.gc, passable);
+        this.occupied = new BitGrid(this.width, height);
+
+        UnitSnapshot snapshot = new UnitSnapshot();
+        this.gc.readUnits(snapshot);
+        this.units = new int[snapshot.size()];
+        this.unitX = new int[snapshot.size()];
+        this.unitY = new int[snapshot.size()];
+        this.results = new byte[snapshot.size()];
+        int count = 0;
+        for (int row = 0; row < snapshot.size(); row++) {
+            this.occupied.set(snapshot.getX(row), snapshot.getY(row));
+            if (snapshot.getTeam(row) != Team.Red) {
+                continue;
+            }
+            int i = count++;
+            while (i > 0 && this.unitX[i - 1] < snapshot.getX(row)) {
+                this.units[i] = this.units[i - 1];
+                this.unitX[i] = this.unitX[i - 1];
+                this.unitY[i] = this.unitY[i - 1];
+                i--;
+            }
+            this.units[i] = snapshot.getId(row);
+            this.unitX[i] = snapshot.getX(row);
+            this.unitY[i] = snapshot.getY(row);
+        }
+        this.units = Arrays.copyOf(this.units, count);
+    }
+
+    /**
+     * Moves the group toward a target, and checks that the positions and
+     * occupied map it was given were kept in step with the game.
+     *
+     * @return The number of units that moved.
+     */
+    private int moveSwarm(int x, int y) {
+        int moved = this.navigator.moveSwarm(this.units, this.unitX, this.unitY, this.units.length,
+                new MapLocation(Planet.Earth, x, y), this.occupied, this.results);
+        for (int i = 0; i < this.units.length; i++) {
+            assertEquals(this.unitY[i] * this.width + this.unitX[i], this.gc.getLocationIndex(this.units[i]));
+            assertTrue(this.occupied.get(this.unitX[i], this.unitY[i]));
+        }
+        return moved;
+    }
+
+    @Test
+    public void closestUnitsMoveFirst() {
+        setUp("earth 6 1\n"
+                + "rrr...\n");
+        assertEquals(3, moveSwarm(5, 0));
+        assertEquals(3, this.unitX[0]);
+        assertEquals(2, this.unitX[1]);
+        assertEquals(1, this.unitX[2]);
+        assertFalse(this.occupied.get(0, 0));
+        for (int i = 0; i < this.units.length; i++) {
+            assertEquals(Navigator.SWARM_MOVED, this.results[i]);
+        }
+    }
+
+    @Test
+    public void unitsDoNotMoveOntoTheSameCell() {
+        setUp("earth 3 3\n"
+                + "r..\n"
+                + "...\n"
+                + "r..\n");
+        assertEquals(2, moveSwarm(2, 1));
+        assertNotEquals(this.unitY[0] * 3 + this.unitX[0], this.unitY[1] * 3 + this.unitX[1]);
+        for (int i = 0; i < this.units.length; i++) {
+            assertEquals(1, this.unitX[i]);
+        }
+    }
+
+    @Test
+    public void onlyUnitsHeldUpOutsideTheGroupAreBlocked() {
+        setUp("earth 5 1\n"
+                + "rrb..\n");
+        assertEquals(0, moveSwarm(4, 0));
+        assertEquals(Navigator.SWARM_BLOCKED, this.results[0]);
+        assertEquals(Navigator.SWARM_WAITING, this.results[1]);
+    }
+
+    @Test
+    public void unitsAtTheTargetWait() {
+        setUp("earth 3 1\n"
+                + "..r\n");
+        assertEquals(0, moveSwarm(2, 0));
+        assertEquals(Navigator.SWARM_WAITING, this.results[0]);
+    }
+
+    @Test
+    public void unitsBehindTheGroupSpreadOut() {
+        setUp("earth 5 5\n"
+                + ".....\n"
+                + ".....\n"
+                + "rr...\n"
+                + ".....\n"
+                + ".....\n");
+        // The unit in front is at the target, so the one behind it steps to
+        // another cell next to the target
+        assertEquals(1, moveSwarm(1, 2));
+        assertEquals(Navigator.SWARM_WAITING, this.results[0]);
+        assertEquals(Navigator.SWARM_MOVED, this.results[1]);
+        assertEquals(1, Math.max(Math.abs(this.unitX[1] - 1), Math.abs(this.unitY[1] - 2)));
+        assertEquals(2, this.occupied.count());
+    }
+}
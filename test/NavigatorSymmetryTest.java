@@ -0,0 +1,134 @@
+import bc.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NavigatorSymmetryTest {
+    // Symmetric across the horizontal center line only
+    private static final String[] VERTICAL = {
+            "#.....",
+            "..#...",
+            "......",
+            "..#...",
+            "#.....",
+    };
+    // Symmetric across the vertical center line only
+    private static final String[] HORIZONTAL = {
+            "#....#",
+            ".#..#.",
+            "......",
+            "......",
+    };
+    // Symmetric under a half turn only
+    private static final String[] ROTATED = {
+            "#.....",
+            "..#...",
+            "...#..",
+            ".....#",
+    };
+    private static final String[] ASYMMETRIC = {
+            "#.....",
+            "..#...",
+            "......",
+            "....#.",
+    };
+
+    /**
+     * Makes a map from rows of text, where '#' is impassable and row i has
+     * y-coordinate i.
+     */
+    private static BitGrid grid(String[] rows) {
+        BitGrid passable = new BitGrid(rows[0].length(), rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                passable.set(x, y, rows[y].charAt(x) != '#');
+            }
+        }
+        return passable;
+    }
+
+    private static MapLocation at(int x, int y) {
+        return new MapLocation(Planet.Earth, x, y);
+    }
+
+    /**
+     * Builds the map for every passable target on a fresh navigator, and
+     * checks that the map for its mirror image is cached along with it, with
+     * the same distances as building that map directly.
+     */
+    private static void checkMirrorsCached(String[] rows, boolean flipX, boolean flipY) {
+        BitGrid passable = grid(rows);
+        int width = passable.getWidth();
+        int height = passable.getHeight();
+        Navigator reference = new Navigator(null, passable);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!passable.get(x, y)) {
+                    continue;
+                }
+                MapLocation target = at(x, y);
+                MapLocation mirror = at(flipX ? width - 1 - x : x, flipY ? height - 1 - y : y);
+                Navigator navigator = new Navigator(null, passable);
+                navigator.pathDistance(target, target);
+
+                assertTrue("mirror of " + x + "," + y, navigator.hasNavMap(mirror));
+                assertTrue("mirror of " + x + "," + y, navigator.hasDistances(mirror));
+                for (int fromY = 0; fromY < height; fromY++) {
+                    for (int fromX = 0; fromX < width; fromX++) {
+                        assertEquals(reference.pathDistance(at(fromX, fromY), mirror),
+                                navigator.pathDistance(at(fromX, fromY), mirror));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cachesMirrorsOnVerticallySymmetricMaps() {
+        checkMirrorsCached(VERTICAL, false, true);
+    }
+
+    @Test
+    public void cachesMirrorsOnHorizontallySymmetricMaps() {
+        checkMirrorsCached(HORIZONTAL, true, false);
+    }
+
+    @Test
+    public void cachesMirrorsOnRotatedSymmetricMaps() {
+        checkMirrorsCached(ROTATED, true, true);
+    }
+
+    @Test
+    public void doesNotMirrorAsymmetricMaps() {
+        BitGrid passable = grid(ASYMMETRIC);
+        int width = passable.getWidth();
+        int height = passable.getHeight();
+        Navigator navigator = new Navigator(null, passable);
+        navigator.pathDistance(at(1, 0), at(1, 0));
+
+        assertTrue(navigator.hasNavMap(at(1, 0)));
+        assertFalse(navigator.hasNavMap(at(width - 2, 0)));
+        assertFalse(navigator.hasNavMap(at(1, height - 1)));
+        assertFalse(navigator.hasNavMap(at(width - 2, height - 1)));
+    }
+
+    @Test
+    public void precomputesOnlyCanonicalTargets() {
+        BitGrid passable = grid(VERTICAL);
+        Navigator navigator = new Navigator(null, passable);
+        assertTrue(navigator.precomputeNavMaps(Long.MAX_VALUE));
+
+        PackedNavMaps precomputed = navigator.getPrecomputedNavMaps();
+        int width = passable.getWidth();
+        int height = passable.getHeight();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean isCanonical = passable.get(x, y) && y <= height - 1 - y;
+                assertEquals(x + "," + y, isCanonical, precomputed.contains(y * width + x));
+                assertEquals(x + "," + y, passable.get(x, y), navigator.hasNavMap(at(x, y)));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedNavMapsTest {
+    // An odd number, so the last location shares its byte with nothing
+    private static final int LOCATIONS = 17;
+
+    private static byte[] navMap(int seed) {
+        byte[] navMap = new byte[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            navMap[i] = (byte) ((i + seed) % 16 - 1);
+        }
+        return navMap;
+    }
+
+    @Test
+    public void getReturnsEveryValueThatWasPut() {
+        PackedNavMaps maps = new PackedNavMaps(LOCATIONS);
+        byte[] navMap = navMap(0);
+        maps.put(5, navMap);
+        for (int i = 0; i < LOCATIONS; i++) {
+            assertEquals("location " + i, navMap[i], maps.get(5, i));
+        }
+    }
+
+    @Test
+    public void keepsMapsForDifferentTargetsApart() {
+        PackedNavMaps maps = new PackedNavMaps(LOCATIONS);
+        maps.put(0, navMap(3));
+        maps.put(16, navMap(8));
+        assertTrue(maps.contains(0));
+        assertTrue(maps.contains(16));
+        assertFalse(maps.contains(1));
+        for (int i = 0; i < LOCATIONS; i++) {
+            assertEquals(navMap(3)[i], maps.get(0, i));
+            assertEquals(navMap(8)[i], maps.get(16, i));
+        }
+    }
+
+    @Test
+    public void countsEachTargetOnce() {
+        PackedNavMaps maps = new PackedNavMaps(LOCATIONS);
+        assertEquals(0, maps.size());
+        assertEquals(0, maps.getUsedBytes());
+
+        maps.put(2, navMap(0));
+        maps.put(2, navMap(1));
+        assertEquals(1, maps.size());
+        assertEquals((LOCATIONS + 1) / 2, maps.getUsedBytes());
+        assertEquals(navMap(1)[4], maps.get(2, 4));
+
+        maps.put(3, navMap(0));
+        assertEquals(2, maps.size());
+        assertEquals(2 * ((LOCATIONS + 1) / 2), maps.getUsedBytes());
+    }
+}
@@ -0,0 +1,128 @@
+import bc.*;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialHashTest {
+    // Not a multiple of the bucket size, so the last buckets are partial
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 21;
+    // Ranges to query, as minimum and maximum squared distances
+    private static final int[][] RANGES = {{-1, 0}, {-1, 2}, {-1, 50}, {10, 50}, {-1, 70}, {0, 200}};
+
+    private static UnitSnapshot randomUnits(Random random, int count) {
+        UnitSnapshot units = new UnitSnapshot();
+        units.clear(count);
+        for (int id = 0; id < count; id++) {
+            int row = units.add(id, UnitType.Ranger, random.nextBoolean() ? Team.Red : Team.Blue);
+            boolean isOnMap = random.nextInt(10) != 0;
+            units.setLocation(row, isOnMap, !isOnMap, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            // Some units are already dead
+            units.setStats(row, random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(200), 70, 50, 30);
+        }
+        return units;
+    }
+
+    private static boolean isMatch(UnitSnapshot units, int row, Team team, int x, int y, int minRangeSq, int maxRangeSq) {
+        int dx = units.getX(row) - x;
+        int dy = units.getY(row) - y;
+        int distSq = dx * dx + dy * dy;
+        return units.getTeam(row) == team && units.isOnMap(row) && units.isAlive(row) && distSq > minRangeSq
+                && distSq <= maxRangeSq;
+    }
+
+    /**
+     * Checks every query from every location against a scan of the whole
+     * snapshot.
+     */
+    private static void checkAgainstScan(SpatialHash hash, UnitSnapshot units, Team team) {
+        int[] out = new int[units.size()];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                for (int[] range : RANGES) {
+                    Set<Integer> expected = new HashSet<>();
+                    int lowestHealth = Integer.MAX_VALUE;
+                    for (int row = 0; row < units.size(); row++) {
+                        if (isMatch(units, row, team, x, y, range[0], range[1])) {
+                            expected.add(row);
+                            lowestHealth = Math.min(lowestHealth, units.getHealth(row));
+                        }
+                    }
+
+                    int count = hash.query(x, y, range[0], range[1], out);
+                    Set<Integer> found = new HashSet<>();
+                    for (int i = 0; i < count; i++) {
+                        assertTrue("found twice", found.add(out[i]));
+                    }
+                    assertEquals(expected, found);
+
+                    int lowest = hash.lowestHealth(x, y, range[0], range[1]);
+                    if (expected.isEmpty()) {
+                        assertEquals(SpatialHash.NONE, lowest);
+                    } else {
+                        assertTrue(expected.contains(lowest));
+                        assertEquals(lowestHealth, units.getHealth(lowest));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queriesMatchAScan() {
+        UnitSnapshot units = randomUnits(new Random(1), 80);
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT);
+        hash.build(units, Team.Blue);
+        checkAgainstScan(hash, units, Team.Blue);
+    }
+
+    @Test
+    public void holdsOnlyOneTeamOnTheMap() {
+        UnitSnapshot units = randomUnits(new Random(2), 60);
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT);
+        hash.build(units, Team.Red);
+        int expected = 0;
+        for (int row = 0; row < units.size(); row++) {
+            if (units.getTeam(row) == Team.Red && units.isOnMap(row)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, hash.size());
+    }
+
+    @Test
+    public void canBeRebuiltFromANewSnapshot() {
+        Random random = new Random(3);
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT);
+        hash.build(randomUnits(random, 10), Team.Red);
+        UnitSnapshot units = randomUnits(random, 100);
+        hash.build(units, Team.Red);
+        checkAgainstScan(hash, units, Team.Red);
+        hash.build(units, Team.Blue);
+        checkAgainstScan(hash, units, Team.Blue);
+    }
+
+    @Test
+    public void skipsUnitsKilledDuringTheTurn() {
+        UnitSnapshot units = new UnitSnapshot();
+        units.clear(2);
+        int attacker = units.add(1, UnitType.Ranger, Team.Red);
+        units.setLocation(attacker, true, false, 0, 0);
+        units.setStats(attacker, 200, 70, 50, 30);
+        int target = units.add(2, UnitType.Worker, Team.Blue);
+        units.setLocation(target, true, false, 3, 3);
+        units.setStats(target, 30, 50, 0, 0);
+
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT);
+        hash.build(units, Team.Blue);
+        assertEquals(target, hash.lowestHealth(0, 0, 10, 50));
+        units.attacked(attacker, target);
+        assertEquals(SpatialHash.NONE, hash.lowestHealth(0, 0, 10, 50));
+        assertEquals(0, hash.query(0, 0, -1, 200, new int[1]));
+    }
+}
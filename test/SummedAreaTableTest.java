@@ -0,0 +1,106 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SummedAreaTableTest {
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 9;
+
+    private int[][] values;
+    private BitGrid mask;
+
+    private void fill(Random random, double masked) {
+        this.values = new int[HEIGHT][WIDTH];
+        this.mask = new BitGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                this.values[y][x] = random.nextInt(100);
+                this.mask.set(x, y, random.nextDouble() >= masked);
+            }
+        }
+    }
+
+    /**
+     * Adds up the values in a rectangle one location at a time.
+     */
+    private int bruteSum(int minX, int minY, int maxX, int maxY) {
+        int sum = 0;
+        for (int y = Math.max(0, minY); y <= Math.min(HEIGHT - 1, maxY); y++) {
+            for (int x = Math.max(0, minX); x <= Math.min(WIDTH - 1, maxX); x++) {
+                if (this.mask.get(x, y)) {
+                    sum += this.values[y][x];
+                }
+            }
+        }
+        return sum;
+    }
+
+    private void checkAllRectangles(SummedAreaTable table) {
+        for (int minY = -1; minY <= HEIGHT; minY++) {
+            for (int maxY = minY - 1; maxY <= HEIGHT; maxY++) {
+                for (int minX = -1; minX <= WIDTH; minX += 2) {
+                    for (int maxX = minX - 1; maxX <= WIDTH; maxX += 3) {
+                        assertEquals(minX + "," + minY + " to " + maxX + "," + maxY,
+                                bruteSum(minX, minY, maxX, maxY), table.sum(minX, minY, maxX, maxY));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sumsMatchBruteForce() {
+        fill(new Random(1), 0.0);
+        checkAllRectangles(new SummedAreaTable(this.values, this.mask));
+    }
+
+    @Test
+    public void masksOutLocations() {
+        fill(new Random(2), 0.3);
+        checkAllRectangles(new SummedAreaTable(this.values, this.mask));
+    }
+
+    @Test
+    public void sumAroundIsClippedToTheGrid() {
+        fill(new Random(3), 0.2);
+        SummedAreaTable table = new SummedAreaTable(this.values, this.mask);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                for (int radius = 0; radius <= 4; radius++) {
+                    assertEquals(bruteSum(x - radius, y - radius, x + radius, y + radius), table.sumAround(x, y, radius));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void addKeepsSumsUpToDate() {
+        Random random = new Random(4);
+        fill(random, 0.2);
+        SummedAreaTable table = new SummedAreaTable(this.values, this.mask);
+        // Enough updates to pass the rebuild threshold many times over
+        for (int i = 0; i < 300; i++) {
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            int delta = -random.nextInt(this.values[y][x] + 1);
+            this.values[y][x] += delta;
+            table.add(x, y, delta);
+            if (i % 10 == 0) {
+                checkAllRectangles(table);
+            }
+        }
+        checkAllRectangles(table);
+    }
+
+    @Test
+    public void rebuildPicksUpUnrecordedChanges() {
+        fill(new Random(5), 0.0);
+        SummedAreaTable table = new SummedAreaTable(this.values, this.mask);
+        this.values[4][6] += 50;
+        this.values[0][0] = 0;
+        table.rebuild();
+        checkAllRectangles(table);
+    }
+}